@@ -2,6 +2,7 @@ package compiler.ast;
 
 public class AssignStmt implements Stmt {
     public final String var;
+    public int slot = -1;   // frame slot of the variable, set by compiler.parser.Resolver
     public final Expr expr;
 
     public AssignStmt(String var, Expr expr) {
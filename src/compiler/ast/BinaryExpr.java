@@ -4,6 +4,7 @@ public class BinaryExpr implements Expr {
     public final String op;
     public final Expr left;
     public final Expr right;
+    public byte type;       // Memory.INT if both operands are proven ints (set by TypeInference), else 0
 
     public BinaryExpr(String op, Expr left, Expr right) {
         this.op = op;
@@ -2,6 +2,7 @@ package compiler.ast;
 
 public class PrintStmt implements Stmt {
     public final String var;
+    public int slot = -1;   // frame slot of the variable, set by compiler.parser.Resolver
 
     public PrintStmt(String var) {
         this.var = var;
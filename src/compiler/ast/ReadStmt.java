@@ -2,6 +2,7 @@ package compiler.ast;
 
 public class ReadStmt implements Stmt {
     public final String var;
+    public int slot = -1;   // frame slot of the variable, set by compiler.parser.Resolver
 
     public ReadStmt(String var) {
         this.var = var;
@@ -3,6 +3,8 @@ package compiler.ast;
 // src/compiler/ast/VarExpr.java
 public class VarExpr implements Expr {
     public final String name;
+    public int slot = -1;   // frame slot of the variable, set by compiler.parser.Resolver
+    public byte type;       // proven type (a Memory tag), set by compiler.parser.TypeInference; 0 if dynamic
 
     public VarExpr(String name) {
         this.name = name;
@@ -1,124 +1,229 @@
 package compiler.codegen;
 
+import compiler.codegen.Asm.Insn;
+import compiler.codegen.Asm.Mnemonic;
+import compiler.codegen.Asm.Operand;
+import compiler.codegen.Asm.Reg;
+
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * Generates x86-64 NASM assembly from three-address code (TAC).
+ *
+ * Temporaries and variables live where {@link RegisterAllocator} puts
+ * them: in a general-purpose register or in a 4-byte stack slot below the
+ * saved callee-saved registers. Programs have no functions, so nothing is
+ * truly global and .data only holds the printf/scanf formats. eax and edx
+ * are scratch for memory-to-memory moves, idiv and the multiply-high.
+ *
+ * Frame: rbp, then the callee-saved registers in use, then the slots and
+ * one scratch dword that scanf writes when the target is a register;
+ * rsp stays 16-byte aligned at every call, as the SysV ABI requires.
+ *
+ * Each TAC instruction is translated on its own into an {@link Asm}
+ * model, which {@link Peephole} then cleans up across instructions.
  */
 public class ASMGenerator {
-    private final List<String> tac;
-    private final List<String> asm = new ArrayList<>();
-    private final Set<String> variables = new HashSet<>();
+    private static final Operand EAX = Operand.reg(Reg.AX), EDX = Operand.reg(Reg.DX), ESI = Operand.reg(Reg.SI);
 
-    // Patterns for matching TAC formats
-    private static final Pattern CONST_PATTERN = Pattern.compile("^t\\d+ = -?\\d+$");
-    private static final Pattern BINOP_PATTERN = Pattern.compile("^t\\d+ = t\\d+ [\\+\\-\\*/] t\\d+$");
-    private static final Pattern LABEL_PATTERN = Pattern.compile("^L\\d+:");
+    private final Tac tac;
+    private final Operands operands;
+    private final Asm asm = new Asm();
+    private final RegisterAllocator registers;
+    private final List<Reg> saved = new ArrayList<>();     // callee-saved registers to push
+    private final int scratchSlot;
 
-    public ASMGenerator(List<String> tac) {
+    public ASMGenerator(Tac tac) {
         this.tac = tac;
-        collectVariables();
-    }
-
-    private void collectVariables() {
-        for (String line : tac) {
-            if (line.startsWith("READ ") || line.startsWith("PRINT ")) {
-                String[] parts = line.split(" ");
-                variables.add(parts[1]);
-            } else if (line.matches("^t\\d+ =.*")) {
-                String varName = line.split(" = ")[0];
-                variables.add(varName);
-            }
+        this.operands = tac.operands;
+        this.registers = new RegisterAllocator(tac);
+        for (int r = RegisterAllocator.FIRST_CALLEE_SAVED; r < RegisterAllocator.REGISTERS.length; r++) {
+            if (registers.registerUsed(r)) saved.add(RegisterAllocator.REGISTERS[r]);
         }
+        this.scratchSlot = registers.slots();
     }
 
     /**
-     * Main entry: emits full assembly.
+     * Main entry: emits full assembly, after the peephole optimizer.
      */
     public List<String> generate() {
+        return Peephole.optimize(assemble()).toText();
+    }
+
+    /** The program as an instruction model, one TAC instruction at a time (no peephole). */
+    public Asm assemble() {
         emitPreamble();
-        for (String line : tac) {
-            emitInstruction(line);
+        for (int i = 0; i < tac.size(); i++) {
+            emitInstruction(i);
         }
         emitPostamble();
         return asm;
     }
 
+    private void emit(Mnemonic op, Operand dst, Operand src) {
+        asm.add(new Insn(op, dst, src));
+    }
+
+    private void emit(Mnemonic op, Operand dst) {
+        asm.add(new Insn(op, dst, null));
+    }
+
+    private void jump(Mnemonic op, String target) {
+        asm.add(new Insn(op, null, null, target));
+    }
+
+    private void comment(String text) {
+        asm.add(new Insn(Mnemonic.COMMENT, null, null, text));
+    }
+
     private void emitPreamble() {
-        asm.add("section .data");
-        asm.add("  print_fmt: db \"%d\", 10, 0");
-        asm.add("  scan_fmt: db \"%d\", 0");
-        for (String var : variables) {
-            asm.add("  " + var + ": dd 0");
+        emit(Mnemonic.PUSH, Operand.reg64(Reg.BP));
+        emit(Mnemonic.MOV, Operand.reg64(Reg.BP), Operand.reg64(Reg.SP));
+        for (Reg r : saved) emit(Mnemonic.PUSH, Operand.reg64(r));
+        emit(Mnemonic.SUB, Operand.reg64(Reg.SP), Operand.imm(frameSize()));
+        // variables read before they are assigned start out as 0
+        for (int id : registers.zeroed()) {
+            Operand x = location(id);
+            if (x.isReg()) emit(Mnemonic.XOR, x, x);
+            else emit(Mnemonic.MOV, x, Operand.imm(0));
         }
-        asm.add("");
-        asm.add("section .text");
-        asm.add("global main");
-        asm.add("extern printf, scanf");
-        asm.add("main:");
     }
 
-    private void emitInstruction(String line) {
-        if (line.startsWith("READ ")) {
-            String var = line.split(" ")[1];
-            asm.add("  ; READ " + var);
-            asm.add("  lea rdi, [rel scan_fmt]");
-            asm.add("  lea rsi, [" + var + "]");
-            asm.add("  xor eax, eax");
-            asm.add("  call scanf");
-        } else if (line.startsWith("PRINT ")) {
-            String var = line.split(" ")[1];
-            asm.add("  ; PRINT " + var);
-            asm.add("  lea rdi, [rel print_fmt]");
-            asm.add("  mov esi, [" + var + "]");
-            asm.add("  xor eax, eax");
-            asm.add("  call printf");
-        } else if (CONST_PATTERN.matcher(line).matches()) {
-            String[] parts = line.split(" = ");
-            asm.add("  mov dword [" + parts[0] + "], " + parts[1]);
-        } else if (BINOP_PATTERN.matcher(line).matches()) {
-            String[] parts = line.split(" ");
-            String dest = parts[0];
-            String left = parts[2];
-            String op = parts[3];
-            String right = parts[4];
-            asm.add("  ; " + line);
-            asm.add("  mov eax, [" + left + "]");
-            if ("+".equals(op)) {
-                asm.add("  add eax, [" + right + "]");
-            } else if ("-".equals(op)) {
-                asm.add("  sub eax, [" + right + "]");
-            } else if ("*".equals(op)) {
-                asm.add("  imul eax, [" + right + "]");
-            } else if ("/".equals(op)) {
-                asm.add("  cdq");
-                asm.add("  idiv dword [" + right + "]");
+    // Bytes below the pushed registers: the slots plus scanf's scratch, rounded so rsp is 16-byte aligned
+    private int frameSize() {
+        int pushed = 8 * saved.size();
+        int bytes = pushed + 4 * (scratchSlot + 1);
+        return (bytes + 15) / 16 * 16 - pushed;
+    }
+
+    private Operand slot(int slot) {
+        return Operand.mem(Reg.BP, -(8 * saved.size() + 4 * (slot + 1)));
+    }
+
+    // Register or stack slot of an operand
+    private Operand location(int id) {
+        int r = registers.register(id);
+        return r >= 0 ? Operand.reg(RegisterAllocator.REGISTERS[r]) : slot(registers.slot(id));
+    }
+
+    private void move(Operand to, Operand from) {
+        if (!to.equals(from)) emit(Mnemonic.MOV, to, from);
+    }
+
+    private void emitInstruction(int i) {
+        Op op = tac.op(i);
+        switch (op) {
+            case READ -> {
+                Operand x = location(tac.a(i));
+                comment("READ " + operands.name(tac.a(i)));
+                Operand target = x.isReg() ? slot(scratchSlot) : x;
+                // scanf leaves the target alone at end of input, so the scratch must hold x's value
+                if (x.isReg()) emit(Mnemonic.MOV, target, x);
+                emit(Mnemonic.LEA, Operand.reg64(Reg.DI), Operand.rel("scan_fmt"));
+                emit(Mnemonic.LEA, Operand.reg64(Reg.SI), target);
+                emit(Mnemonic.XOR, EAX, EAX);
+                emit(Mnemonic.CALL, Operand.symbol("scanf"));
+                if (x.isReg()) emit(Mnemonic.MOV, x, target);
+            }
+            case PRINT -> {
+                comment("PRINT " + operands.name(tac.a(i)));
+                // esi first: the value may be in edi
+                move(ESI, location(tac.a(i)));
+                emit(Mnemonic.LEA, Operand.reg64(Reg.DI), Operand.rel("print_fmt"));
+                emit(Mnemonic.XOR, EAX, EAX);
+                emit(Mnemonic.CALL, Operand.symbol("printf"));
+            }
+            case CONST -> emit(Mnemonic.MOV, location(tac.dst(i)), Operand.imm(tac.a(i)));
+            case LIT -> {
+                // booleans are 1/0; strings and out-of-range numbers have no dword value
+                String text = operands.name(tac.a(i));
+                Operand dest = location(tac.dst(i));
+                if (text.equalsIgnoreCase("true")) {
+                    emit(Mnemonic.MOV, dest, Operand.imm(1));
+                } else if (text.equalsIgnoreCase("false")) {
+                    emit(Mnemonic.MOV, dest, Operand.imm(0));
+                } else {
+                    comment("unhandled: " + tac.text(i));
+                    emit(Mnemonic.MOV, dest, Operand.imm(0));
+                }
+            }
+            case COPY -> {
+                Operand dest = location(tac.dst(i)), src = location(tac.a(i));
+                if (dest.equals(src)) break;
+                if (dest.isReg() || src.isReg()) {
+                    emit(Mnemonic.MOV, dest, src);
+                } else {
+                    emit(Mnemonic.MOV, EAX, src);
+                    emit(Mnemonic.MOV, dest, EAX);
+                }
+            }
+            case ADD, SUB, MUL -> {
+                comment(tac.text(i));
+                Operand dest = location(tac.dst(i));
+                Operand left = location(tac.a(i)), right = location(tac.b(i));
+                Mnemonic insn = op == Op.ADD ? Mnemonic.ADD : op == Op.SUB ? Mnemonic.SUB : Mnemonic.IMUL;
+                if (op != Op.SUB && dest.equals(right)) {
+                    // commutative: d = b op a
+                    Operand t = left;
+                    left = right;
+                    right = t;
+                }
+                if (dest.isReg() && !dest.equals(right)) {
+                    move(dest, left);
+                    emit(insn, dest, right);
+                } else {
+                    emit(Mnemonic.MOV, EAX, left);
+                    emit(insn, EAX, right);
+                    emit(Mnemonic.MOV, dest, EAX);
+                }
+            }
+            case DIV -> {
+                comment(tac.text(i));
+                emit(Mnemonic.MOV, EAX, location(tac.a(i)));
+                emit(Mnemonic.CDQ, null, null);
+                emit(Mnemonic.IDIV, location(tac.b(i)));
+                emit(Mnemonic.MOV, location(tac.dst(i)), EAX);
+            }
+            case SHL, SAR, SHR -> {
+                comment(tac.text(i));
+                Mnemonic insn = op == Op.SHL ? Mnemonic.SHL : op == Op.SAR ? Mnemonic.SAR : Mnemonic.SHR;
+                Operand dest = location(tac.dst(i)), count = Operand.imm(tac.b(i));
+                if (dest.isReg()) {
+                    move(dest, location(tac.a(i)));
+                    emit(insn, dest, count);
+                } else {
+                    emit(Mnemonic.MOV, EAX, location(tac.a(i)));
+                    emit(insn, EAX, count);
+                    emit(Mnemonic.MOV, dest, EAX);
+                }
+            }
+            case MULH -> {
+                // one-operand imul leaves the 64-bit product in edx:eax
+                comment(tac.text(i));
+                emit(Mnemonic.MOV, EAX, location(tac.a(i)));
+                emit(Mnemonic.MOV, EDX, Operand.imm(tac.b(i)));
+                emit(Mnemonic.IMUL, EDX);
+                emit(Mnemonic.MOV, location(tac.dst(i)), EDX);
+            }
+            case IFZ -> {
+                Operand x = location(tac.a(i));
+                String label = operands.name(tac.b(i));
+                comment("IFZ " + operands.name(tac.a(i)) + " GOTO " + label);
+                if (x.isReg()) emit(Mnemonic.TEST, x, x);
+                else emit(Mnemonic.CMP, x, Operand.imm(0));
+                jump(Mnemonic.JE, label);
             }
-            asm.add("  mov [" + dest + "], eax");
-        } else if (line.startsWith("IFZ ")) {
-            String[] parts = line.split(" ");
-            String var = parts[1];
-            String label = parts[3];
-            asm.add("  ; IFZ " + var + " GOTO " + label);
-            asm.add("  mov eax, [" + var + "]");
-            asm.add("  cmp eax, 0");
-            asm.add("  je " + label);
-        } else if (line.startsWith("GOTO ")) {
-            String label = line.split(" ")[1];
-            asm.add("  jmp " + label);
-        } else if (LABEL_PATTERN.matcher(line).matches()) {
-            asm.add(line);
-        } else {
-            asm.add("  ; unhandled: " + line);
+            case GOTO -> jump(Mnemonic.JMP, operands.name(tac.a(i)));
+            case LABEL -> asm.add(new Insn(Mnemonic.LABEL, null, null, operands.name(tac.a(i))));
         }
     }
 
     private void emitPostamble() {
-        asm.add("  mov eax, 0");
-        asm.add("  ret");
+        emit(Mnemonic.LEA, Operand.reg64(Reg.SP), Operand.mem(Reg.BP, -8 * saved.size()));
+        for (int k = saved.size() - 1; k >= 0; k--) emit(Mnemonic.POP, Operand.reg64(saved.get(k)));
+        emit(Mnemonic.POP, Operand.reg64(Reg.BP));
+        emit(Mnemonic.MOV, EAX, Operand.imm(0));
+        emit(Mnemonic.RET, null, null);
     }
 }
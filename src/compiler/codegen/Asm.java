@@ -0,0 +1,182 @@
+package compiler.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * x86-64 assembly of one program as a list of structured instructions, so
+ * that {@link Peephole} can match on opcodes and operands instead of text.
+ * {@link #toText()} prints it as NASM source: the .data section with the
+ * printf/scanf formats, then main.
+ *
+ * Instructions have at most two operands, destination first. Memory
+ * operands are dword-sized [base + disp] or rip-relative [rel symbol];
+ * lea takes them as addresses.
+ */
+public final class Asm {
+    /** General-purpose registers, in hardware encoding order. */
+    public enum Reg {
+        AX("al", "eax", "rax"), CX("cl", "ecx", "rcx"), DX("dl", "edx", "rdx"), BX("bl", "ebx", "rbx"),
+        SP("spl", "esp", "rsp"), BP("bpl", "ebp", "rbp"), SI("sil", "esi", "rsi"), DI("dil", "edi", "rdi"),
+        R8("r8b", "r8d", "r8"), R9("r9b", "r9d", "r9"), R10("r10b", "r10d", "r10"), R11("r11b", "r11d", "r11"),
+        R12("r12b", "r12d", "r12"), R13("r13b", "r13d", "r13"), R14("r14b", "r14d", "r14"), R15("r15b", "r15d", "r15");
+
+        public final String name8, name32, name64;
+
+        Reg(String name8, String name32, String name64) {
+            this.name8 = name8;
+            this.name32 = name32;
+            this.name64 = name64;
+        }
+
+        /** Hardware register number (0-15). */
+        public int code() {
+            return ordinal();
+        }
+    }
+
+    public enum Mnemonic {
+        MOV, LEA, ADD, SUB, IMUL, IDIV, CDQ, XOR, SHL, SAR, SHR, TEST, CMP,
+        JMP, JE, JNE, CALL, PUSH, POP, RET,
+        // used by the native runtime (NativeRuntime)
+        NEG, DIV, MOVZX, MOVB, SYSCALL, JL, JGE, JLE, JG, JA, JBE,
+        LABEL,      // 'text' is the label name
+        COMMENT;    // 'text' is the comment
+
+        /** True for jumps (conditional or not); their target is 'text'. */
+        public boolean isJump() {
+            return this == JMP || isConditionalJump();
+        }
+
+        public boolean isConditionalJump() {
+            return switch (this) {
+                case JE, JNE, JL, JGE, JLE, JG, JA, JBE -> true;
+                default -> false;
+            };
+        }
+
+        /** The conditional jump taken exactly when this one is not. */
+        public Mnemonic inverse() {
+            return switch (this) {
+                case JE -> JNE;
+                case JNE -> JE;
+                case JL -> JGE;
+                case JGE -> JL;
+                case JLE -> JG;
+                case JG -> JLE;
+                case JA -> JBE;
+                case JBE -> JA;
+                default -> throw new IllegalStateException(this + " is not a conditional jump");
+            };
+        }
+    }
+
+    public enum Kind { REG, IMM, MEM, SYMBOL }
+
+    /**
+     * One operand: a register (32- or 64-bit), an immediate, a memory
+     * dword at [base + disp] or [rel symbol], or a symbol (call target).
+     * movzx and the byte store (MOVB) use their memory operand and
+     * register source as bytes.
+     */
+    public record Operand(Kind kind, Reg reg, boolean wide, int value, String symbol) {
+        public static Operand reg(Reg r)                 { return new Operand(Kind.REG, r, false, 0, null); }
+        public static Operand reg64(Reg r)               { return new Operand(Kind.REG, r, true, 0, null); }
+        public static Operand imm(int value)             { return new Operand(Kind.IMM, null, false, value, null); }
+        public static Operand mem(Reg base, int disp)    { return new Operand(Kind.MEM, base, false, disp, null); }
+        public static Operand rel(String symbol)         { return new Operand(Kind.MEM, null, false, 0, symbol); }
+        public static Operand symbol(String symbol)      { return new Operand(Kind.SYMBOL, null, false, 0, symbol); }
+
+        public boolean isReg()  { return kind == Kind.REG; }
+        public boolean isImm()  { return kind == Kind.IMM; }
+        public boolean isMem()  { return kind == Kind.MEM; }
+
+        /** NASM text; 'size' is "dword" or "byte", or null for an address (lea). */
+        public String text(String size) {
+            return switch (kind) {
+                case REG -> wide ? reg.name64 : "byte".equals(size) ? reg.name8 : reg.name32;
+                case IMM -> Integer.toString(value);
+                case SYMBOL -> symbol;
+                case MEM -> {
+                    String where = reg == null ? "[rel " + symbol + "]"
+                        : "[" + reg.name64 + (value < 0 ? " - " + -value : value > 0 ? " + " + value : "") + "]";
+                    yield size == null ? where : size + " " + where;
+                }
+            };
+        }
+    }
+
+    /** One instruction; 'dst' and 'src' may be null, 'text' is the jump target, label or comment. */
+    public record Insn(Mnemonic op, Operand dst, Operand src, String text) {
+        public Insn(Mnemonic op, Operand dst, Operand src) {
+            this(op, dst, src, null);
+        }
+
+        /** True for real instructions (not labels or comments). */
+        public boolean isInstruction() {
+            return op != Mnemonic.LABEL && op != Mnemonic.COMMENT;
+        }
+
+        public String toText() {
+            return switch (op) {
+                case LABEL -> text + ":";
+                case COMMENT -> "  ; " + text;
+                case JMP, JE, JNE, JL, JGE, JLE, JG, JA, JBE -> "  " + mnemonic() + " " + text;
+                default -> {
+                    StringBuilder sb = new StringBuilder("  ").append(mnemonic());
+                    if (dst != null) sb.append(' ').append(dst.text(op == Mnemonic.MOVB ? "byte" : "dword"));
+                    if (src != null) {
+                        String size = op == Mnemonic.LEA ? null : op == Mnemonic.MOVZX || op == Mnemonic.MOVB ? "byte" : "dword";
+                        sb.append(", ").append(src.text(size));
+                    }
+                    yield sb.toString();
+                }
+            };
+        }
+
+        private String mnemonic() {
+            return op == Mnemonic.MOVB ? "mov" : op.name().toLowerCase();
+        }
+    }
+
+    private final List<Insn> code;
+
+    public Asm() {
+        this(new ArrayList<>());
+    }
+
+    public Asm(List<Insn> code) {
+        this.code = code;
+    }
+
+    public List<Insn> code() {
+        return code;
+    }
+
+    public void add(Insn insn) {
+        code.add(insn);
+    }
+
+    /** Number of real instructions (labels and comments do not count). */
+    public int instructionCount() {
+        int n = 0;
+        for (Insn insn : code) if (insn.isInstruction()) n++;
+        return n;
+    }
+
+    /** The program as NASM source, one line per element. */
+    public List<String> toText() {
+        List<String> lines = new ArrayList<>(code.size() + 10);
+        lines.add("default rel");
+        lines.add("section .data");
+        lines.add("  print_fmt: db \"%d\", 10, 0");
+        lines.add("  scan_fmt: db \"%d\", 0");
+        lines.add("");
+        lines.add("section .text");
+        lines.add("global main");
+        lines.add("extern printf, scanf");
+        lines.add("main:");
+        for (Insn insn : code) lines.add(insn.toText());
+        return lines;
+    }
+}
@@ -0,0 +1,171 @@
+package compiler.codegen;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a block-local rewrite ({@link Simplifier}, {@link StrengthReduction})
+ * over large programs on a {@link ForkJoinPool}.
+ *
+ * The code is cut into chunks of whole blocks (each chunk after the first
+ * starts at a LABEL), every chunk is rewritten into a {@link Fragment} of
+ * its own, and the fragments are joined in program order. Workers never
+ * touch the shared {@link Operands} table: a new temporary is a negative
+ * placeholder in its fragment, and the merge hands out the real ids in
+ * program order. The result is therefore identical, id for id, to
+ * rewriting everything on one thread, however the work was split.
+ *
+ * How the work is split comes from a {@link Config}: programs below its
+ * threshold are rewritten on the calling thread as a single chunk.
+ */
+public final class BlockParallel {
+    /**
+     * @param pool      pool the chunks run on
+     * @param threshold programs smaller than this are not split
+     * @param minChunk  smallest chunk worth a task of its own
+     */
+    public record Config(ForkJoinPool pool, int threshold, int minChunk) {
+        /** The common pool; programs under 32K instructions are not split. */
+        public static final Config DEFAULT = new Config(ForkJoinPool.commonPool(), 1 << 15, 4096);
+        /** Never splits: everything runs on the calling thread. */
+        public static final Config SEQUENTIAL = new Config(ForkJoinPool.commonPool(), Integer.MAX_VALUE, 4096);
+
+        public Config {
+            if (minChunk < 1) throw new IllegalArgumentException("minChunk must be positive: " + minChunk);
+        }
+
+        /** This config with every program split, on 'pool'. */
+        public Config splitAll(ForkJoinPool pool) {
+            return new Config(pool, 0, minChunk);
+        }
+    }
+
+    private BlockParallel() { }
+
+    /** A rewrite that reads nothing outside the instructions it is given but read-only program-wide data. */
+    public interface Local {
+        /**
+         * Rewrites instructions [from, to) of 'code' into 'out'. The range
+         * starts at a block boundary; 'block' is the number of LABELs before
+         * 'from', so block numbers are the same however the code is split.
+         */
+        void rewrite(Tac code, int from, int to, int block, Fragment out);
+    }
+
+    /** Rewritten code of one chunk. */
+    public static final class Fragment {
+        private final Tac code;
+        private int temps;
+
+        Fragment(Tac code, int capacity) {
+            this.code = code.derive(capacity);
+        }
+
+        /** A fresh temporary, valid only in instructions emitted into this fragment. */
+        public int newTemp() {
+            return -2 - temps++;
+        }
+
+        public void emit(Op op, int dst, int a, int b) {
+            code.emit(op, dst, a, b);
+        }
+
+        public void copy(Tac from, int i) {
+            code.copy(from, i);
+        }
+    }
+
+    public static Tac run(Tac code, Local local, Config config) {
+        int n = code.size();
+        int parallelism = config.pool().getParallelism();
+        if (n < config.threshold() || parallelism < 2) {
+            Fragment all = new Fragment(code, n);
+            local.rewrite(code, 0, n, 0, all);
+            return merge(code, new Fragment[] { all });
+        }
+
+        // chunk boundaries at labels, about four chunks per worker
+        int target = Math.max(config.minChunk(), n / (parallelism * 4));
+        int[] starts = new int[n / target + 2];
+        int[] blocks = new int[starts.length];
+        int chunks = 1, labels = 0;
+        for (int i = 0; i < n; i++) {
+            if (code.op(i) != Op.LABEL) continue;
+            if (i - starts[chunks - 1] >= target) {
+                if (chunks == starts.length) break;
+                starts[chunks] = i;
+                blocks[chunks++] = labels;
+            }
+            labels++;
+        }
+        Fragment[] fragments = new Fragment[chunks];
+        int[] ends = new int[chunks];
+        for (int c = 0; c < chunks; c++) ends[c] = c + 1 < chunks ? starts[c + 1] : n;
+        config.pool().invoke(new Chunks(code, local, starts, ends, blocks, fragments, 0, chunks));
+        return merge(code, fragments);
+    }
+
+    // Splits the chunk range in halves until one chunk is left
+    private static final class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tac code;
+        private final Local local;
+        private final int[] starts, ends, blocks;
+        private final Fragment[] fragments;
+        private final int lo, hi;
+
+        Chunks(Tac code, Local local, int[] starts, int[] ends, int[] blocks, Fragment[] fragments, int lo, int hi) {
+            this.code = code;
+            this.local = local;
+            this.starts = starts;
+            this.ends = ends;
+            this.blocks = blocks;
+            this.fragments = fragments;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                Fragment f = new Fragment(code, ends[lo] - starts[lo]);
+                local.rewrite(code, starts[lo], ends[lo], blocks[lo], f);
+                fragments[lo] = f;
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Chunks(code, local, starts, ends, blocks, fragments, lo, mid),
+                      new Chunks(code, local, starts, ends, blocks, fragments, mid, hi));
+        }
+    }
+
+    // Joins the fragments in order, turning placeholders into real temporaries
+    private static Tac merge(Tac code, Fragment[] fragments) {
+        int size = 0;
+        boolean fresh = false;
+        for (Fragment f : fragments) {
+            size += f.code.size();
+            fresh |= f.temps > 0;
+        }
+        if (fragments.length == 1 && !fresh) return fragments[0].code;
+        Tac out = code.derive(size);
+        for (Fragment f : fragments) {
+            int first = 0;
+            for (int k = 0; k < f.temps; k++) {
+                int id = code.operands.newTemp();
+                if (k == 0) first = id;
+            }
+            Tac t = f.code;
+            for (int i = 0; i < t.size(); i++) {
+                Op op = t.op(i);
+                int d = t.dst(i), a = t.a(i), b = t.b(i);
+                if (op.writesDst() && d < Tac.NONE) d = first - 2 - d;
+                if (op != Op.CONST && a < Tac.NONE) a = first - 2 - a;
+                if ((op.isBinary() || op == Op.IFZ) && b < Tac.NONE) b = first - 2 - b;
+                out.emit(op, d, a, b);
+            }
+        }
+        return out;
+    }
+}
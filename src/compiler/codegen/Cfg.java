@@ -0,0 +1,120 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Basic blocks and control-flow edges of a {@link Tac} program.
+ *
+ * A block starts at instruction 0, at every LABEL and after every GOTO or
+ * IFZ; block 0 is the entry and has no predecessors. Successors of a
+ * block ending in IFZ are [fall-through, target]; the last block falls
+ * through to the program exit, which is not a block. Edges are kept in both directions, in the
+ * order they were found, so an edge is also identified by its position in
+ * the target's pred list (which is the order phi arguments use).
+ */
+public final class Cfg {
+    public final Tac code;
+    public final int blocks;
+    private final int[] start, end;         // instruction range [start, end) of each block
+    private final int[] blockOf;            // block of each instruction
+    private final int[][] succ, pred;
+
+    public Cfg(Tac code) {
+        this.code = code;
+        int n = code.size();
+        blockOf = new int[n];
+
+        // 1) leaders
+        boolean[] leader = new boolean[n + 1];
+        leader[0] = true;
+        for (int i = 0; i < n; i++) {
+            Op op = code.op(i);
+            if (op == Op.LABEL) leader[i] = true;
+            if (op == Op.GOTO || op == Op.IFZ) leader[i + 1] = true;
+        }
+        // a program starting with a label (a loop) gets an empty entry block,
+        // so the entry never has predecessors
+        boolean emptyEntry = n > 0 && code.op(0) == Op.LABEL;
+        int count = emptyEntry ? 1 : 0;
+        for (int i = 0; i < n; i++) if (leader[i]) count++;
+        blocks = Math.max(count, 1);
+        start = new int[blocks];
+        end = new int[blocks];
+        int b = emptyEntry ? 0 : -1;
+        for (int i = 0; i < n; i++) {
+            if (leader[i]) start[++b] = i;
+            blockOf[i] = b;
+        }
+        for (int k = 0; k < blocks; k++) end[k] = k + 1 < blocks ? start[k + 1] : n;
+
+        // 2) label operand -> block
+        int[] labelBlock = new int[code.operands.size()];
+        Arrays.fill(labelBlock, -1);
+        for (int i = 0; i < n; i++) {
+            if (code.op(i) == Op.LABEL) labelBlock[code.a(i)] = blockOf[i];
+        }
+
+        // 3) edges
+        succ = new int[blocks][];
+        int[] predCount = new int[blocks];
+        for (int k = 0; k < blocks; k++) {
+            int next = k + 1 < blocks ? k + 1 : -1;
+            int last = end[k] - 1;
+            Op op = last >= start[k] ? code.op(last) : null;
+            if (op == Op.GOTO) {
+                succ[k] = new int[] { target(labelBlock, code.a(last)) };
+            } else if (op == Op.IFZ) {
+                int t = target(labelBlock, code.b(last));
+                succ[k] = next < 0 ? new int[] { t } : new int[] { next, t };
+            } else {
+                succ[k] = next < 0 ? new int[0] : new int[] { next };
+            }
+            for (int s : succ[k]) predCount[s]++;
+        }
+        pred = new int[blocks][];
+        for (int k = 0; k < blocks; k++) pred[k] = new int[predCount[k]];
+        Arrays.fill(predCount, 0);
+        for (int k = 0; k < blocks; k++) {
+            for (int s : succ[k]) pred[s][predCount[s]++] = k;
+        }
+    }
+
+    private static int target(int[] labelBlock, int label) {
+        int t = labelBlock[label];
+        if (t < 0) throw new IllegalStateException("Jump to undefined label " + label);
+        return t;
+    }
+
+    public int start(int block)     { return start[block]; }
+    public int end(int block)       { return end[block]; }
+    public int blockOf(int instr)   { return blockOf[instr]; }
+    public int[] succ(int block)    { return succ[block]; }
+    public int[] pred(int block)    { return pred[block]; }
+
+    /** Blocks in reverse postorder from the entry; unreachable blocks are left out. */
+    public int[] reversePostorder() {
+        int[] order = new int[blocks];
+        int filled = blocks;
+        boolean[] seen = new boolean[blocks];
+        // iterative DFS: stack of (block, next successor index)
+        int[] stack = new int[blocks], next = new int[blocks];
+        int sp = 0;
+        stack[sp++] = 0;
+        seen[0] = true;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (next[sp - 1] < succ[b].length) {
+                int s = succ[b][next[sp - 1]++];
+                if (!seen[s]) {
+                    seen[s] = true;
+                    stack[sp] = s;
+                    next[sp++] = 0;
+                }
+            } else {
+                order[--filled] = b;
+                sp--;
+            }
+        }
+        return Arrays.copyOfRange(order, filled, blocks);
+    }
+}
@@ -0,0 +1,54 @@
+package compiler.codegen;
+
+/**
+ * Removes assignments whose result is never read, to temporaries and user
+ * variables alike, using {@link Liveness}. READ is always kept (it
+ * consumes input), and so is a DIV that may trap: only a division by a
+ * constant other than 0 and -1 can go.
+ */
+public final class DeadCode {
+    private DeadCode() { }
+
+    public static Tac run(Tac code) {
+        while (true) {
+            Cfg cfg = new Cfg(code);
+            Liveness live = new Liveness(cfg);
+            int[] constant = code.tempConstants();
+            boolean[] dead = new boolean[code.size()];
+            int removed = 0;
+            // sweep each block backwards, keeping the live set current
+            for (int b = 0; b < cfg.blocks; b++) {
+                long[] cur = live.liveOut(b);
+                for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                    int d = code.def(i);
+                    if (d != Tac.NONE) {
+                        if (!Liveness.contains(cur, d) && removable(code, i, constant)) {
+                            dead[i] = true;
+                            removed++;
+                            continue;
+                        }
+                        if (code.op(i) != Op.READ) Liveness.remove(cur, d);   // may keep the old value
+                    }
+                    if (code.usesA(i)) Liveness.add(cur, code.a(i));
+                    if (code.usesB(i)) Liveness.add(cur, code.b(i));
+                }
+            }
+            // removing a use can make a definition in another block dead: go again
+            if (removed == 0) return code;
+            Tac kept = code.derive();
+            for (int i = 0; i < code.size(); i++) if (!dead[i]) kept.copy(code, i);
+            code = kept;
+        }
+    }
+
+    private static boolean removable(Tac code, int i, int[] constant) {
+        return switch (code.op(i)) {
+            case READ -> false;
+            case DIV  -> {
+                int c = constant[code.b(i)];
+                yield c != 0 && c != -1;
+            }
+            default -> true;
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree and dominance frontiers of a {@link Cfg}, computed with
+ * the iterative algorithm of Cooper, Harvey and Kennedy over reverse
+ * postorder. Blocks unreachable from the entry have no dominator (-1)
+ * and are not part of the tree.
+ */
+public final class Dominators {
+    public final Cfg cfg;
+    private final int[] idom;
+    private final int[] rpo;            // reachable blocks in reverse postorder
+    private final int[][] children;     // dominator tree
+    private final int[][] frontier;
+
+    public Dominators(Cfg cfg) {
+        this.cfg = cfg;
+        int n = cfg.blocks;
+        rpo = cfg.reversePostorder();
+        int[] rpoIndex = new int[n];
+        Arrays.fill(rpoIndex, -1);
+        for (int k = 0; k < rpo.length; k++) rpoIndex[rpo[k]] = k;
+
+        idom = new int[n];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 1; k < rpo.length; k++) {
+                int b = rpo[k];
+                int d = -1;
+                for (int p : cfg.pred(b)) {
+                    if (idom[p] < 0) continue;      // unprocessed or unreachable
+                    d = d < 0 ? p : intersect(p, d, rpoIndex);
+                }
+                if (idom[b] != d) {
+                    idom[b] = d;
+                    changed = true;
+                }
+            }
+        }
+
+        // tree children, in reverse postorder
+        int[] childCount = new int[n];
+        for (int k = 1; k < rpo.length; k++) childCount[idom[rpo[k]]]++;
+        children = new int[n][];
+        for (int b = 0; b < n; b++) children[b] = new int[childCount[b]];
+        Arrays.fill(childCount, 0);
+        for (int k = 1; k < rpo.length; k++) {
+            int b = rpo[k], d = idom[b];
+            children[d][childCount[d]++] = b;
+        }
+
+        // dominance frontiers: walk up from each predecessor of a join point
+        // (the entry has no predecessors, so b is never the root)
+        int[][] df = new int[n][];
+        int[] dfCount = new int[n];
+        for (int b = 0; b < n; b++) df[b] = new int[2];
+        for (int b : rpo) {
+            int[] preds = cfg.pred(b);
+            if (preds.length < 2) continue;
+            for (int p : preds) {
+                if (idom[p] < 0) continue;
+                for (int r = p; r != idom[b]; r = idom[r]) {
+                    if (dfCount[r] > 0 && df[r][dfCount[r] - 1] == b) continue;
+                    if (dfCount[r] == df[r].length) df[r] = Arrays.copyOf(df[r], dfCount[r] * 2);
+                    df[r][dfCount[r]++] = b;
+                }
+            }
+        }
+        frontier = new int[n][];
+        for (int b = 0; b < n; b++) frontier[b] = Arrays.copyOf(df[b], dfCount[b]);
+    }
+
+    private int intersect(int a, int b, int[] rpoIndex) {
+        while (a != b) {
+            while (rpoIndex[a] > rpoIndex[b]) a = idom[a];
+            while (rpoIndex[b] > rpoIndex[a]) b = idom[b];
+        }
+        return a;
+    }
+
+    /** Immediate dominator of 'block' (the entry is its own), or -1 if unreachable. */
+    public int idom(int block)          { return idom[block]; }
+    public boolean reachable(int block) { return idom[block] >= 0; }
+    public int[] children(int block)    { return children[block]; }
+    public int[] frontier(int block)    { return frontier[block]; }
+    public int[] reversePostorder()     { return rpo; }
+
+    /** True if 'a' dominates 'b' (both reachable). */
+    public boolean dominates(int a, int b) {
+        while (b != a && b != 0) b = idom[b];
+        return b == a;
+    }
+}
@@ -0,0 +1,178 @@
+package compiler.codegen;
+
+import compiler.codegen.Asm.Insn;
+import compiler.codegen.Asm.Mnemonic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal static ELF64 executable writer for x86-64 Linux: no dynamic
+ * linking, no relocations. The file starts with the ELF header and two
+ * program headers, followed by the code from {@link X86Encoder}; both are
+ * mapped read/execute at {@link #BASE}. The initialized data follows
+ * (16-byte aligned) in a second, read/write segment on the next page,
+ * which the zero-initialized data extends in memory only.
+ *
+ * Section headers (.text, .data, .bss, and a symbol table with every
+ * label) are not needed to run the file, but let objdump and gdb show it.
+ */
+public final class ElfWriter {
+    static final long BASE = 0x400000;
+    private static final int PAGE = 0x1000;
+    private static final int ELF_HEADER = 64, PROGRAM_HEADER = 56, SECTION_HEADER = 64, SYMBOL = 24;
+
+    // Section indexes, in the order they are written
+    private static final int TEXT = 1, DATA = 2, BSS = 3, SYMTAB = 4, STRTAB = 5, SHSTRTAB = 6, SECTIONS = 7;
+
+    private ElfWriter() { }
+
+    /**
+     * Writes 'code' as an executable that starts at label 'entry'. 'data'
+     * holds initialized data and 'bss' the sizes of zero-initialized data,
+     * both by symbol, in the order they are laid out.
+     */
+    public static void write(Path file, List<Insn> code, String entry,
+                             Map<String, byte[]> data, Map<String, Integer> bss) throws IOException {
+        X86Encoder encoder = new X86Encoder(code);
+        long textAddress = BASE + ELF_HEADER + 2 * PROGRAM_HEADER;
+        int textEnd = ELF_HEADER + 2 * PROGRAM_HEADER + encoder.size();
+
+        // data and bss: the file offset and address agree modulo the page size, as mmap needs
+        int dataOffset = align(textEnd, 16);
+        long dataAddress = align(BASE + textEnd, PAGE) + dataOffset % PAGE;
+        Map<String, Long> symbols = new HashMap<>();
+        ByteArrayOutputStream initialized = new ByteArrayOutputStream();
+        for (Map.Entry<String, byte[]> d : data.entrySet()) {
+            symbols.put(d.getKey(), dataAddress + initialized.size());
+            initialized.write(d.getValue());
+        }
+        int dataSize = initialized.size();
+        long bssAddress = align(dataAddress + dataSize, 16), bssSize = 0;
+        for (Map.Entry<String, Integer> b : bss.entrySet()) {
+            bssSize = align(bssSize, Math.min(b.getValue(), 16));
+            symbols.put(b.getKey(), bssAddress + bssSize);
+            bssSize += b.getValue();
+        }
+        Map<String, Integer> labels = encoder.labels();
+        if (!labels.containsKey(entry)) throw new IllegalArgumentException("undefined entry point " + entry);
+        byte[] text = encoder.bytes(textAddress, symbols);
+
+        // symbol table: locals (labels, data) first, then the entry point and main
+        Strings strtab = new Strings(), shstrtab = new Strings();
+        ByteBuffer symtab = buffer(SYMBOL * (1 + labels.size() + symbols.size()));
+        symtab.position(SYMBOL);                                // symbol 0 is null
+        List<String> globals = new ArrayList<>();
+        for (Insn insn : code) {
+            if (insn.op() != Mnemonic.LABEL) continue;
+            String name = insn.text();
+            if (name.equals(entry) || name.equals("main")) globals.add(name);
+            else symbol(symtab, strtab.add(name), 0, TEXT, textAddress + labels.get(name));
+        }
+        for (String name : data.keySet()) symbol(symtab, strtab.add(name), 1, DATA, symbols.get(name));
+        for (String name : bss.keySet()) symbol(symtab, strtab.add(name), 1, BSS, symbols.get(name));
+        int firstGlobal = symtab.position() / SYMBOL;
+        for (String name : globals) symbol(symtab, strtab.add(name), 0x12, TEXT, textAddress + labels.get(name));
+
+        int symtabOffset = align(dataOffset + dataSize, 8);
+        int strtabOffset = symtabOffset + symtab.position();
+        int shstrtabOffset = strtabOffset + strtab.size();
+        int[] names = new int[SECTIONS];
+        String[] sectionNames = { "", ".text", ".data", ".bss", ".symtab", ".strtab", ".shstrtab" };
+        for (int s = 1; s < SECTIONS; s++) names[s] = shstrtab.add(sectionNames[s]);
+        int sectionsOffset = align(shstrtabOffset + shstrtab.size(), 8);
+
+        ByteBuffer elf = buffer(sectionsOffset + SECTIONS * SECTION_HEADER);
+        // ELF header: 64-bit, little-endian, current version, System V ABI
+        elf.put(new byte[] { 0x7F, 'E', 'L', 'F', 2, 1, 1, 0 }).position(16);
+        elf.putShort((short) 2);                                // ET_EXEC
+        elf.putShort((short) 62);                               // EM_X86_64
+        elf.putInt(1);
+        elf.putLong(textAddress + labels.get(entry));
+        elf.putLong(ELF_HEADER);
+        elf.putLong(sectionsOffset);
+        elf.putInt(0);
+        elf.putShort((short) ELF_HEADER).putShort((short) PROGRAM_HEADER).putShort((short) 2);
+        elf.putShort((short) SECTION_HEADER).putShort((short) SECTIONS).putShort((short) SHSTRTAB);
+        // PT_LOAD segments: headers and code (r-x), data and bss (rw-)
+        segment(elf, 5, 0, BASE, textEnd, textEnd);
+        segment(elf, 6, dataOffset, dataAddress, dataSize, bssAddress + bssSize - dataAddress);
+        elf.put(text);
+        elf.position(dataOffset).put(initialized.toByteArray());
+        elf.position(symtabOffset).put(symtab.array(), 0, symtab.position());
+        elf.put(strtab.bytes()).put(shstrtab.bytes());
+
+        elf.position(sectionsOffset + SECTION_HEADER);          // section 0 is null
+        section(elf, names[TEXT], 1, 6, textAddress, textEnd - text.length, text.length, 0, 0, 16, 0);
+        section(elf, names[DATA], 1, 3, dataAddress, dataOffset, dataSize, 0, 0, 16, 0);
+        section(elf, names[BSS], 8, 3, bssAddress, dataOffset + (bssAddress - dataAddress), bssSize, 0, 0, 16, 0);
+        section(elf, names[SYMTAB], 2, 0, 0, symtabOffset, symtab.position(), STRTAB, firstGlobal, 8, SYMBOL);
+        section(elf, names[STRTAB], 3, 0, 0, strtabOffset, strtab.size(), 0, 0, 1, 0);
+        section(elf, names[SHSTRTAB], 3, 0, 0, shstrtabOffset, shstrtab.size(), 0, 0, 1, 0);
+
+        Files.write(file, elf.array());
+        file.toFile().setExecutable(true, false);
+    }
+
+    private static void segment(ByteBuffer elf, int flags, long offset, long address, long fileSize, long memSize) {
+        elf.putInt(1).putInt(flags);                            // PT_LOAD; PF_R = 4, PF_W = 2, PF_X = 1
+        elf.putLong(offset).putLong(address).putLong(address);
+        elf.putLong(fileSize).putLong(memSize).putLong(PAGE);
+    }
+
+    private static void section(ByteBuffer elf, int name, int type, long flags, long address, long offset,
+                                long size, int link, int info, long alignment, long entrySize) {
+        elf.putInt(name).putInt(type).putLong(flags).putLong(address).putLong(offset).putLong(size);
+        elf.putInt(link).putInt(info).putLong(alignment).putLong(entrySize);
+    }
+
+    // 'info' is binding << 4 | type: 0 local notype, 1 local object, 0x12 global function
+    private static void symbol(ByteBuffer symtab, int name, int info, int section, long value) {
+        symtab.putInt(name).put((byte) info).put((byte) 0).putShort((short) section).putLong(value).putLong(0);
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int align(int n, int alignment) {
+        return (n + alignment - 1) / alignment * alignment;
+    }
+
+    private static long align(long n, long alignment) {
+        return (n + alignment - 1) / alignment * alignment;
+    }
+
+    /** A string table: NUL-terminated names, starting with the empty one. */
+    private static final class Strings {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Strings() {
+            bytes.write(0);
+        }
+
+        int add(String name) {
+            int at = bytes.size();
+            bytes.writeBytes(name.getBytes(StandardCharsets.US_ASCII));
+            bytes.write(0);
+            return at;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+}
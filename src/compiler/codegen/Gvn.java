@@ -0,0 +1,167 @@
+package compiler.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dominator-based global value numbering over an {@link Ssa} side table.
+ *
+ * Walks the dominator tree of the executable blocks with a scoped table
+ * of available expressions: an instruction computing the same operator on
+ * the same value numbers as one in a dominating position (or the same
+ * constant, per {@link Sccp}) is redundant. Copies take the number of
+ * their source, so equal expressions are found through user variables.
+ *
+ * Only temporaries with a single definition, all of whose uses read that
+ * definition, take part: a redundant one is removed and its uses renamed
+ * to the temporary that already holds the value ({@link #replacement}).
+ */
+public final class Gvn {
+    private record Key(int op, int a, int b) { }
+
+    private final Ssa ssa;
+    private final Sccp sccp;
+    private final Tac code;
+    private final int[] vn;                 // value number of each SSA value, -1 if not numbered yet
+    private final boolean[] single;         // operand is a temp with one def that all its uses read
+    private final boolean[] redundant;
+    private final int[] replacement;        // operand -> operand now holding its value, or -1
+    private final Map<Integer, Integer> constants = new HashMap<>();   // constant -> its value number
+    private int removed;
+
+    public Gvn(Ssa ssa, Sccp sccp) {
+        this.ssa = ssa;
+        this.sccp = sccp;
+        this.code = ssa.code;
+        int n = ssa.instructions, ops = code.operands.size();
+        vn = new int[ssa.undef + 1];
+        Arrays.fill(vn, -1);
+        vn[ssa.undef] = ssa.undef;
+        redundant = new boolean[n];
+        replacement = new int[ops];
+        Arrays.fill(replacement, -1);
+
+        // single-definition temps whose uses all read that definition
+        int[] defs = new int[ops], defAt = new int[ops];
+        for (int i = 0; i < n; i++) {
+            int d = code.def(i);
+            if (d != Tac.NONE) {
+                defs[d]++;
+                defAt[d] = i;
+            }
+        }
+        single = new boolean[ops];
+        for (int d = 0; d < ops; d++) single[d] = defs[d] == 1 && code.operands.isTemp(d);
+        for (int i = 0; i < n; i++) {
+            if (code.usesA(i) && single[code.a(i)] && ssa.useA(i) != defAt[code.a(i)]) single[code.a(i)] = false;
+            if (code.usesB(i) && single[code.b(i)] && ssa.useB(i) != defAt[code.b(i)]) single[code.b(i)] = false;
+        }
+
+        number();
+    }
+
+    // Preorder walk of the executable part of the dominator tree
+    private void number() {
+        Dominators dom = ssa.dom;
+        Cfg cfg = ssa.cfg;
+        Map<Key, Integer> available = new HashMap<>();
+        List<Key> log = new ArrayList<>();
+        int[] stack = new int[cfg.blocks], mark = new int[cfg.blocks], next = new int[cfg.blocks];
+        int sp = 0;
+        stack[sp] = 0;
+        next[sp++] = -1;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (next[sp - 1] < 0) {
+                mark[sp - 1] = log.size();
+                for (int k : ssa.blockPhis(b)) {
+                    int v = ssa.instructions + k;
+                    vn[v] = sccp.isInt(v) ? constant(v) : v;
+                }
+                for (int i = cfg.start(b); i < cfg.end(b); i++) visit(i, available, log);
+                next[sp - 1] = 0;
+            }
+            int[] kids = dom.children(b);
+            while (next[sp - 1] < kids.length && !sccp.executable(kids[next[sp - 1]])) next[sp - 1]++;
+            if (next[sp - 1] < kids.length) {
+                stack[sp] = kids[next[sp - 1]++];
+                next[sp++] = -1;
+            } else {
+                int m = mark[sp - 1];
+                for (int k = log.size() - 1; k >= m; k--) available.remove(log.remove(k));
+                sp--;
+            }
+        }
+    }
+
+    private void visit(int i, Map<Key, Integer> available, List<Key> log) {
+        Op op = code.op(i);
+        Key key;
+        if (sccp.isInt(i)) {
+            vn[i] = constant(i);
+            key = new Key(Op.CONST.ordinal(), sccp.value(i), 0);
+        } else if (op == Op.LIT) {
+            vn[i] = i;
+            key = new Key(Op.LIT.ordinal(), code.a(i), 0);
+        } else if (op == Op.COPY) {
+            vn[i] = number(ssa.useA(i));
+            return;
+        } else if (op.isBinary()) {
+            int a = number(ssa.useA(i)), b = number(ssa.useB(i));
+            if ((op == Op.ADD || op == Op.MUL) && a > b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            vn[i] = i;
+            key = new Key(op.ordinal(), a, b);
+        } else if (op.hasImmediate()) {
+            vn[i] = i;
+            key = new Key(op.ordinal(), number(ssa.useA(i)), code.b(i));
+        } else {
+            if (code.def(i) != Tac.NONE) vn[i] = i;      // READ
+            return;
+        }
+
+        Integer holder = available.get(key);
+        if (holder != null) {
+            vn[i] = vn[holder];
+            if (single[code.dst(i)]) {
+                redundant[i] = true;
+                replacement[code.dst(i)] = code.dst(holder);
+                removed++;
+            }
+        } else if (single[code.dst(i)]) {
+            available.put(key, i);
+            log.add(key);
+        }
+    }
+
+    private int number(int value) {
+        if (sccp.isInt(value)) return constant(value);
+        return vn[value] < 0 ? value : vn[value];
+    }
+
+    private int constant(int value) {
+        return constants.computeIfAbsent(sccp.value(value), c -> value);
+    }
+
+    /** True if instruction 'i' recomputes a value another temp already holds. */
+    public boolean redundant(int i) {
+        return redundant[i];
+    }
+
+    /** Operand to read instead of 'operand' (itself unless its definition was removed). */
+    public int replacement(int operand) {
+        int r = replacement[operand];
+        return r < 0 ? operand : r;
+    }
+
+    /** Number of redundant instructions found. */
+    public int removed() {
+        return removed;
+    }
+}
@@ -0,0 +1,118 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Control-flow cleanup on TAC:
+ * <ul>
+ *   <li>a jump to a label that is followed by GOTO goes straight to the
+ *       final target (jump-to-jump chains collapse; cycles are left alone)</li>
+ *   <li>runs of labels at the same spot are merged into the first one</li>
+ *   <li>blocks no path from the entry reaches (e.g. code after a GOTO) are removed</li>
+ *   <li>GOTO and IFZ to the label right after them are removed</li>
+ *   <li>labels nothing jumps to are removed</li>
+ * </ul>
+ */
+public final class JumpThreading {
+    private JumpThreading() { }
+
+    public static Tac run(Tac code) {
+        while (true) {
+            Tac next = removeUnreachable(retarget(code));
+            next = removeFallThroughJumps(next);
+            next = removeUnusedLabels(next);
+            if (next.size() == code.size()) return next;
+            code = next;
+        }
+    }
+
+    // Points every GOTO/IFZ at the final label of its jump chain
+    private static Tac retarget(Tac code) {
+        int n = code.size();
+        int[] labelAt = labelPositions(code);
+        int[] target = new int[code.operands.size()];
+        Arrays.fill(target, -1);
+        Tac out = code.derive();
+        for (int i = 0; i < n; i++) {
+            Op op = code.op(i);
+            if (op == Op.GOTO) out.emit(Op.GOTO, Tac.NONE, follow(code, code.a(i), labelAt, target), Tac.NONE);
+            else if (op == Op.IFZ) out.emit(Op.IFZ, Tac.NONE, code.a(i), follow(code, code.b(i), labelAt, target));
+            else out.copy(code, i);
+        }
+        return out;
+    }
+
+    // Final label reached from 'label' through labels and GOTOs (memoized in 'target')
+    private static int follow(Tac code, int label, int[] labelAt, int[] target) {
+        if (target[label] >= 0) return target[label];
+        int l = label;
+        // bounded walk: a GOTO cycle just stops where it was
+        for (int steps = 0; steps < code.size(); steps++) {
+            int i = labelAt[l];
+            while (i > 0 && code.op(i - 1) == Op.LABEL) i--;        // first label of the run
+            int first = code.a(i);
+            while (i < code.size() && code.op(i) == Op.LABEL) i++;
+            if (i == code.size() || code.op(i) != Op.GOTO || code.a(i) == l || code.a(i) == first) {
+                l = first;
+                break;
+            }
+            l = code.a(i);
+        }
+        target[label] = l;
+        return l;
+    }
+
+    private static Tac removeUnreachable(Tac code) {
+        Cfg cfg = new Cfg(code);
+        boolean[] reachable = new boolean[cfg.blocks];
+        for (int b : cfg.reversePostorder()) reachable[b] = true;
+        Tac out = code.derive();
+        for (int b = 0; b < cfg.blocks; b++) {
+            if (!reachable[b]) continue;
+            for (int i = cfg.start(b); i < cfg.end(b); i++) out.copy(code, i);
+        }
+        return out;
+    }
+
+    private static Tac removeFallThroughJumps(Tac code) {
+        Tac out = code.derive();
+        for (int i = 0; i < code.size(); i++) {
+            Op op = code.op(i);
+            int label = op == Op.GOTO ? code.a(i) : op == Op.IFZ ? code.b(i) : Tac.NONE;
+            if (label != Tac.NONE && labelFollows(code, i + 1, label)) continue;
+            out.copy(code, i);
+        }
+        return out;
+    }
+
+    // True if 'label' is among the labels starting at instruction 'i'
+    private static boolean labelFollows(Tac code, int i, int label) {
+        for (; i < code.size() && code.op(i) == Op.LABEL; i++) {
+            if (code.a(i) == label) return true;
+        }
+        return false;
+    }
+
+    private static Tac removeUnusedLabels(Tac code) {
+        boolean[] used = new boolean[code.operands.size()];
+        for (int i = 0; i < code.size(); i++) {
+            Op op = code.op(i);
+            if (op == Op.GOTO) used[code.a(i)] = true;
+            else if (op == Op.IFZ) used[code.b(i)] = true;
+        }
+        Tac out = code.derive();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.op(i) == Op.LABEL && !used[code.a(i)]) continue;
+            out.copy(code, i);
+        }
+        return out;
+    }
+
+    private static int[] labelPositions(Tac code) {
+        int[] at = new int[code.operands.size()];
+        for (int i = 0; i < code.size(); i++) {
+            if (code.op(i) == Op.LABEL) at[code.a(i)] = i;
+        }
+        return at;
+    }
+}
@@ -0,0 +1,196 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loop-invariant code motion. For each natural loop ({@link Loops}),
+ * innermost first, an instruction moves to a preheader in front of the
+ * loop header when
+ * <ul>
+ *   <li>every operand it reads is not written in the loop, or only by an
+ *       instruction that is itself being hoisted</li>
+ *   <li>it is the loop's only write to its destination, and the
+ *       destination is not live into the header (no read sees an older value)</li>
+ *   <li>the destination is not live where the loop exits, or its block
+ *       dominates every exit (so running it although the loop body never
+ *       runs changes nothing)</li>
+ *   <li>it has no side effect and cannot fail: never READ or a string
+ *       literal, and DIV only by a constant other than 0 and -1</li>
+ * </ul>
+ * The preheader gets a label of its own only if jumps from outside the
+ * loop target the header; those jumps are moved to it. Instructions hoisted
+ * out of an inner loop can leave an outer one in the next round; rounds
+ * repeat until nothing moves.
+ */
+public final class Licm {
+    private Licm() { }
+
+    public static Tac run(Tac code) {
+        while (true) {
+            Tac next = round(code);
+            if (next == code) return code;
+            code = next;
+        }
+    }
+
+    // One round over all loops; returns 'code' itself if nothing was hoisted
+    private static Tac round(Tac code) {
+        Cfg cfg = new Cfg(code);
+        Dominators dom = new Dominators(cfg);
+        List<Loops.Loop> loops = new Loops(dom).loops();
+        if (loops.isEmpty()) return code;
+        Liveness live = new Liveness(cfg);
+        int[] constant = code.tempConstants();
+        int n = code.size(), ops = code.operands.size();
+
+        int[] hoistedTo = new int[n];           // header block an instruction moves in front of, or -1
+        Arrays.fill(hoistedTo, -1);
+        boolean[] claimed = new boolean[n];     // already moving out of an inner loop this round
+        int[] defsInLoop = new int[ops];
+        int[] defAt = new int[ops];             // the (last) write in the current loop
+        int[] stamp = new int[ops];
+        Arrays.fill(stamp, -1);
+        boolean[] headerHoists = new boolean[cfg.blocks];
+        boolean any = false;
+
+        for (int li = 0; li < loops.size(); li++) {
+            Loops.Loop loop = loops.get(li);
+            int h = loop.header;
+            // the preheader goes right in front of the header's label, so no
+            // block of the loop may fall through into it
+            if (cfg.start(h) >= cfg.end(h) || code.op(cfg.start(h)) != Op.LABEL) continue;
+            if (loop.contains(h - 1) && Arrays.stream(cfg.succ(h - 1)).anyMatch(s -> s == h)) continue;
+
+            // writes per operand inside the loop
+            for (int b : loop.blocks()) {
+                for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                    int d = code.def(i);
+                    if (d == Tac.NONE) continue;
+                    if (stamp[d] != li) {
+                        stamp[d] = li;
+                        defsInLoop[d] = 0;
+                    }
+                    defsInLoop[d]++;
+                    defAt[d] = i;
+                }
+            }
+            // operands live where the loop is left
+            long[] liveAtExit = new long[(ops + 63) >>> 6];
+            int exits = 0;
+            int[] exiting = new int[loop.blocks().length];
+            for (int b : loop.blocks()) {
+                boolean exitsHere = false;
+                for (int s : cfg.succ(b)) {
+                    if (loop.contains(s)) continue;
+                    exitsHere = true;
+                    long[] in = live.liveIn(s);
+                    for (int w = 0; w < in.length; w++) liveAtExit[w] |= in[w];
+                }
+                // the last block also exits by falling off the end of the program
+                if (exitsHere || cfg.succ(b).length == 0) exiting[exits++] = b;
+            }
+            long[] liveIntoHeader = live.liveIn(h);
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int b : loop.blocks()) {
+                    for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                        if (hoistedTo[i] >= 0 || claimed[i]) continue;
+                        int d = code.def(i);
+                        if (d == Tac.NONE || !movable(code, i, constant)) continue;
+                        if (defsInLoop[d] != 1 || Liveness.contains(liveIntoHeader, d)) continue;
+                        if (code.usesA(i) && !invariant(code.a(i), li, stamp, defsInLoop, defAt, hoistedTo, h)) continue;
+                        if (code.usesB(i) && !invariant(code.b(i), li, stamp, defsInLoop, defAt, hoistedTo, h)) continue;
+                        if (Liveness.contains(liveAtExit, d) && !dominatesAll(dom, b, exiting, exits)) continue;
+                        hoistedTo[i] = h;
+                        headerHoists[h] = true;
+                        changed = true;
+                        any = true;
+                    }
+                }
+            }
+            // outer loops leave these alone until the next round
+            for (int b : loop.blocks()) {
+                for (int i = cfg.start(b); i < cfg.end(b); i++) if (hoistedTo[i] >= 0) claimed[i] = true;
+            }
+        }
+        if (!any) return code;
+        return rewrite(code, cfg, loops, hoistedTo, headerHoists);
+    }
+
+    private static boolean movable(Tac code, int i, int[] constant) {
+        return switch (code.op(i)) {
+            case CONST, COPY, ADD, SUB, MUL, SHL, SAR, SHR, MULH -> true;
+            case LIT -> {
+                // a string literal has no int value: it must not start running where it did not
+                String text = code.operands.name(code.a(i));
+                yield text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false");
+            }
+            case DIV -> {
+                int c = constant[code.b(i)];
+                yield c != 0 && c != -1;
+            }
+            default -> false;
+        };
+    }
+
+    // Not written in the loop, or only by an instruction hoisted in front of this header
+    private static boolean invariant(int operand, int li, int[] stamp, int[] defsInLoop, int[] defAt,
+                                     int[] hoistedTo, int header) {
+        if (stamp[operand] != li) return true;
+        return defsInLoop[operand] == 1 && hoistedTo[defAt[operand]] == header;
+    }
+
+    private static boolean dominatesAll(Dominators dom, int block, int[] blocks, int count) {
+        for (int k = 0; k < count; k++) if (!dom.dominates(block, blocks[k])) return false;
+        return true;
+    }
+
+    private static Tac rewrite(Tac code, Cfg cfg, List<Loops.Loop> loops, int[] hoistedTo, boolean[] headerHoists) {
+        int n = code.size();
+        Loops.Loop[] loopOf = new Loops.Loop[cfg.blocks];
+        for (Loops.Loop loop : loops) loopOf[loop.header] = loop;
+
+        // jumps from outside a loop to its header go to the preheader's own label instead
+        int[] preLabel = new int[cfg.blocks];
+        Arrays.fill(preLabel, Tac.NONE);
+        int[] retarget = new int[n];
+        Arrays.fill(retarget, Tac.NONE);
+        for (int b = 0; b < cfg.blocks; b++) {
+            int last = cfg.end(b) - 1;
+            if (last < cfg.start(b)) continue;
+            Op op = code.op(last);
+            if (op != Op.GOTO && op != Op.IFZ) continue;
+            int[] succ = cfg.succ(b);
+            int target = succ[succ.length - 1];     // the jump's own edge comes last
+            if (!headerHoists[target] || loopOf[target].contains(b)) continue;
+            if (preLabel[target] == Tac.NONE) preLabel[target] = code.operands.newLabel();
+            retarget[last] = preLabel[target];
+        }
+
+        // hoisted instructions per header, in their original order
+        int[][] moved = new int[cfg.blocks][];
+        int[] count = new int[cfg.blocks];
+        for (int i = 0; i < n; i++) if (hoistedTo[i] >= 0) count[hoistedTo[i]]++;
+        for (int b = 0; b < cfg.blocks; b++) if (count[b] > 0) moved[b] = new int[count[b]];
+        Arrays.fill(count, 0);
+        for (int i = 0; i < n; i++) if (hoistedTo[i] >= 0) moved[hoistedTo[i]][count[hoistedTo[i]]++] = i;
+
+        Tac out = code.derive();
+        for (int b = 0; b < cfg.blocks; b++) {
+            if (headerHoists[b]) {
+                if (preLabel[b] != Tac.NONE) out.emit(Op.LABEL, Tac.NONE, preLabel[b], Tac.NONE);
+                for (int i : moved[b]) out.copy(code, i);
+            }
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (hoistedTo[i] >= 0) continue;
+                if (retarget[i] == Tac.NONE) out.copy(code, i);
+                else if (code.op(i) == Op.GOTO) out.emit(Op.GOTO, Tac.NONE, retarget[i], Tac.NONE);
+                else out.emit(Op.IFZ, Tac.NONE, code.a(i), retarget[i]);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,78 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Backward liveness of TAC operands over a {@link Cfg}, with one bit set
+ * (long words, one bit per operand id) per block. An operand is live at a
+ * point if some path from there reads it before writing it; nothing is
+ * live at the program exit. READ does not count as a write: at end of
+ * input it leaves its variable unchanged, as scanf does.
+ */
+public final class Liveness {
+    public final Cfg cfg;
+    private final int words;
+    private final long[][] liveIn, liveOut;
+
+    public Liveness(Cfg cfg) {
+        this.cfg = cfg;
+        Tac code = cfg.code;
+        int blocks = cfg.blocks;
+        words = (code.operands.size() + 63) >>> 6;
+
+        // per block: operands read before any write (use), and operands written (def)
+        long[][] use = new long[blocks][words], def = new long[blocks][words];
+        for (int b = 0; b < blocks; b++) {
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (code.usesA(i) && !contains(def[b], code.a(i))) add(use[b], code.a(i));
+                if (code.usesB(i) && !contains(def[b], code.b(i))) add(use[b], code.b(i));
+                int d = code.def(i);
+                if (d != Tac.NONE && code.op(i) != Op.READ) add(def[b], d);
+            }
+        }
+
+        // in = use | (out & ~def), out = union of successors' in; iterate to a fixpoint
+        liveIn = new long[blocks][words];
+        liveOut = new long[blocks][words];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = blocks - 1; b >= 0; b--) {
+                long[] out = liveOut[b], in = liveIn[b];
+                for (int s : cfg.succ(b)) {
+                    long[] sin = liveIn[s];
+                    for (int w = 0; w < words; w++) out[w] |= sin[w];
+                }
+                for (int w = 0; w < words; w++) {
+                    long v = use[b][w] | (out[w] & ~def[b][w]);
+                    if (v != in[w]) {
+                        in[w] = v;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Operands live on entry to 'block' (do not modify). */
+    public long[] liveIn(int block) {
+        return liveIn[block];
+    }
+
+    /** A fresh copy of the operands live on exit from 'block'. */
+    public long[] liveOut(int block) {
+        return Arrays.copyOf(liveOut[block], words);
+    }
+
+    public static boolean contains(long[] set, int id) {
+        return (set[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public static void add(long[] set, int id) {
+        set[id >>> 6] |= 1L << id;
+    }
+
+    public static void remove(long[] set, int id) {
+        set[id >>> 6] &= ~(1L << id);
+    }
+}
@@ -0,0 +1,214 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Unrolls counting loops of the shape {@code while (x) { ...; x = x - 1 }}:
+ * <pre>
+ *   Lh: IFZ x GOTO Lexit
+ *       body            (no labels or jumps; its only write to x is x - 1)
+ *       GOTO Lh
+ * </pre>
+ * Such a loop runs exactly x times (x read as unsigned: a negative count
+ * wraps around like the generated code does).
+ *
+ * If x is a known constant of at most {@link #MAX_FULL_TRIPS} where the
+ * loop is entered, the loop is replaced by that many copies of its body.
+ * Otherwise the body is copied 'factor' times (a power of two) into a new
+ * loop in front of the original one, which tests only once per round
+ * whether at least 'factor' iterations remain; the original loop is left as
+ * the remainder loop for the last few.
+ *
+ * Temporaries that do not carry a value from one iteration to the next get
+ * fresh names in each copy, so they keep a single definition. Unrolling
+ * stops once the code has grown by the budget, and bodies longer than
+ * {@link #MAX_BODY} instructions are never copied.
+ */
+public final class LoopUnrolling {
+    public static final int DEFAULT_FACTOR = 4;
+    public static final int MAX_FULL_TRIPS = 16;
+    public static final int MAX_BODY = 32;
+
+    private LoopUnrolling() { }
+
+    /** Unrolls with {@link #DEFAULT_FACTOR} and the default budget. */
+    public static Tac run(Tac code) {
+        return run(code, DEFAULT_FACTOR, defaultBudget(code));
+    }
+
+    /** Default growth budget: a quarter of the program, plus room for a few small loops. */
+    public static int defaultBudget(Tac code) {
+        return 64 + code.size() / 4;
+    }
+
+    /**
+     * @param factor copies per round of the unrolled loop; rounded down to a
+     *               power of two, and below 2 only full unrolling is done
+     * @param budget instructions the program may grow by in total
+     */
+    public static Tac run(Tac code, int factor, int budget) {
+        factor = factor < 2 ? 1 : Integer.highestOneBit(factor);
+        int n = code.size(), ops = code.operands.size();
+        boolean[] known = code.constantTemps();
+        int[] constant = code.tempConstants();
+
+        int[] labelAt = new int[ops];
+        int[] jumpsTo = new int[ops];               // GOTO/IFZ per label
+        for (int i = 0; i < n; i++) {
+            Op op = code.op(i);
+            if (op == Op.LABEL) labelAt[code.a(i)] = i;
+            else if (op == Op.GOTO) jumpsTo[code.a(i)]++;
+            else if (op == Op.IFZ) jumpsTo[code.b(i)]++;
+        }
+
+        Cfg cfg = null;
+        Liveness live = null;
+        int[] trips = new int[n];                   // per header label: full unroll count, -1 partial, 0 none
+        int[] endAt = new int[n];                   // per header label: its back-edge GOTO
+        for (int i = 0; i + 2 < n; i++) {
+            if (code.op(i) != Op.LABEL || code.op(i + 1) != Op.IFZ) continue;
+            int h = code.a(i), x = code.a(i + 1);
+            int j = i + 2;
+            while (j < n && !isControl(code.op(j))) j++;
+            if (j == n || code.op(j) != Op.GOTO || code.a(j) != h || code.b(i + 1) == h) continue;
+            int body = j - (i + 2);
+            if (!countsDown(code, i + 2, j, x, known, constant)) continue;
+
+            int entry = jumpsTo[h] == 1 ? entryConstant(code, i, x, known, constant) : 0;
+            if (entry > 0 && entry <= MAX_FULL_TRIPS && entry * body <= budget) {
+                trips[i] = entry;
+                budget -= entry * body;
+            } else if (factor > 1 && body <= MAX_BODY && factor * body + 4 <= budget) {
+                trips[i] = -1;
+                budget -= factor * body + 4;
+            } else {
+                continue;
+            }
+            endAt[i] = j;
+            if (cfg == null) {
+                cfg = new Cfg(code);
+                live = new Liveness(cfg);
+            }
+        }
+        if (cfg == null) return code;
+
+        // jumps into a partially unrolled loop now enter the unrolled copy first
+        int[] entryLabel = new int[ops];
+        Arrays.fill(entryLabel, Tac.NONE);
+        for (int i = 0; i < n; i++) if (trips[i] < 0) entryLabel[code.a(i)] = code.operands.newLabel();
+
+        Tac out = code.derive();
+        int[] rename = new int[ops];
+        for (int i = 0; i < n; i++) {
+            Op op = code.op(i);
+            if (trips[i] == 0) {
+                if (op == Op.GOTO && entryLabel[code.a(i)] != Tac.NONE && !isBackEdge(code, i, labelAt, endAt)) {
+                    out.emit(Op.GOTO, Tac.NONE, entryLabel[code.a(i)], Tac.NONE);
+                } else if (op == Op.IFZ && entryLabel[code.b(i)] != Tac.NONE) {
+                    out.emit(Op.IFZ, Tac.NONE, code.a(i), entryLabel[code.b(i)]);
+                } else {
+                    out.copy(code, i);
+                }
+                continue;
+            }
+            int x = code.a(i + 1), j = endAt[i];
+            long[] carried = live.liveIn(cfg.blockOf(i));
+            if (trips[i] > 0) {
+                for (int k = 0; k < trips[i]; k++) copyBody(code, out, i + 2, j, carried, rename);
+                // the exit may have been threaded past the code right after the loop
+                int exit = code.b(i + 1);
+                if (!labelFollows(code, j + 1, exit)) out.emit(Op.GOTO, Tac.NONE, exit, Tac.NONE);
+                i = j;                              // the loop itself is gone
+                continue;
+            }
+            int head = entryLabel[code.a(i)];
+            int more = code.operands.newTemp();
+            out.emit(Op.LABEL, Tac.NONE, head, Tac.NONE);
+            out.emit(Op.SHR, more, x, Integer.numberOfTrailingZeros(factor));
+            out.emit(Op.IFZ, Tac.NONE, more, code.a(i));
+            for (int k = 0; k < factor; k++) copyBody(code, out, i + 2, j, carried, rename);
+            out.emit(Op.GOTO, Tac.NONE, head, Tac.NONE);
+            out.copy(code, i);                      // the original loop handles the rest
+        }
+        return out;
+    }
+
+    private static boolean isControl(Op op) {
+        return op == Op.LABEL || op == Op.GOTO || op == Op.IFZ;
+    }
+
+    // 'label' is among the labels starting at instruction 'i'
+    private static boolean labelFollows(Tac code, int i, int label) {
+        for (; i < code.size() && code.op(i) == Op.LABEL; i++) if (code.a(i) == label) return true;
+        return false;
+    }
+
+    private static boolean isBackEdge(Tac code, int i, int[] labelAt, int[] endAt) {
+        return endAt[labelAt[code.a(i)]] == i;
+    }
+
+    // The only write to x in [from, to) is x - 1 (directly or through a temp)
+    private static boolean countsDown(Tac code, int from, int to, int x, boolean[] known, int[] constant) {
+        int at = -1;
+        for (int i = from; i < to; i++) {
+            if (code.def(i) != x) continue;
+            if (at >= 0) return false;
+            at = i;
+        }
+        if (at < 0) return false;
+        if (code.op(at) != Op.COPY) return isDecrement(code, at, x, known, constant);
+        int t = code.a(at);
+        int def = -1;
+        for (int i = from; i < at; i++) {
+            if (code.def(i) != t) continue;
+            if (def >= 0) return false;
+            def = i;
+        }
+        for (int i = at + 1; i < to; i++) if (code.def(i) == t) return false;
+        return def >= 0 && isDecrement(code, def, x, known, constant);
+    }
+
+    // x - 1, x + -1 or -1 + x
+    private static boolean isDecrement(Tac code, int i, int x, boolean[] known, int[] constant) {
+        int a = code.a(i), b = code.b(i);
+        return switch (code.op(i)) {
+            case SUB -> a == x && known[b] && constant[b] == 1;
+            case ADD -> a == x && known[b] && constant[b] == -1 || b == x && known[a] && constant[a] == -1;
+            default -> false;
+        };
+    }
+
+    // Constant x holds when the loop at 'header' is entered by falling into it, or 0 if unknown
+    private static int entryConstant(Tac code, int header, int x, boolean[] known, int[] constant) {
+        for (int i = header - 1; i >= 0; i--) {
+            Op op = code.op(i);
+            if (op == Op.LABEL || op == Op.GOTO) return 0;
+            if (code.def(i) != x) continue;
+            if (op == Op.CONST) return code.a(i);
+            return op == Op.COPY && known[code.a(i)] ? constant[code.a(i)] : 0;
+        }
+        return 0;
+    }
+
+    // Copies [from, to), giving temps that are dead between iterations fresh names
+    private static void copyBody(Tac code, Tac out, int from, int to, long[] carried, int[] rename) {
+        Operands operands = code.operands;
+        for (int i = from; i < to; i++) {
+            int d = code.def(i);
+            if (d != Tac.NONE && operands.isTemp(d) && !Liveness.contains(carried, d)) rename[d] = 0;
+        }
+        for (int i = from; i < to; i++) {
+            int a = code.a(i), b = code.b(i), dst = code.dst(i);
+            if (code.usesA(i) && operands.isTemp(a) && rename[a] > 0) a = rename[a] - 1;
+            if (code.usesB(i) && operands.isTemp(b) && rename[b] > 0) b = rename[b] - 1;
+            int d = code.def(i);
+            if (d != Tac.NONE && operands.isTemp(d) && !Liveness.contains(carried, d)) {
+                int fresh = operands.newTemp();
+                rename[d] = fresh + 1;
+                if (code.op(i) == Op.READ) a = fresh;
+                else dst = fresh;
+            }
+            out.emit(code.op(i), dst, a, b);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Natural loops of a {@link Cfg}: an edge b -> h is a back edge when h
+ * dominates b (the GOTO Lstart at the end of a while body), and the loop
+ * of header h is h plus every block that reaches one of its back edges
+ * without passing through h. Loops are listed innermost first (fewest
+ * blocks first).
+ */
+public final class Loops {
+    /** One natural loop. */
+    public static final class Loop {
+        public final int header;
+        private final int[] blocks;         // sorted
+        private final boolean[] member;
+
+        Loop(int header, int[] blocks, int totalBlocks) {
+            this.header = header;
+            this.blocks = blocks;
+            this.member = new boolean[totalBlocks];
+            for (int b : blocks) member[b] = true;
+        }
+
+        public int[] blocks()               { return blocks; }
+        public boolean contains(int block)  { return member[block]; }
+    }
+
+    public final Dominators dom;
+    private final List<Loop> loops = new ArrayList<>();
+
+    public Loops(Dominators dom) {
+        this.dom = dom;
+        Cfg cfg = dom.cfg;
+        int n = cfg.blocks;
+        int[] seen = new int[n];
+        Arrays.fill(seen, -1);
+        int[] work = new int[n];
+        for (int h : dom.reversePostorder()) {
+            // all back edges into h form one loop
+            int count = 0, top = 0;
+            int[] body = new int[4];
+            for (int b : cfg.pred(h)) {
+                if (!dom.reachable(b) || !dom.dominates(h, b)) continue;
+                if (seen[h] != h) {
+                    seen[h] = h;
+                    body[count++] = h;
+                }
+                if (seen[b] != h) {
+                    seen[b] = h;
+                    work[top++] = b;
+                }
+            }
+            if (count == 0) continue;
+            while (top > 0) {
+                int b = work[--top];
+                if (count == body.length) body = Arrays.copyOf(body, count * 2);
+                body[count++] = b;
+                for (int p : cfg.pred(b)) {
+                    if (seen[p] == h || !dom.reachable(p)) continue;
+                    seen[p] = h;
+                    work[top++] = p;
+                }
+            }
+            int[] blocks = Arrays.copyOf(body, count);
+            Arrays.sort(blocks);
+            loops.add(new Loop(h, blocks, n));
+        }
+        loops.sort((x, y) -> Integer.compare(x.blocks.length, y.blocks.length));
+    }
+
+    /** All loops, innermost first. */
+    public List<Loop> loops() {
+        return loops;
+    }
+}
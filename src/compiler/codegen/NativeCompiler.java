@@ -0,0 +1,66 @@
+package compiler.codegen;
+
+import compiler.ast.Program;
+import compiler.error.SemanticException;
+import compiler.error.SyntaxException;
+import compiler.lexer.TokenBuffer;
+import compiler.parser.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compiles a source file to a static x86-64 Linux executable, without an
+ * external assembler or linker: TAC, optimized at {@link TACOptimizer#level},
+ * then {@link ASMGenerator} and {@link Peephole}, encoded by
+ * {@link X86Encoder} and written with {@link NativeRuntime} by
+ * {@link ElfWriter}.
+ *
+ * Usage: NativeCompiler source [-o executable] [-S]
+ * (default output: the source name without its extension; -S also writes
+ * the NASM text of main next to it, as executable.asm)
+ */
+public final class NativeCompiler {
+    private NativeCompiler() { }
+
+    /** Writes the TAC program as an executable; returns the assembly it was encoded from. */
+    public static Asm compile(Tac code, Path executable) throws IOException {
+        Asm asm = Peephole.optimize(new ASMGenerator(code).assemble());
+        ElfWriter.write(executable, NativeRuntime.link(asm), "_start", NativeRuntime.DATA, NativeRuntime.BSS);
+        return asm;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path source = null, executable = null;
+        boolean listing = false;
+        for (int k = 0; k < args.length; k++) {
+            if (args[k].equals("-o") && k + 1 < args.length) executable = Paths.get(args[++k]);
+            else if (args[k].equals("-S")) listing = true;
+            else source = Paths.get(args[k]);
+        }
+        if (source == null) {
+            System.err.println("Usage: NativeCompiler source [-o executable] [-S]");
+            System.exit(2);
+        }
+        if (executable == null) {
+            String name = source.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            executable = source.resolveSibling(dot > 0 ? name.substring(0, dot) : name + ".out");
+        }
+
+        try {
+            Program program = new Parser(TokenBuffer.tokenize(Files.readString(source))).parseProgram();
+            Tac code = TACOptimizer.optimize(new TACGenerator().generate(program.statements));
+            Asm asm = compile(code, executable);
+            if (listing) Files.write(executable.resolveSibling(executable.getFileName() + ".asm"), asm.toText());
+        } catch (SyntaxException se) {
+            System.err.println("Syntax Error at " + se.line + ":" + se.column + " – " + se.getMessage());
+            System.exit(1);
+        } catch (SemanticException se) {
+            System.err.println("Semantic Error – " + se.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package compiler.codegen;
+
+import compiler.codegen.Asm.Insn;
+import compiler.codegen.Asm.Mnemonic;
+import compiler.codegen.Asm.Operand;
+import compiler.codegen.Asm.Reg;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The runtime linked into executables written by {@link ElfWriter}, in
+ * place of libc: an entry point and integer I/O on Linux system calls.
+ *
+ * The generated code calls printf with the value in esi and scanf with the
+ * target address in rsi; those calls go to rt_print and rt_read, which take
+ * their arguments in the same registers and clobber only caller-saved
+ * ones. Output is buffered like stdio: when stdout is a terminal it is
+ * flushed after every line, otherwise only when the buffer fills, before a
+ * read that has to wait for input and at exit, so output since the last
+ * flush is lost if the program traps (e.g. SIGFPE). rt_read skips white
+ * space and parses an optional sign and decimal digits; at end of input or
+ * on anything else it leaves the target unchanged, as scanf does.
+ */
+final class NativeRuntime {
+    static final int OUT_CAPACITY = 1 << 16;
+    static final int IN_CAPACITY = 1 << 16;
+
+    /** Initialized data: the format strings the generated code still loads into rdi. */
+    static final Map<String, byte[]> DATA = new LinkedHashMap<>();
+    /** Zero-initialized data and its size in bytes. */
+    static final Map<String, Integer> BSS = new LinkedHashMap<>();
+
+    static {
+        DATA.put("print_fmt", "%d\n\0".getBytes(StandardCharsets.US_ASCII));
+        DATA.put("scan_fmt", "%d\0".getBytes(StandardCharsets.US_ASCII));
+        BSS.put("rt_out", OUT_CAPACITY);
+        BSS.put("rt_in", IN_CAPACITY);
+        BSS.put("rt_digits", 16);
+        BSS.put("rt_out_len", 4);
+        BSS.put("rt_in_pos", 4);
+        BSS.put("rt_in_len", 4);
+        BSS.put("rt_tty", 4);
+        BSS.put("rt_termios", 64);
+    }
+
+    private static final Operand EAX = Operand.reg(Reg.AX), ECX = Operand.reg(Reg.CX), EDX = Operand.reg(Reg.DX),
+        EDI = Operand.reg(Reg.DI), R8D = Operand.reg(Reg.R8), R9D = Operand.reg(Reg.R9), R10D = Operand.reg(Reg.R10);
+    private static final Operand RAX = Operand.reg64(Reg.AX), RSI = Operand.reg64(Reg.SI), RDI = Operand.reg64(Reg.DI),
+        R8 = Operand.reg64(Reg.R8), R9 = Operand.reg64(Reg.R9), R10 = Operand.reg64(Reg.R10);
+    private static final int SYS_READ = 0, SYS_WRITE = 1, SYS_IOCTL = 16, SYS_EXIT = 60, TCGETS = 0x5401;
+
+    private final List<Insn> code = new ArrayList<>();
+
+    private NativeRuntime() { }
+
+    /**
+     * The whole executable's code: _start and the runtime routines, then
+     * the program as main with its printf/scanf calls sent to the runtime.
+     * _start calls main, flushes the output and exits with status 0.
+     */
+    static List<Insn> link(Asm program) {
+        NativeRuntime rt = new NativeRuntime();
+        rt.start();
+        rt.print();
+        rt.flush();
+        rt.read();
+        rt.peek();
+        rt.label("main");
+        for (Insn insn : program.code()) {
+            if (insn.op() == Mnemonic.CALL) rt.call(target(insn.dst().symbol()));
+            else rt.code.add(insn);
+        }
+        return rt.code;
+    }
+
+    private static String target(String symbol) {
+        return switch (symbol) {
+            case "printf" -> "rt_print";
+            case "scanf" -> "rt_read";
+            default -> symbol;
+        };
+    }
+
+    private void start() {
+        label("_start");
+        // stdout is a terminal if it answers TCGETS; then rt_print flushes every line
+        emit(Mnemonic.MOV, EAX, Operand.imm(SYS_IOCTL));
+        emit(Mnemonic.MOV, EDI, Operand.imm(1));
+        emit(Mnemonic.MOV, Operand.reg(Reg.SI), Operand.imm(TCGETS));
+        emit(Mnemonic.LEA, Operand.reg64(Reg.DX), Operand.rel("rt_termios"));
+        emit(Mnemonic.SYSCALL, null, null);
+        emit(Mnemonic.TEST, EAX, EAX);
+        jump(Mnemonic.JNE, "rt_start_main");
+        emit(Mnemonic.MOV, Operand.rel("rt_tty"), Operand.imm(1));
+        label("rt_start_main");
+        call("main");
+        call("rt_flush");
+        emit(Mnemonic.XOR, EDI, EDI);
+        emit(Mnemonic.MOV, EAX, Operand.imm(SYS_EXIT));
+        emit(Mnemonic.SYSCALL, null, null);
+    }
+
+    // rt_print: esi = value; appends its decimal digits and a newline to rt_out, flushing on a terminal
+    private void print() {
+        label("rt_print");
+        emit(Mnemonic.MOV, R8D, Operand.reg(Reg.SI));
+        emit(Mnemonic.CMP, Operand.rel("rt_out_len"), Operand.imm(OUT_CAPACITY - 16));
+        jump(Mnemonic.JLE, "rt_print_room");
+        call("rt_flush");
+        label("rt_print_room");
+        // digits backwards from the end of rt_digits, of the magnitude as unsigned
+        emit(Mnemonic.LEA, R9, Operand.rel("rt_digits"));
+        emit(Mnemonic.ADD, R9, Operand.imm(16));
+        emit(Mnemonic.MOV, R10, R9);
+        emit(Mnemonic.MOV, EAX, R8D);
+        emit(Mnemonic.CMP, EAX, Operand.imm(0));
+        jump(Mnemonic.JGE, "rt_print_digit");
+        emit(Mnemonic.NEG, EAX, null);
+        label("rt_print_digit");
+        emit(Mnemonic.MOV, ECX, Operand.imm(10));
+        emit(Mnemonic.XOR, EDX, EDX);
+        emit(Mnemonic.DIV, ECX, null);
+        emit(Mnemonic.ADD, EDX, Operand.imm('0'));
+        emit(Mnemonic.SUB, R9, Operand.imm(1));
+        emit(Mnemonic.MOVB, Operand.mem(Reg.R9, 0), EDX);
+        emit(Mnemonic.TEST, EAX, EAX);
+        jump(Mnemonic.JNE, "rt_print_digit");
+        emit(Mnemonic.CMP, R8D, Operand.imm(0));
+        jump(Mnemonic.JGE, "rt_print_copy");
+        emit(Mnemonic.SUB, R9, Operand.imm(1));
+        emit(Mnemonic.MOVB, Operand.mem(Reg.R9, 0), Operand.imm('-'));
+        // copy them to rt_out + rt_out_len, then the newline
+        label("rt_print_copy");
+        emit(Mnemonic.LEA, RDI, Operand.rel("rt_out"));
+        emit(Mnemonic.MOV, EAX, Operand.rel("rt_out_len"));
+        emit(Mnemonic.ADD, RDI, RAX);
+        label("rt_print_byte");
+        emit(Mnemonic.MOVZX, EAX, Operand.mem(Reg.R9, 0));
+        emit(Mnemonic.MOVB, Operand.mem(Reg.DI, 0), EAX);
+        emit(Mnemonic.ADD, RDI, Operand.imm(1));
+        emit(Mnemonic.ADD, R9, Operand.imm(1));
+        emit(Mnemonic.CMP, R9, R10);
+        jump(Mnemonic.JNE, "rt_print_byte");
+        emit(Mnemonic.MOVB, Operand.mem(Reg.DI, 0), Operand.imm('\n'));
+        emit(Mnemonic.ADD, RDI, Operand.imm(1));
+        emit(Mnemonic.LEA, RAX, Operand.rel("rt_out"));
+        emit(Mnemonic.SUB, RDI, RAX);
+        emit(Mnemonic.MOV, Operand.rel("rt_out_len"), EDI);
+        emit(Mnemonic.CMP, Operand.rel("rt_tty"), Operand.imm(0));
+        jump(Mnemonic.JNE, "rt_flush");                    // line-buffered on a terminal
+        emit(Mnemonic.RET, null, null);
+    }
+
+    // rt_flush: writes rt_out to stdout (repeating partial writes), leaves r8-r10 alone
+    private void flush() {
+        label("rt_flush");
+        emit(Mnemonic.LEA, RSI, Operand.rel("rt_out"));
+        emit(Mnemonic.MOV, EDX, Operand.rel("rt_out_len"));
+        label("rt_flush_write");
+        emit(Mnemonic.CMP, EDX, Operand.imm(0));
+        jump(Mnemonic.JLE, "rt_flush_done");
+        emit(Mnemonic.MOV, EAX, Operand.imm(SYS_WRITE));
+        emit(Mnemonic.MOV, EDI, Operand.imm(1));
+        emit(Mnemonic.SYSCALL, null, null);
+        emit(Mnemonic.CMP, EAX, Operand.imm(0));
+        jump(Mnemonic.JLE, "rt_flush_done");             // error: drop the rest
+        emit(Mnemonic.ADD, RSI, RAX);
+        emit(Mnemonic.SUB, EDX, EAX);
+        jump(Mnemonic.JMP, "rt_flush_write");
+        label("rt_flush_done");
+        emit(Mnemonic.MOV, Operand.rel("rt_out_len"), Operand.imm(0));
+        emit(Mnemonic.RET, null, null);
+    }
+
+    // rt_read: rsi = address of the int to read into
+    private void read() {
+        label("rt_read");
+        emit(Mnemonic.MOV, R8, RSI);
+        label("rt_read_space");
+        call("rt_peek");
+        emit(Mnemonic.CMP, EAX, Operand.imm(0));
+        jump(Mnemonic.JL, "rt_read_done");
+        emit(Mnemonic.CMP, EAX, Operand.imm(' '));
+        jump(Mnemonic.JG, "rt_read_sign");
+        consume();
+        jump(Mnemonic.JMP, "rt_read_space");
+        label("rt_read_sign");
+        emit(Mnemonic.XOR, R9D, R9D);                     // 1 if negative
+        emit(Mnemonic.CMP, EAX, Operand.imm('+'));
+        jump(Mnemonic.JE, "rt_read_signed");
+        emit(Mnemonic.CMP, EAX, Operand.imm('-'));
+        jump(Mnemonic.JNE, "rt_read_first");
+        emit(Mnemonic.MOV, R9D, Operand.imm(1));
+        label("rt_read_signed");
+        consume();
+        call("rt_peek");
+        label("rt_read_first");
+        emit(Mnemonic.XOR, R10D, R10D);
+        emit(Mnemonic.SUB, EAX, Operand.imm('0'));
+        emit(Mnemonic.CMP, EAX, Operand.imm(9));
+        jump(Mnemonic.JA, "rt_read_done");                // no digits (end of input is -1)
+        label("rt_read_digit");
+        consume();
+        emit(Mnemonic.IMUL, R10D, Operand.imm(10));
+        emit(Mnemonic.ADD, R10D, EAX);
+        call("rt_peek");
+        emit(Mnemonic.SUB, EAX, Operand.imm('0'));
+        emit(Mnemonic.CMP, EAX, Operand.imm(9));
+        jump(Mnemonic.JBE, "rt_read_digit");
+        emit(Mnemonic.TEST, R9D, R9D);
+        jump(Mnemonic.JE, "rt_read_store");
+        emit(Mnemonic.NEG, R10D, null);
+        label("rt_read_store");
+        emit(Mnemonic.MOV, Operand.mem(Reg.R8, 0), R10D);
+        label("rt_read_done");
+        emit(Mnemonic.RET, null, null);
+    }
+
+    // rt_peek: eax = next input byte without consuming it, or -1 at end of input; leaves r8-r10 alone
+    private void peek() {
+        label("rt_peek");
+        emit(Mnemonic.MOV, EAX, Operand.rel("rt_in_pos"));
+        emit(Mnemonic.CMP, EAX, Operand.rel("rt_in_len"));
+        jump(Mnemonic.JL, "rt_peek_byte");
+        call("rt_flush");                                   // the user sees earlier output before typing
+        emit(Mnemonic.MOV, EAX, Operand.imm(SYS_READ));
+        emit(Mnemonic.XOR, EDI, EDI);
+        emit(Mnemonic.LEA, RSI, Operand.rel("rt_in"));
+        emit(Mnemonic.MOV, EDX, Operand.imm(IN_CAPACITY));
+        emit(Mnemonic.SYSCALL, null, null);
+        emit(Mnemonic.MOV, Operand.rel("rt_in_pos"), Operand.imm(0));
+        emit(Mnemonic.CMP, EAX, Operand.imm(0));
+        jump(Mnemonic.JG, "rt_peek_filled");
+        emit(Mnemonic.MOV, Operand.rel("rt_in_len"), Operand.imm(0));
+        emit(Mnemonic.MOV, EAX, Operand.imm(-1));
+        emit(Mnemonic.RET, null, null);
+        label("rt_peek_filled");
+        emit(Mnemonic.MOV, Operand.rel("rt_in_len"), EAX);
+        emit(Mnemonic.XOR, EAX, EAX);
+        label("rt_peek_byte");
+        emit(Mnemonic.LEA, RSI, Operand.rel("rt_in"));
+        emit(Mnemonic.ADD, RSI, RAX);
+        emit(Mnemonic.MOVZX, EAX, Operand.mem(Reg.SI, 0));
+        emit(Mnemonic.RET, null, null);
+    }
+
+    private void consume() {
+        emit(Mnemonic.ADD, Operand.rel("rt_in_pos"), Operand.imm(1));
+    }
+
+    private void emit(Mnemonic op, Operand dst, Operand src) {
+        code.add(new Insn(op, dst, src));
+    }
+
+    private void call(String target) {
+        emit(Mnemonic.CALL, Operand.symbol(target), null);
+    }
+
+    private void jump(Mnemonic op, String target) {
+        code.add(new Insn(op, null, null, target));
+    }
+
+    private void label(String name) {
+        code.add(new Insn(Mnemonic.LABEL, null, null, name));
+    }
+}
@@ -0,0 +1,65 @@
+package compiler.codegen;
+
+/**
+ * Opcodes of the three-address code in {@link Tac}.
+ * Operands are {@link Operands} ids unless noted.
+ */
+public enum Op {
+    CONST,  // dst = a              (a is the int value itself)
+    LIT,    // dst = a              (a is a TEXT operand: boolean, string or out-of-range number)
+    COPY,   // dst = a
+    ADD,    // dst = a + b
+    SUB,    // dst = a - b
+    MUL,    // dst = a * b
+    DIV,    // dst = a / b
+    SHL,    // dst = a << b         (b is the shift count itself)
+    SAR,    // dst = a >> b         (arithmetic; b is the shift count itself)
+    SHR,    // dst = a >>> b        (logical; b is the shift count itself)
+    MULH,   // dst = high 32 bits of the 64-bit product a * b   (b is the int multiplier itself)
+    READ,   // READ a
+    PRINT,  // PRINT a
+    LABEL,  // a:
+    GOTO,   // GOTO a
+    IFZ;    // IFZ a GOTO b
+
+    /** True for ADD, SUB, MUL and DIV. */
+    public boolean isBinary() {
+        return this == ADD || this == SUB || this == MUL || this == DIV;
+    }
+
+    /** True for SHL, SAR, SHR and MULH, whose 'b' is a constant rather than an operand. */
+    public boolean hasImmediate() {
+        return this == SHL || this == SAR || this == SHR || this == MULH;
+    }
+
+    /** True if the instruction writes 'dst'. */
+    public boolean writesDst() {
+        return ordinal() <= MULH.ordinal();
+    }
+
+    /** Operator symbol of a binary or immediate op ("+", "-", "*", "/", "<<", ">>", ">>>", "*hi"). */
+    public String symbol() {
+        return switch (this) {
+            case ADD  -> "+";
+            case SUB  -> "-";
+            case MUL  -> "*";
+            case DIV  -> "/";
+            case SHL  -> "<<";
+            case SAR  -> ">>";
+            case SHR  -> ">>>";
+            case MULH -> "*hi";
+            default   -> throw new IllegalStateException(this + " is not a binary op");
+        };
+    }
+
+    /** Binary op for an AST operator symbol, or null if there is none. */
+    public static Op binary(String symbol) {
+        return switch (symbol) {
+            case "+" -> ADD;
+            case "-" -> SUB;
+            case "*" -> MUL;
+            case "/" -> DIV;
+            default  -> null;
+        };
+    }
+}
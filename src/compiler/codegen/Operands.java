@@ -0,0 +1,89 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interned operands of a TAC program. Every variable, temporary, label
+ * and literal text gets one int id; instructions only hold ids.
+ * Temporaries and labels are numbered like the old text TAC (t1, t2, ...,
+ * L1, L2, ...), and their names are only built when printing.
+ */
+public final class Operands {
+    // Operand kinds
+    public static final byte VAR = 0, TEMP = 1, LABEL = 2, TEXT = 3;
+
+    private byte[] kind = new byte[64];
+    private int[] number = new int[64];         // temp/label number
+    private String[] text = new String[64];     // variable name or literal text
+    private int count, temps, labels;
+    private final Map<String, Integer> vars = new HashMap<>();
+    private final Map<String, Integer> texts = new HashMap<>();
+
+    /** Id of variable 'name', interning it on first use. */
+    public int var(String name) {
+        Integer id = vars.get(name);
+        if (id == null) {
+            id = add(VAR, 0, name);
+            vars.put(name, id);
+        }
+        return id;
+    }
+
+    /** Id of a literal that is not an int (see {@link Op#LIT}). */
+    public int text(String literal) {
+        Integer id = texts.get(literal);
+        if (id == null) {
+            id = add(TEXT, 0, literal);
+            texts.put(literal, id);
+        }
+        return id;
+    }
+
+    public int newTemp() {
+        return add(TEMP, ++temps, null);
+    }
+
+    public int newLabel() {
+        return add(LABEL, ++labels, null);
+    }
+
+    private int add(byte k, int n, String s) {
+        if (count == kind.length) {
+            kind = Arrays.copyOf(kind, count * 2);
+            number = Arrays.copyOf(number, count * 2);
+            text = Arrays.copyOf(text, count * 2);
+        }
+        kind[count] = k;
+        number[count] = n;
+        text[count] = s;
+        return count++;
+    }
+
+    /** Number of ids handed out so far (ids are 0 .. size()-1). */
+    public int size() {
+        return count;
+    }
+
+    public byte kind(int id) {
+        return kind[id];
+    }
+
+    public boolean isTemp(int id) {
+        return kind[id] == TEMP;
+    }
+
+    public boolean isVar(int id) {
+        return kind[id] == VAR;
+    }
+
+    /** Printed name: the variable name, t<n>, L<n>, or the literal text. */
+    public String name(int id) {
+        return switch (kind[id]) {
+            case TEMP  -> "t" + number[id];
+            case LABEL -> "L" + number[id];
+            default    -> text[id];
+        };
+    }
+}
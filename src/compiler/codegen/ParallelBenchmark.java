@@ -0,0 +1,93 @@
+package compiler.codegen;
+
+import compiler.ast.Program;
+import compiler.lexer.TokenBuffer;
+import compiler.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scaling benchmark for the block-parallel passes ({@link BlockParallel}):
+ * simplification and strength reduction of one large generated program,
+ * on one thread and on pools of increasing size. Every parallel result is
+ * checked against the one-thread result, instruction for instruction.
+ *
+ * Usage: ParallelBenchmark [statements] [threads ...]
+ * (default: 60000 statements; 1, 2, 4, ... up to the number of cores)
+ */
+public final class ParallelBenchmark {
+    private static final int ROUNDS = 7;
+
+    private ParallelBenchmark() { }
+
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 60_000;
+        List<Integer> threads = new ArrayList<>();
+        for (int k = 1; k < args.length; k++) threads.add(Integer.parseInt(args[k]));
+        if (threads.isEmpty()) {
+            for (int t = 1; t <= Runtime.getRuntime().availableProcessors(); t *= 2) threads.add(t);
+        }
+
+        Program program = new Parser(TokenBuffer.tokenize(source(statements))).parseProgram();
+        System.out.println(new TACGenerator().generate(program.statements).size() + " TAC instructions, "
+                           + Runtime.getRuntime().availableProcessors() + " cores");
+
+        List<String> expected = passes(program, BlockParallel.Config.SEQUENTIAL).toText();
+        double base = time(program, BlockParallel.Config.SEQUENTIAL);
+        System.out.printf("sequential   %8.2f ms%n", base);
+
+        for (int t : threads) {
+            ForkJoinPool pool = new ForkJoinPool(t);
+            BlockParallel.Config parallel = BlockParallel.Config.DEFAULT.splitAll(pool);
+            boolean same = passes(program, parallel).toText().equals(expected);
+            double ms = time(program, parallel);
+            System.out.printf("%2d thread(s) %8.2f ms  speedup %.2fx  %s%n",
+                              t, ms, base / ms, same ? "identical" : "DIFFERENT OUTPUT");
+            pool.shutdown();
+        }
+    }
+
+    // Fastest of ROUNDS runs, each on freshly generated TAC (the passes add temps to its table)
+    private static double time(Program program, BlockParallel.Config parallel) {
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            Tac raw = new TACGenerator().generate(program.statements);
+            long t0 = System.nanoTime();
+            StrengthReduction.run(Simplifier.run(raw, parallel), parallel);
+            best = Math.min(best, (System.nanoTime() - t0) / 1e6);
+        }
+        return best;
+    }
+
+    private static Tac passes(Program program, BlockParallel.Config parallel) {
+        Tac raw = new TACGenerator().generate(program.statements);
+        return StrengthReduction.run(Simplifier.run(raw, parallel), parallel);
+    }
+
+    // Straight-line arithmetic in many small if/while blocks, like machine-generated code
+    private static String source(int statements) {
+        Random r = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < 64; v++) sb.append("read v").append(v).append('\n');
+        for (int s = 0; s < statements; s++) {
+            String x = "v" + r.nextInt(64), y = "v" + r.nextInt(64);
+            switch (r.nextInt(6)) {
+                case 0 -> sb.append(x).append(" = ").append(y).append(" * ").append(1 << r.nextInt(8))
+                            .append(" + ").append(r.nextInt(9)).append(" + ").append(r.nextInt(9)).append('\n');
+                case 1 -> sb.append(x).append(" = ").append(y).append(" / ").append(3 + r.nextInt(20)).append('\n');
+                case 2 -> sb.append(x).append(" = (").append(y).append(" - ").append(r.nextInt(5))
+                            .append(") * 1 + 0\n");
+                case 3 -> sb.append("if (").append(x).append(") {\n").append(y).append(" = ").append(y)
+                            .append(" / 4 * 3\n} else {\n").append(y).append(" = ").append(x).append(" * 0 + ")
+                            .append(y).append("\n}\n");
+                case 4 -> sb.append("while (").append(x).append(") {\n").append(y).append(" = ").append(y)
+                            .append(" * 6 / 7\n").append(x).append(" = ").append(x).append(" - 1\n}\n");
+                default -> sb.append("print ").append(x).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package compiler.codegen;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * One optimization pass over TAC, as run by a {@link PassManager}.
+ * A pass returns new code (or 'code' itself when it changed nothing) and
+ * never modifies its input.
+ */
+public interface Pass {
+    /** Short name for reports, e.g. "licm". */
+    String name();
+
+    Tac run(Tac code);
+
+    /** A pass from a name and one of the static run methods (e.g. {@code Licm::run}). */
+    static Pass of(String name, UnaryOperator<Tac> run) {
+        return new Pass() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Tac run(Tac code) {
+                return run.apply(code);
+            }
+        };
+    }
+}
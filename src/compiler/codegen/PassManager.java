@@ -0,0 +1,116 @@
+package compiler.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a pipeline of {@link Pass}es over TAC.
+ *
+ * The whole pipeline is repeated until a round leaves the code unchanged
+ * (a fixpoint) or the round budget is used up. Passes added with
+ * {@link #addOnce} only run in the first round, for passes such as loop
+ * unrolling that would otherwise keep growing the code.
+ *
+ * For every pass the manager records how often it ran, its wall time and
+ * the instructions it removed (negative when it added code), across all
+ * rounds; {@link #report()} formats them for display.
+ */
+public final class PassManager {
+    /** What one pass of the pipeline cost and achieved. */
+    public static final class Stat {
+        public final String name;
+        public int runs;
+        public long nanos;
+        public int removed;
+
+        Stat(String name) {
+            this.name = name;
+        }
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+    private final List<Boolean> once = new ArrayList<>();
+    private final List<Stat> stats = new ArrayList<>();
+    private final int maxRounds;
+    private int rounds;
+    private boolean fixpoint;
+
+    /** @param maxRounds rounds to run at most; 1 runs the pipeline once */
+    public PassManager(int maxRounds) {
+        this.maxRounds = Math.max(1, maxRounds);
+    }
+
+    /** Adds a pass that runs in every round. */
+    public PassManager add(Pass pass) {
+        return add(pass, false);
+    }
+
+    /** Adds a pass that runs in the first round only. */
+    public PassManager addOnce(Pass pass) {
+        return add(pass, true);
+    }
+
+    private PassManager add(Pass pass, boolean firstRoundOnly) {
+        passes.add(pass);
+        once.add(firstRoundOnly);
+        stats.add(new Stat(pass.name()));
+        return this;
+    }
+
+    /** Runs the pipeline on 'code'; statistics add up over repeated calls. */
+    public Tac run(Tac code) {
+        fixpoint = false;
+        rounds = 0;
+        while (rounds < maxRounds) {
+            Tac start = code;
+            for (int k = 0; k < passes.size(); k++) {
+                if (rounds > 0 && once.get(k)) continue;
+                Stat stat = stats.get(k);
+                long t0 = System.nanoTime();
+                Tac next = passes.get(k).run(code);
+                stat.nanos += System.nanoTime() - t0;
+                stat.runs++;
+                stat.removed += code.size() - next.size();
+                code = next;
+            }
+            rounds++;
+            if (code.sameCode(start)) {
+                fixpoint = true;
+                break;
+            }
+        }
+        return code;
+    }
+
+    /** Rounds the last {@link #run} took. */
+    public int rounds() {
+        return rounds;
+    }
+
+    /** True if the last {@link #run} stopped because a round changed nothing (not on the budget). */
+    public boolean reachedFixpoint() {
+        return fixpoint;
+    }
+
+    /** Per-pass statistics, in pipeline order. */
+    public List<Stat> stats() {
+        return stats;
+    }
+
+    /** The statistics as a table, one line per pass plus a total. */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-20s %5s %10s %8s", "pass", "runs", "time (ms)", "removed"));
+        long nanos = 0;
+        int removed = 0;
+        for (Stat s : stats) {
+            lines.add(String.format("%-20s %5d %10.3f %8d", s.name, s.runs, s.nanos / 1e6, s.removed));
+            nanos += s.nanos;
+            removed += s.removed;
+        }
+        lines.add(String.format("%-20s %5s %10.3f %8d", "total", "", nanos / 1e6, removed));
+        lines.add(fixpoint ? "fixpoint after " + rounds + " round(s)"
+                           : "stopped after " + rounds + " round(s) (budget)");
+        return lines;
+    }
+}
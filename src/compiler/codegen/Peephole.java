@@ -0,0 +1,405 @@
+package compiler.codegen;
+
+import compiler.codegen.Asm.Insn;
+import compiler.codegen.Asm.Mnemonic;
+import compiler.codegen.Asm.Operand;
+import compiler.codegen.Asm.Reg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sliding-window peephole optimizer over the {@link Asm} model.
+ *
+ * Register (and flags) liveness is computed over the instructions and
+ * their jumps, then each instruction is matched against the ones right
+ * after it (comments are skipped, a label ends the window):
+ * <ul>
+ *   <li>a move of a location to itself, or back to where it was just
+ *       loaded from, is dropped</li>
+ *   <li>a value just stored to a stack slot is read from the register or
+ *       immediate it came from instead of being loaded again</li>
+ *   <li>a register that was just loaded with an immediate or another
+ *       register is read from that source instead for the next few
+ *       instructions (a memory source only at the register's last use),
+ *       which usually leaves the move dead</li>
+ *   <li>a value computed in register t and then moved to d, where t dies,
+ *       is computed in d directly</li>
+ *   <li>an instruction whose register and flag results are all dead is
+ *       dropped (never a store, call, idiv or stack adjustment)</li>
+ *   <li>cmp r, 0 becomes test r, r, and mov r, 0 becomes xor r, r where
+ *       the flags are dead</li>
+ *   <li>je L1; jmp L2; L1: becomes jne L2; L1:, a jump to the next
+ *       instruction is dropped, code after an unconditional jump up to the
+ *       next label is unreachable, and labels nothing jumps to go away</li>
+ * </ul>
+ * Rounds repeat until nothing changes, since one rewrite often enables
+ * another (a folded immediate leaves its move dead).
+ */
+public final class Peephole {
+    private static final int MAX_ROUNDS = 10;
+    private static final int WINDOW = 4;            // instructions searched for reads of a moved value
+    private static final int RENAME_WINDOW = 16;    // instructions searched back for the definition to rename
+    private static final int FLAGS = 1 << 16;
+    private static final int CALLER_SAVED = bits(Reg.AX, Reg.CX, Reg.DX, Reg.SI, Reg.DI,
+                                                 Reg.R8, Reg.R9, Reg.R10, Reg.R11) | FLAGS;
+    private static final int AT_RETURN = bits(Reg.AX, Reg.SP, Reg.BP, Reg.BX,
+                                              Reg.R12, Reg.R13, Reg.R14, Reg.R15);
+
+    private final Insn[] code;
+    private final int[] liveOut;
+    private final boolean[] rewritten;      // replaced this round, so its liveOut may be stale
+    private boolean changed;
+
+    private Peephole(List<Insn> code) {
+        this.code = code.toArray(new Insn[0]);
+        this.liveOut = new int[this.code.length];
+        this.rewritten = new boolean[this.code.length];
+    }
+
+    public static Asm optimize(Asm asm) {
+        List<Insn> code = withoutUnusedLabels(asm.code());
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Peephole p = new Peephole(code);
+            p.round();
+            code = withoutUnusedLabels(p.result());
+            if (!p.changed) break;
+        }
+        return new Asm(code);
+    }
+
+    private static List<Insn> withoutUnusedLabels(List<Insn> code) {
+        Set<String> targets = new HashSet<>();
+        for (Insn insn : code) if (insn.op().isJump()) targets.add(insn.text());
+        List<Insn> out = new ArrayList<>(code.size());
+        for (Insn insn : code) if (insn.op() != Mnemonic.LABEL || targets.contains(insn.text())) out.add(insn);
+        return out;
+    }
+
+    private List<Insn> result() {
+        List<Insn> out = new ArrayList<>(code.length);
+        for (Insn insn : code) if (insn != null) out.add(insn);
+        return out;
+    }
+
+    private void round() {
+        liveness();
+        for (int i = 0; i < code.length; i++) {
+            Insn insn = code[i];
+            if (insn == null) continue;
+            Mnemonic op = insn.op();
+            if (removable(insn) && !rewritten[i] && (defs(insn) & liveOut[i]) == 0
+                    || op == Mnemonic.MOV && insn.dst().equals(insn.src())) {
+                delete(i);
+                continue;
+            }
+            if (op == Mnemonic.JMP || op == Mnemonic.RET) unreachableAfter(i);
+            if (op.isJump()) {
+                jumps(i);
+            } else if (op == Mnemonic.MOV) {
+                moves(i);
+            } else if (op == Mnemonic.CMP && insn.dst().isReg() && insn.src().isImm() && insn.src().value() == 0) {
+                replace(i, new Insn(Mnemonic.TEST, insn.dst(), insn.dst()));
+            }
+        }
+    }
+
+    // --- rules ---
+
+    private void unreachableAfter(int i) {
+        for (int j = i + 1; j < code.length && (code[j] == null || code[j].op() != Mnemonic.LABEL); j++) {
+            if (code[j] != null) delete(j);
+        }
+    }
+
+    private void jumps(int i) {
+        Insn jump = code[i];
+        int j = next(i);
+        if (jump.op() == Mnemonic.JMP) {
+            if (labelsAt(j).contains(jump.text())) delete(i);
+            return;
+        }
+        // jcc L1; jmp L2; L1:  ->  jncc L2; L1:
+        if (j >= 0 && code[j].op() == Mnemonic.JMP && labelsAt(next(j)).contains(jump.text())) {
+            replace(i, new Insn(jump.op().inverse(), null, null, code[j].text()));
+            delete(j);
+        }
+    }
+
+    private void moves(int i) {
+        Insn mov = code[i];
+        Operand dst = mov.dst(), src = mov.src();
+        int j = next(i);
+        if (j >= 0 && code[j].isInstruction()) {
+            Insn after = code[j];
+            if (after.op() == Mnemonic.MOV && after.dst().equals(src) && after.src().equals(dst)) {
+                // mov a, b; mov b, a
+                delete(j);
+                return;
+            }
+            if (dst.isMem() && !src.isMem()) {
+                // store, then read the slot back: read what was stored
+                Insn forwarded = substitute(after, dst, src);
+                if (forwarded != null) {
+                    replace(j, forwarded);
+                    extendLiveness(i, j, src);
+                }
+            }
+        }
+        if (rename(i)) return;
+        if (dst.isReg() && !dst.wide() && !(src.isReg() && src.wide())) {
+            // mov r, x; ...; op y, r  ->  op y, x   (a load only where r is read for the last time)
+            int r = bit(dst.reg()), clobbers = r | read(src);
+            for (int k = 0, at = i; k < WINDOW; k++) {
+                at = next(at);
+                if (at < 0 || !code[at].isInstruction() || code[at].op().isJump() || code[at].op() == Mnemonic.CALL) break;
+                if (!src.isMem() || (liveOut[at] & r) == 0) {
+                    Insn folded = substitute(code[at], dst, src);
+                    if (folded != null) {
+                        replace(at, folded);
+                        extendLiveness(i, at, src);
+                    }
+                }
+                if ((defs(code[at]) & clobbers) != 0 || src.isMem() && writesMemory(code[at])) break;
+            }
+            if (src.isImm() && src.value() == 0 && (liveOut[i] & FLAGS) == 0) replace(i, new Insn(Mnemonic.XOR, dst, dst));
+        }
+    }
+
+    /**
+     * mov t, x; ...; mov d, t  ->  mov d, x; ... (t renamed to d)   when t dies at the last move and
+     * the instructions in between, all in one block, neither touch d nor use t implicitly
+     */
+    private boolean rename(int k) {
+        Operand t = code[k].src(), d = code[k].dst();
+        if (!t.isReg() || !d.isReg() || t.wide() || d.wide() || (liveOut[k] & bit(t.reg())) != 0) return false;
+        int tBit = bit(t.reg()), dBit = bit(d.reg());
+        int p = k;
+        boolean found = false;
+        for (int steps = 0; steps < RENAME_WINDOW && !found; steps++) {
+            p = previous(p);
+            if (p < 0 || !code[p].isInstruction() || code[p].op().isJump() || code[p].op() == Mnemonic.CALL) return false;
+            Insn x = code[p];
+            boolean defines = (x.op() == Mnemonic.MOV || x.op() == Mnemonic.LEA) && t.equals(x.dst())
+                || x.op() == Mnemonic.XOR && t.equals(x.dst()) && t.equals(x.src());
+            int touched = (defines ? 0 : uses(x)) | defs(x);
+            if ((touched & dBit) != 0 || (fixed(x) & tBit) != 0) return false;
+            found = defines;
+        }
+        if (!found || (read(code[p].src()) & tBit) != 0 && code[p].op() != Mnemonic.XOR) return false;
+        for (int q = p; q < k; q++) {
+            Insn x = code[q];
+            if (x == null || !x.isInstruction()) continue;
+            replace(q, new Insn(x.op(), t.equals(x.dst()) ? d : x.dst(), t.equals(x.src()) ? d : x.src(), x.text()));
+        }
+        delete(k);
+        return true;
+    }
+
+    // Registers an instruction uses in a way renaming its operands would not change:
+    // implicitly (eax/edx of idiv, div, cdq and one-operand imul, syscall arguments), by a 64-bit name
+    // or as an address
+    private static int fixed(Insn insn) {
+        int regs = switch (insn.op()) {
+            case IDIV, DIV, CDQ -> bits(Reg.AX, Reg.DX);
+            case SYSCALL -> -1;
+            case IMUL -> insn.src() == null ? bits(Reg.AX, Reg.DX) : 0;
+            default -> 0;
+        };
+        return regs | wideOrAddress(insn.dst()) | wideOrAddress(insn.src());
+    }
+
+    private static int wideOrAddress(Operand o) {
+        return o != null && o.isReg() && o.wide() ? bit(o.reg()) : address(o);
+    }
+
+    private static boolean writesMemory(Insn insn) {
+        return insn.dst() != null && insn.dst().isMem() && insn.op() != Mnemonic.CMP && insn.op() != Mnemonic.TEST
+            || insn.op() == Mnemonic.CALL || insn.op() == Mnemonic.PUSH;
+    }
+
+    /**
+     * 'insn' with its reads of 'from' replaced by 'to', or null if it does
+     * not read 'from' in a position where 'to' is allowed.
+     */
+    private static Insn substitute(Insn insn, Operand from, Operand to) {
+        Mnemonic op = insn.op();
+        Operand dst = insn.dst(), src = insn.src();
+        boolean readsDst = op == Mnemonic.CMP || op == Mnemonic.TEST
+            || (op == Mnemonic.IDIV || op == Mnemonic.IMUL && src == null) && !to.isImm();
+        boolean readsSrc = src != null && (op == Mnemonic.MOV || op == Mnemonic.ADD || op == Mnemonic.SUB
+            || op == Mnemonic.IMUL || op == Mnemonic.XOR || op == Mnemonic.CMP || op == Mnemonic.TEST);
+        Operand newDst = readsDst && from.equals(dst) ? to : dst;
+        Operand newSrc = readsSrc && from.equals(src) ? to : src;
+        if (newDst == dst && newSrc == src) return null;
+        // the replaced value must not be read anywhere else (e.g. as the base of an address or a written dst)
+        if (from.isReg() && (base(newDst, from.reg()) || base(newSrc, from.reg()) || newDst.equals(from))) return null;
+        if (newDst.isImm() || newSrc != null && newDst.isMem() && newSrc.isMem()) return null;
+        if (op == Mnemonic.XOR && dst.equals(src)) return null;         // zeroing idiom reads nothing
+        if (op == Mnemonic.TEST && newSrc.isImm() && !newDst.isReg()) return null;
+        return new Insn(op, newDst, newSrc, insn.text());
+    }
+
+    private static boolean base(Operand o, Reg r) {
+        return o != null && o.isMem() && o.reg() == r;
+    }
+
+    // --- helpers ---
+
+    private void delete(int i) {
+        code[i] = null;
+        changed = true;
+    }
+
+    private void replace(int i, Insn insn) {
+        code[i] = insn;
+        rewritten[i] = true;
+        changed = true;
+    }
+
+    // 'x' is now also read at 'to': keep it live from 'from' on, so later rules this round see that
+    private void extendLiveness(int from, int to, Operand x) {
+        for (int p = from; p < to; p++) liveOut[p] |= read(x);
+    }
+
+    // Previous element before 'i' that is not deleted and not a comment, or -1
+    private int previous(int i) {
+        for (int j = i - 1; j >= 0; j--) {
+            if (code[j] != null && code[j].op() != Mnemonic.COMMENT) return j;
+        }
+        return -1;
+    }
+
+    // Next element after 'i' that is not deleted and not a comment, or -1
+    private int next(int i) {
+        for (int j = i + 1; j < code.length; j++) {
+            if (code[j] != null && code[j].op() != Mnemonic.COMMENT) return j;
+        }
+        return -1;
+    }
+
+    // Names of the labels starting at 'j' (an empty list if there are none)
+    private List<String> labelsAt(int j) {
+        List<String> names = new ArrayList<>();
+        for (; j >= 0 && code[j].op() == Mnemonic.LABEL; j = next(j)) names.add(code[j].text());
+        return names;
+    }
+
+    // --- liveness of registers and flags ---
+
+    private void liveness() {
+        int n = code.length;
+        Map<String, Integer> label = new HashMap<>();
+        for (int i = 0; i < n; i++) if (code[i].op() == Mnemonic.LABEL) label.put(code[i].text(), i);
+        int[] use = new int[n], def = new int[n], target = new int[n];
+        for (int i = 0; i < n; i++) {
+            use[i] = uses(code[i]);
+            def[i] = defs(code[i]);
+            target[i] = code[i].op().isJump() ? label.getOrDefault(code[i].text(), -1) : -1;
+        }
+        int[] liveIn = new int[n];
+        Arrays.fill(liveOut, 0);
+        boolean again = true;
+        while (again) {
+            again = false;
+            for (int i = n - 1; i >= 0; i--) {
+                Mnemonic op = code[i].op();
+                int out = 0;
+                if (op == Mnemonic.RET) out = 0;
+                else if (op == Mnemonic.JMP) out = target[i] >= 0 ? liveIn[target[i]] : -1;
+                else {
+                    out = i + 1 < n ? liveIn[i + 1] : -1;
+                    if (op.isJump()) out |= target[i] >= 0 ? liveIn[target[i]] : -1;
+                }
+                int in = use[i] | (out & ~def[i]);
+                if (in != liveIn[i] || out != liveOut[i]) {
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    again = true;
+                }
+            }
+        }
+    }
+
+    // Has no effect besides its register and flag results
+    private static boolean removable(Insn insn) {
+        return switch (insn.op()) {
+            case MOV, LEA, ADD, SUB, IMUL, XOR, SHL, SAR, SHR -> insn.dst().isReg() && insn.dst().reg() != Reg.SP;
+            case CDQ, TEST, CMP -> true;
+            default -> false;
+        };
+    }
+
+    private static int uses(Insn insn) {
+        Operand dst = insn.dst(), src = insn.src();
+        return switch (insn.op()) {
+            case MOV -> read(src) | address(dst);
+            case LEA -> address(src);
+            case XOR -> dst.equals(src) ? 0 : read(dst) | read(src);
+            case ADD, SUB, SHL, SAR, SHR, TEST, CMP -> read(dst) | read(src);
+            case IMUL -> src == null ? bit(Reg.AX) | read(dst) : read(dst) | read(src);
+            case IDIV -> bit(Reg.AX) | bit(Reg.DX) | read(dst);
+            case CDQ -> bit(Reg.AX);
+            case JE, JNE, JL, JGE, JLE, JG, JA, JBE -> FLAGS;
+            case NEG -> read(dst);
+            case DIV -> bit(Reg.AX) | bit(Reg.DX) | read(dst);
+            case MOVZX -> address(src);
+            case MOVB -> read(src) | address(dst);
+            case SYSCALL -> -1;
+            case CALL -> bits(Reg.AX, Reg.SI, Reg.DI, Reg.SP);
+            case PUSH -> read(dst) | bit(Reg.SP);
+            case POP -> bit(Reg.SP);
+            case RET -> AT_RETURN;
+            case JMP, LABEL, COMMENT -> 0;
+        };
+    }
+
+    private static int defs(Insn insn) {
+        Operand dst = insn.dst();
+        return switch (insn.op()) {
+            case MOV, LEA -> written(dst);
+            case ADD, SUB, XOR, SHL, SAR, SHR -> written(dst) | FLAGS;
+            case IMUL -> insn.src() == null ? bit(Reg.AX) | bit(Reg.DX) | FLAGS : written(dst) | FLAGS;
+            case IDIV, DIV -> bit(Reg.AX) | bit(Reg.DX) | FLAGS;
+            case NEG -> written(dst) | FLAGS;
+            case MOVZX -> written(dst);
+            case SYSCALL -> bits(Reg.AX, Reg.CX, Reg.R11) | FLAGS;
+            case MOVB -> 0;
+            case CDQ -> bit(Reg.DX);
+            case TEST, CMP -> FLAGS;
+            case CALL -> CALLER_SAVED;
+            case PUSH -> bit(Reg.SP);
+            case POP -> written(dst) | bit(Reg.SP);
+            case JMP, JE, JNE, JL, JGE, JLE, JG, JA, JBE, RET, LABEL, COMMENT -> 0;
+        };
+    }
+
+    // Registers an operand reads: the register itself, or the base of an address
+    private static int read(Operand o) {
+        if (o == null) return 0;
+        return o.isReg() ? bit(o.reg()) : address(o);
+    }
+
+    private static int address(Operand o) {
+        return o != null && o.isMem() && o.reg() != null ? bit(o.reg()) : 0;
+    }
+
+    private static int written(Operand o) {
+        return o.isReg() ? bit(o.reg()) : 0;
+    }
+
+    private static int bit(Reg r) {
+        return 1 << r.code();
+    }
+
+    private static int bits(Reg... regs) {
+        int mask = 0;
+        for (Reg r : regs) mask |= bit(r);
+        return mask;
+    }
+}
@@ -0,0 +1,47 @@
+package compiler.codegen;
+
+/**
+ * Constant propagation and redundancy elimination: the program is put into
+ * SSA form ({@link Ssa}), sparse conditional constant propagation
+ * ({@link Sccp}) and global value numbering ({@link Gvn}) analyze the SSA
+ * values, and the results are applied to the original instructions.
+ * Constant results become CONST, branches on constants become GOTO or
+ * disappear together with the code they skipped, and recomputations of a
+ * value some temporary already holds are removed.
+ */
+public final class Propagation {
+    private Propagation() { }
+
+    public static Tac run(Tac code) {
+        Cfg cfg = new Cfg(code);
+        Ssa ssa = new Ssa(new Dominators(cfg));
+        Sccp sccp = new Sccp(ssa);
+        Gvn gvn = new Gvn(ssa, sccp);
+
+        Tac optimized = code.derive();
+        for (int b = 0; b < cfg.blocks; b++) {
+            if (!sccp.executable(b)) continue;      // never reached: drop the whole block
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (gvn.redundant(i)) continue;
+                Op op = code.op(i);
+                if (op == Op.IFZ) {
+                    int c = ssa.useA(i);
+                    byte k = sccp.kind(c);
+                    if (k == Sccp.INT || k == Sccp.BOOL) {
+                        // constant condition: always jump, or never
+                        if (sccp.value(c) == 0) optimized.emit(Op.GOTO, Tac.NONE, code.b(i), Tac.NONE);
+                        continue;
+                    }
+                }
+                if (op != Op.CONST && op != Op.READ && code.def(i) != Tac.NONE && sccp.isInt(i)) {
+                    optimized.emit(Op.CONST, code.dst(i), sccp.value(i), Tac.NONE);
+                    continue;
+                }
+                int a = code.usesA(i) ? gvn.replacement(code.a(i)) : code.a(i);
+                int r = code.usesB(i) ? gvn.replacement(code.b(i)) : code.b(i);
+                optimized.emit(op, code.dst(i), a, r);
+            }
+        }
+        return optimized;
+    }
+}
@@ -0,0 +1,205 @@
+package compiler.codegen;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Linear-scan register allocation (Poletto and Sarkar) for the operands of
+ * a TAC program.
+ *
+ * Each operand gets one live interval over the instruction order: every
+ * position where it is defined or used, widened by {@link Liveness} to the
+ * start of each block it is live into and the end of each block it is live
+ * out of (so a value carried around a loop covers the whole loop).
+ * Intervals are visited by start; one that is live across a PRINT or READ
+ * (a call to printf/scanf) can only take a callee-saved register, others
+ * prefer the caller-saved ones. When no register is free, the cheapest of
+ * the interval and the active intervals it could take a register from is
+ * spilled, where an occurrence inside a loop counts 8 times as much per
+ * nesting level, so hot user variables keep their registers. Spilled
+ * operands share stack slots when their intervals do not overlap.
+ *
+ * eax and edx are never allocated: the generator needs them as scratch for
+ * loads, idiv and the multiply-high.
+ */
+public final class RegisterAllocator {
+    /** The allocatable registers: caller-saved first, then callee-saved. */
+    public static final Asm.Reg[] REGISTERS = {
+        Asm.Reg.CX, Asm.Reg.SI, Asm.Reg.DI, Asm.Reg.R8, Asm.Reg.R9, Asm.Reg.R10, Asm.Reg.R11,
+        Asm.Reg.BX, Asm.Reg.R12, Asm.Reg.R13, Asm.Reg.R14, Asm.Reg.R15
+    };
+    /** Index of the first callee-saved register in {@link #REGISTERS}. */
+    public static final int FIRST_CALLEE_SAVED = 7;
+
+    private final int[] register;           // per operand: index into REGISTERS, or -1
+    private final int[] slot;               // per operand: stack slot, or -1
+    private final boolean[] used;           // operand is defined or read somewhere
+    private final int[] zeroed;             // operands read before any assignment
+    private final boolean[] registerUsed = new boolean[REGISTERS.length];
+    private int slots;
+
+    public RegisterAllocator(Tac code) {
+        int n = code.size(), ops = code.operands.size();
+        register = new int[ops];
+        slot = new int[ops];
+        Arrays.fill(register, -1);
+        Arrays.fill(slot, -1);
+        used = new boolean[ops];
+        int[] start = new int[ops], end = new int[ops];
+        Arrays.fill(start, Integer.MAX_VALUE);
+        Arrays.fill(end, -1);
+        long[] weight = new long[ops];
+
+        Cfg cfg = new Cfg(code);
+        Liveness live = new Liveness(cfg);
+        int[] depth = new int[cfg.blocks];
+        for (Loops.Loop loop : new Loops(new Dominators(cfg)).loops()) {
+            for (int b : loop.blocks()) depth[b]++;
+        }
+
+        // calls before each position, to tell which intervals span one
+        int[] callsBefore = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            Op op = code.op(i);
+            callsBefore[i + 1] = callsBefore[i] + (op == Op.PRINT || op == Op.READ ? 1 : 0);
+        }
+
+        for (int b = 0; b < cfg.blocks; b++) {
+            int first = cfg.start(b), last = Math.max(first, cfg.end(b) - 1);
+            long w = 1L << (3 * Math.min(depth[b], 6));
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                int d = code.def(i);
+                if (d != Tac.NONE) occurrence(d, i, w, start, end, weight);
+                if (code.usesA(i)) occurrence(code.a(i), i, w, start, end, weight);
+                if (code.usesB(i)) occurrence(code.b(i), i, w, start, end, weight);
+            }
+            for (int id : members(live.liveIn(b))) widen(id, first, start, end);
+            for (int id : members(live.liveOut(b))) widen(id, last, start, end);
+        }
+        for (int id = 0; id < ops; id++) used[id] = end[id] >= 0;
+        zeroed = cfg.blocks == 0 ? new int[0]
+            : Arrays.stream(members(live.liveIn(0))).filter(id -> used[id]).toArray();
+
+        Integer[] order = new Integer[ops];
+        int count = 0;
+        for (int id = 0; id < ops; id++) if (used[id]) order[count++] = id;
+        Arrays.sort(order, 0, count, (x, y) -> start[x] != start[y] ? Integer.compare(start[x], start[y])
+                                                                     : Integer.compare(x, y));
+        List<Integer> spilled = new ArrayList<>();
+        scan(code, order, count, start, end, weight, callsBefore, spilled);
+        assignSlots(spilled, start, end);
+    }
+
+    private static void occurrence(int id, int i, long w, int[] start, int[] end, long[] weight) {
+        widen(id, i, start, end);
+        weight[id] += w;
+    }
+
+    private static void widen(int id, int i, int[] start, int[] end) {
+        if (i < start[id]) start[id] = i;
+        if (i > end[id]) end[id] = i;
+    }
+
+    private static int[] members(long[] set) {
+        int k = 0;
+        for (long word : set) k += Long.bitCount(word);
+        int[] ids = new int[k];
+        k = 0;
+        for (int w = 0; w < set.length; w++) {
+            for (long bits = set[w]; bits != 0; bits &= bits - 1) ids[k++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return ids;
+    }
+
+    private void scan(Tac code, Integer[] order, int count, int[] start, int[] end, long[] weight,
+                      int[] callsBefore, List<Integer> spilled) {
+        int[] owner = new int[REGISTERS.length];        // operand holding each register, or -1
+        Arrays.fill(owner, -1);
+        for (int k = 0; k < count; k++) {
+            int v = order[k];
+            // expire intervals that ended before this one starts
+            for (int r = 0; r < owner.length; r++) {
+                if (owner[r] >= 0 && end[owner[r]] < start[v]) owner[r] = -1;
+            }
+            // calls in [start, end): one at the start clobbers a value live into it, unless
+            // it is the READ that defines v (the result is stored after the call)
+            int calls = callsBefore[end[v]] - callsBefore[start[v]];
+            if (code.op(start[v]) == Op.READ && code.a(start[v]) == v) calls--;
+            boolean crossesCall = calls > 0;
+            int from = crossesCall ? FIRST_CALLEE_SAVED : 0;
+            int free = -1;
+            for (int r = from; r < owner.length && free < 0; r++) if (owner[r] < 0) free = r;
+            if (free >= 0) {
+                take(v, free, owner);
+                continue;
+            }
+            // no register: spill the cheapest of v and the intervals holding one it could use
+            int victim = -1;
+            for (int r = from; r < owner.length; r++) {
+                int u = owner[r];
+                if (victim < 0 || weight[u] < weight[owner[victim]]
+                        || weight[u] == weight[owner[victim]] && end[u] > end[owner[victim]]) victim = r;
+            }
+            int u = owner[victim];
+            if (weight[u] < weight[v] || weight[u] == weight[v] && end[u] > end[v]) {
+                register[u] = -1;
+                spilled.add(u);
+                take(v, victim, owner);
+            } else {
+                spilled.add(v);
+            }
+        }
+    }
+
+    private void take(int v, int r, int[] owner) {
+        owner[r] = v;
+        register[v] = r;
+        registerUsed[r] = true;
+    }
+
+    // Interval partitioning: a slot is reused once its last interval has ended
+    private void assignSlots(List<Integer> spilled, int[] start, int[] end) {
+        spilled.sort((x, y) -> start[x] != start[y] ? Integer.compare(start[x], start[y]) : Integer.compare(x, y));
+        PriorityQueue<Long> busy = new PriorityQueue<>();      // (end << 32 | slot), earliest end first
+        ArrayDeque<Integer> free = new ArrayDeque<>();
+        for (int v : spilled) {
+            while (!busy.isEmpty() && (int) (busy.peek() >> 32) < start[v]) free.push((int) (long) busy.poll());
+            int s = free.isEmpty() ? slots++ : free.pop();
+            slot[v] = s;
+            busy.add((long) end[v] << 32 | s);
+        }
+    }
+
+    /** True if the operand is defined or read anywhere. */
+    public boolean used(int id) {
+        return used[id];
+    }
+
+    /** Index into {@link #REGISTERS} of the operand's register, or -1 if it lives in a stack slot. */
+    public int register(int id) {
+        return register[id];
+    }
+
+    /** Stack slot (4 bytes each) of a spilled operand, or -1. */
+    public int slot(int id) {
+        return slot[id];
+    }
+
+    /** Number of stack slots the spilled operands need. */
+    public int slots() {
+        return slots;
+    }
+
+    /** True if some operand was given register 'r'. */
+    public boolean registerUsed(int r) {
+        return registerUsed[r];
+    }
+
+    /** Operands read before any assignment on some path; they must start out as 0. */
+    public int[] zeroed() {
+        return zeroed;
+    }
+}
@@ -0,0 +1,206 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over an
+ * {@link Ssa} side table.
+ *
+ * Every SSA value starts at TOP (no information yet) and can only move
+ * down to a constant and then to BOTTOM (not constant). Blocks and edges
+ * start out not executable; only edges an IFZ can actually take are
+ * followed, so constants flow through user variables and phis and
+ * branches on constants leave their dead side unexecuted.
+ *
+ * Folding follows the generated assembly: ints wrap, and a division by
+ * zero or MIN_VALUE / -1 is never folded (it traps at run time).
+ * true/false are constants for branching only, never for arithmetic.
+ */
+public final class Sccp {
+    // Lattice kinds
+    public static final byte TOP = 0, INT = 1, BOOL = 2, BOTTOM = 3;
+
+    public final Ssa ssa;
+    private final Tac code;
+    private final Cfg cfg;
+    private final byte[] kind;
+    private final int[] value;
+    private final boolean[] blockExec;
+    private final boolean[][] edgeExec;     // [block][position in pred list]
+
+    // worklists: target blocks of newly executable edges, SSA values whose lattice changed
+    private int[] edgeBlock = new int[16];
+    private int edges;
+    private int[] changed = new int[16];
+    private int changes;
+
+    public Sccp(Ssa ssa) {
+        this.ssa = ssa;
+        this.code = ssa.code;
+        this.cfg = ssa.cfg;
+        kind = new byte[ssa.undef + 1];
+        value = new int[ssa.undef + 1];
+        kind[ssa.undef] = BOTTOM;
+        blockExec = new boolean[cfg.blocks];
+        edgeExec = new boolean[cfg.blocks][];
+        for (int b = 0; b < cfg.blocks; b++) edgeExec[b] = new boolean[cfg.pred(b).length];
+
+        visitBlock(0);
+        while (edges > 0 || changes > 0) {
+            while (edges > 0) {
+                edges--;
+                int b = edgeBlock[edges];
+                if (!blockExec[b]) visitBlock(b);
+                else for (int k : ssa.blockPhis(b)) visitPhi(k);
+            }
+            while (changes > 0) {
+                int v = changed[--changes];
+                for (int k = ssa.usersFrom(v), end = ssa.usersTo(v); k < end; k++) {
+                    int u = ssa.user(k);
+                    if (u < ssa.instructions) {
+                        int b = cfg.blockOf(u);
+                        if (!blockExec[b]) continue;
+                        visitInstruction(u);
+                        if (u == cfg.end(b) - 1) branches(b);
+                    } else {
+                        int phi = u - ssa.instructions;
+                        if (blockExec[ssa.phiBlock(phi)]) visitPhi(phi);
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitBlock(int b) {
+        blockExec[b] = true;
+        for (int k : ssa.blockPhis(b)) visitPhi(k);
+        for (int i = cfg.start(b); i < cfg.end(b); i++) visitInstruction(i);
+        branches(b);
+    }
+
+    // Marks the out-edges of b that its last instruction can take
+    private void branches(int b) {
+        int[] succ = cfg.succ(b);
+        int last = cfg.end(b) - 1;
+        if (last >= cfg.start(b) && code.op(last) == Op.IFZ) {
+            int c = ssa.useA(last);
+            byte k = kind[c];
+            if (k == TOP) return;
+            boolean fallThrough = succ.length == 2;
+            if (k == BOTTOM) {
+                for (int s : succ) markEdge(b, s);
+            } else if (value[c] == 0) {
+                markEdge(b, succ[succ.length - 1]);
+            } else if (fallThrough) {
+                markEdge(b, succ[0]);
+            }
+            return;
+        }
+        for (int s : succ) markEdge(b, s);
+    }
+
+    private void markEdge(int from, int to) {
+        int[] preds = cfg.pred(to);
+        for (int j = 0; j < preds.length; j++) {
+            if (preds[j] != from || edgeExec[to][j]) continue;
+            edgeExec[to][j] = true;
+            if (edges == edgeBlock.length) edgeBlock = Arrays.copyOf(edgeBlock, edges * 2);
+            edgeBlock[edges++] = to;
+        }
+    }
+
+    private void visitPhi(int phi) {
+        int b = ssa.phiBlock(phi);
+        byte k = TOP;
+        int v = 0;
+        for (int j = 0; j < edgeExec[b].length; j++) {
+            if (!edgeExec[b][j]) continue;
+            int arg = ssa.phiArg(phi, j);
+            byte ak = kind[arg];
+            if (ak == TOP) continue;
+            if (k == TOP) {
+                k = ak;
+                v = value[arg];
+            } else if (ak != k || value[arg] != v) {
+                k = BOTTOM;
+                break;
+            }
+        }
+        set(ssa.instructions + phi, k, v);
+    }
+
+    private void visitInstruction(int i) {
+        Op op = code.op(i);
+        switch (op) {
+            case CONST -> set(i, INT, code.a(i));
+            case LIT -> {
+                String text = code.operands.name(code.a(i));
+                if (text.equalsIgnoreCase("true"))       set(i, BOOL, 1);
+                else if (text.equalsIgnoreCase("false")) set(i, BOOL, 0);
+                else set(i, BOTTOM, 0);
+            }
+            case COPY -> {
+                int a = ssa.useA(i);
+                set(i, kind[a], value[a]);
+            }
+            case ADD, SUB, MUL, DIV -> {
+                int a = ssa.useA(i), b = ssa.useB(i);
+                byte ka = kind[a], kb = kind[b];
+                if (ka == BOTTOM || kb == BOTTOM || ka == BOOL || kb == BOOL) {
+                    set(i, BOTTOM, 0);
+                } else if (ka == TOP || kb == TOP) {
+                    // wait for both operands
+                } else {
+                    int l = value[a], r = value[b];
+                    switch (op) {
+                        case ADD -> set(i, INT, l + r);
+                        case SUB -> set(i, INT, l - r);
+                        case MUL -> set(i, INT, l * r);
+                        default  -> {
+                            if (r == 0 || (l == Integer.MIN_VALUE && r == -1)) set(i, BOTTOM, 0);
+                            else set(i, INT, l / r);
+                        }
+                    }
+                }
+            }
+            case SHL, SAR, SHR, MULH -> {
+                int a = ssa.useA(i);
+                byte ka = kind[a];
+                if (ka == BOTTOM || ka == BOOL) {
+                    set(i, BOTTOM, 0);
+                } else if (ka == INT) {
+                    int l = value[a], imm = code.b(i);
+                    set(i, INT, switch (op) {
+                        case SHL -> l << imm;
+                        case SAR -> l >> imm;
+                        case SHR -> l >>> imm;
+                        default  -> (int) (((long) l * imm) >> 32);
+                    });
+                }
+            }
+            case READ -> set(i, BOTTOM, 0);
+            default -> { }      // PRINT, LABEL, GOTO, IFZ define nothing
+        }
+    }
+
+    private void set(int v, byte k, int val) {
+        byte old = kind[v];
+        if (old == BOTTOM || k == TOP) return;      // never climbs back up
+        if (old == k && value[v] == val) return;
+        if (old != TOP) k = BOTTOM;                 // a second, different constant
+        kind[v] = k;
+        value[v] = val;
+        if (changes == changed.length) changed = Arrays.copyOf(changed, changes * 2);
+        changed[changes++] = v;
+    }
+
+    public boolean executable(int block)  { return blockExec[block]; }
+    public boolean edgeExecutable(int block, int predPosition) { return edgeExec[block][predPosition]; }
+    public byte kind(int ssaValue)        { return kind[ssaValue]; }
+    public int value(int ssaValue)        { return value[ssaValue]; }
+
+    /** True if 'ssaValue' is a known int constant. */
+    public boolean isInt(int ssaValue) {
+        return kind[ssaValue] == INT;
+    }
+}
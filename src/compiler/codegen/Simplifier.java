@@ -0,0 +1,145 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * Algebraic simplification and reassociation of constant chains.
+ *
+ * Identities with a constant operand are removed: x + 0, x - 0, x * 1 and
+ * x / 1 become copies, x * 0 and x - x become 0. A chain such as
+ * (x + 1) + 2 or (x * 3) * 4, where {@link Sccp} sees no constant because
+ * x is unknown, is rewritten to combine its constants first: x + 3 and
+ * x * 12. Ints wrap, so this is exact for +, - and *; division is never
+ * reassociated.
+ *
+ * Only chains inside one block are followed, and only while the value the
+ * inner instruction read has not been written since. Within a block, reads
+ * of a temporary that is a copy of another temporary read the original, so
+ * the copies the identities leave behind become dead.
+ *
+ * Everything is block-local, so large programs are simplified in parallel
+ * ({@link BlockParallel}).
+ */
+public final class Simplifier implements BlockParallel.Local {
+    private final boolean[] known;
+    private final int[] constant;
+    private final int[] defs;
+    private final ThreadLocal<Scratch> scratch;
+
+    // Per-thread tables, indexed by operand; entries are stamped with their block
+    private static final class Scratch {
+        // 'temp = x op c' (SUB kept as ADD of -c) for temps defined earlier in the block
+        final Op[] formOp;
+        final int[] formX, formC, formBlock, formVersion;
+        final int[] version;                // bumped on each write, so a stale form is never used
+        final int[] alias, aliasBlock;
+
+        Scratch(int ops) {
+            formOp = new Op[ops];
+            formX = new int[ops];
+            formC = new int[ops];
+            formBlock = new int[ops];
+            formVersion = new int[ops];
+            version = new int[ops];
+            alias = new int[ops];
+            aliasBlock = new int[ops];
+            Arrays.fill(formBlock, -1);
+            Arrays.fill(aliasBlock, -1);
+        }
+    }
+
+    private Simplifier(Tac code) {
+        int ops = code.operands.size();
+        known = code.constantTemps();
+        constant = code.tempConstants();
+        defs = new int[ops];
+        for (int i = 0; i < code.size(); i++) if (code.def(i) != Tac.NONE) defs[code.def(i)]++;
+        scratch = ThreadLocal.withInitial(() -> new Scratch(ops));
+    }
+
+    public static Tac run(Tac code) {
+        return run(code, BlockParallel.Config.DEFAULT);
+    }
+
+    /** Runs with the given split settings (pool, threshold, chunk size). */
+    public static Tac run(Tac code, BlockParallel.Config parallel) {
+        return BlockParallel.run(code, new Simplifier(code), parallel);
+    }
+
+    @Override
+    public void rewrite(Tac code, int from, int to, int block, BlockParallel.Fragment out) {
+        Scratch s = scratch.get();
+        int[] version = s.version, alias = s.alias, aliasBlock = s.aliasBlock;
+        for (int i = from; i < to; i++) {
+            Op op = code.op(i);
+            if (op == Op.LABEL) block++;
+            int d = code.def(i);
+            int a = code.usesA(i) && aliasBlock[code.a(i)] == block ? alias[code.a(i)] : code.a(i);
+            int b = code.usesB(i) && aliasBlock[code.b(i)] == block ? alias[code.b(i)] : code.b(i);
+            if (!op.isBinary()) {
+                out.emit(op, code.dst(i), a, b);
+                if (op == Op.COPY) forward(code, d, a, block, s);
+                if (d != Tac.NONE) version[d]++;
+                continue;
+            }
+            boolean ka = known[a], kb = known[b];
+            int ca = constant[a], cb = constant[b];
+
+            // identities
+            if (op == Op.ADD && kb && cb == 0 || op == Op.SUB && kb && cb == 0
+                    || (op == Op.MUL || op == Op.DIV) && kb && cb == 1) {
+                out.emit(Op.COPY, d, a, Tac.NONE);
+                forward(code, d, a, block, s);
+            } else if (op == Op.ADD && ka && ca == 0 || op == Op.MUL && ka && ca == 1) {
+                out.emit(Op.COPY, d, b, Tac.NONE);
+                forward(code, d, b, block, s);
+            } else if (op == Op.MUL && (ka && ca == 0 || kb && cb == 0) || op == Op.SUB && a == b) {
+                out.emit(Op.CONST, d, 0, Tac.NONE);
+            } else if (op != Op.DIV && ka != kb && !(op == Op.SUB && ka)) {
+                // x op c (or c op x for ADD and MUL)
+                int x = kb ? a : b;
+                int c = kb ? cb : ca;
+                Op form = op == Op.MUL ? Op.MUL : Op.ADD;
+                if (op == Op.SUB) c = -c;
+                if (s.formBlock[x] == block && s.formVersion[x] == version[s.formX[x]] && s.formOp[x] == form) {
+                    // (y op c1) op c2  ->  y op (c1 op c2)
+                    c = form == Op.MUL ? s.formC[x] * c : s.formC[x] + c;
+                    x = s.formX[x];
+                    emitForm(out, form, d, x, c);
+                } else {
+                    out.emit(op, d, a, b);
+                }
+                if (defs[d] == 1 && code.operands.isTemp(d) && d != x) {
+                    s.formOp[d] = form;
+                    s.formX[d] = x;
+                    s.formC[d] = c;
+                    s.formBlock[d] = block;
+                    s.formVersion[d] = version[x];
+                }
+            } else {
+                out.emit(op, d, a, b);
+            }
+            version[d]++;
+        }
+    }
+
+    // Later reads of temp 'd' in this block read temp 'x' instead; both are only written once
+    private void forward(Tac code, int d, int x, int block, Scratch s) {
+        if (defs[d] != 1 || defs[x] != 1 || !code.operands.isTemp(d) || !code.operands.isTemp(x)) return;
+        s.alias[d] = x;
+        s.aliasBlock[d] = block;
+    }
+
+    // d = x + c or d = x * c, with the new constant in a temp of its own
+    private static void emitForm(BlockParallel.Fragment out, Op form, int d, int x, int c) {
+        if (form == Op.ADD && c == 0 || form == Op.MUL && c == 1) {
+            out.emit(Op.COPY, d, x, Tac.NONE);
+        } else if (form == Op.MUL && c == 0) {
+            out.emit(Op.CONST, d, 0, Tac.NONE);
+        } else {
+            int k = out.newTemp();
+            out.emit(Op.CONST, k, c, Tac.NONE);
+            out.emit(form, d, x, k);
+        }
+    }
+}
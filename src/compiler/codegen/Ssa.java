@@ -0,0 +1,226 @@
+package compiler.codegen;
+
+import java.util.Arrays;
+
+/**
+ * SSA form of a {@link Tac} program, kept as a side table: the code itself
+ * is not renamed. Every definition is a value: value i is the result of
+ * instruction i, value instructions+k is phi k, and {@link #undef} stands
+ * for "no definition reaches here". For every use the table records which
+ * value it reads, so analyses run on SSA values while transformations
+ * rewrite the original instructions.
+ *
+ * Phis are placed at iterated dominance frontiers, only for operands that
+ * are live across blocks (semi-pruned SSA); renaming walks the dominator
+ * tree. Unreachable blocks are not renamed.
+ */
+public final class Ssa {
+    public final Cfg cfg;
+    public final Dominators dom;
+    public final Tac code;
+    public final int instructions;
+    public final int undef;
+    private final int[] useA, useB;     // value read by operand a / b, or -1
+    private int phis;
+    private int[] phiVar = new int[16], phiBlock = new int[16];
+    private int[][] phiArgs = new int[16][];   // one value per pred of the phi's block
+    private final int[][] blockPhis;
+    private int[] userStart, users;             // def-use chains (CSR), built on demand
+
+    public Ssa(Dominators dom) {
+        this.dom = dom;
+        this.cfg = dom.cfg;
+        this.code = cfg.code;
+        this.instructions = code.size();
+        int n = instructions, vars = code.operands.size(), blocks = cfg.blocks;
+        useA = new int[n];
+        useB = new int[n];
+        Arrays.fill(useA, -1);
+        Arrays.fill(useB, -1);
+
+        // 1) operands read before being written in some block, and each operand's def blocks
+        boolean[] global = new boolean[vars];
+        int[] killedIn = new int[vars];
+        Arrays.fill(killedIn, -1);
+        int[][] defBlocks = new int[vars][];
+        int[] defCount = new int[vars];
+        for (int b : dom.reversePostorder()) {
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (code.usesA(i) && killedIn[code.a(i)] != b) global[code.a(i)] = true;
+                if (code.usesB(i) && killedIn[code.b(i)] != b) global[code.b(i)] = true;
+                int d = code.def(i);
+                if (d == Tac.NONE || killedIn[d] == b) continue;
+                killedIn[d] = b;
+                if (defBlocks[d] == null) defBlocks[d] = new int[2];
+                else if (defCount[d] == defBlocks[d].length) defBlocks[d] = Arrays.copyOf(defBlocks[d], defCount[d] * 2);
+                defBlocks[d][defCount[d]++] = b;
+            }
+        }
+
+        // 2) phi placement at iterated dominance frontiers
+        int[] phiCount = new int[blocks];
+        int[] hasPhi = new int[blocks], queued = new int[blocks];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(queued, -1);
+        int[] work = new int[blocks];
+        for (int v = 0; v < vars; v++) {
+            if (!global[v] || defBlocks[v] == null) continue;
+            int top = 0;
+            for (int k = 0; k < defCount[v]; k++) {
+                work[top++] = defBlocks[v][k];
+                queued[defBlocks[v][k]] = v;
+            }
+            while (top > 0) {
+                int b = work[--top];
+                for (int f : dom.frontier(b)) {
+                    if (hasPhi[f] == v) continue;
+                    hasPhi[f] = v;
+                    addPhi(v, f);
+                    phiCount[f]++;
+                    if (queued[f] != v) {
+                        queued[f] = v;
+                        work[top++] = f;
+                    }
+                }
+            }
+        }
+        blockPhis = new int[blocks][];
+        for (int b = 0; b < blocks; b++) blockPhis[b] = new int[phiCount[b]];
+        Arrays.fill(phiCount, 0);
+        for (int k = 0; k < phis; k++) {
+            int b = phiBlock[k];
+            blockPhis[b][phiCount[b]++] = k;
+            phiArgs[k] = new int[cfg.pred(b).length];
+            Arrays.fill(phiArgs[k], -1);
+        }
+        this.undef = n + phis;
+
+        // 3) renaming: walk the dominator tree, undoing each block's defs on the way out
+        int[] cur = new int[vars];
+        Arrays.fill(cur, undef);
+        int[] logVar = new int[16], logOld = new int[16];
+        int logSize = 0;
+        int[] stack = new int[blocks], mark = new int[blocks], next = new int[blocks];
+        int sp = 0;
+        stack[sp] = 0;
+        next[sp++] = -1;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (next[sp - 1] < 0) {
+                // entering b
+                mark[sp - 1] = logSize;
+                for (int k : blockPhis[b]) {
+                    if (logSize == logVar.length) {
+                        logVar = Arrays.copyOf(logVar, logSize * 2);
+                        logOld = Arrays.copyOf(logOld, logSize * 2);
+                    }
+                    logVar[logSize] = phiVar[k];
+                    logOld[logSize++] = cur[phiVar[k]];
+                    cur[phiVar[k]] = n + k;
+                }
+                for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                    if (code.usesA(i)) useA[i] = cur[code.a(i)];
+                    if (code.usesB(i)) useB[i] = cur[code.b(i)];
+                    int d = code.def(i);
+                    if (d == Tac.NONE) continue;
+                    if (logSize == logVar.length) {
+                        logVar = Arrays.copyOf(logVar, logSize * 2);
+                        logOld = Arrays.copyOf(logOld, logSize * 2);
+                    }
+                    logVar[logSize] = d;
+                    logOld[logSize++] = cur[d];
+                    cur[d] = i;
+                }
+                for (int s : cfg.succ(b)) {
+                    int[] preds = cfg.pred(s);
+                    for (int j = 0; j < preds.length; j++) {
+                        if (preds[j] != b) continue;
+                        for (int k : blockPhis[s]) phiArgs[k][j] = cur[phiVar[k]];
+                    }
+                }
+                next[sp - 1] = 0;
+            }
+            int[] kids = dom.children(b);
+            if (next[sp - 1] < kids.length) {
+                stack[sp] = kids[next[sp - 1]++];
+                next[sp++] = -1;
+            } else {
+                // leaving b
+                int m = mark[sp - 1];
+                while (logSize > m) {
+                    logSize--;
+                    cur[logVar[logSize]] = logOld[logSize];
+                }
+                sp--;
+            }
+        }
+    }
+
+    private void addPhi(int var, int block) {
+        if (phis == phiVar.length) {
+            phiVar = Arrays.copyOf(phiVar, phis * 2);
+            phiBlock = Arrays.copyOf(phiBlock, phis * 2);
+            phiArgs = Arrays.copyOf(phiArgs, phis * 2);
+        }
+        phiVar[phis] = var;
+        phiBlock[phis++] = block;
+    }
+
+    /** Value read by operand 'a' of instruction 'i' (-1 if not a use or unreachable). */
+    public int useA(int i)              { return useA[i]; }
+    /** Value read by operand 'b' of instruction 'i' (-1 if not a use or unreachable). */
+    public int useB(int i)              { return useB[i]; }
+    public int phis()                   { return phis; }
+    public int[] blockPhis(int block)   { return blockPhis[block]; }
+    public int phiVar(int phi)          { return phiVar[phi]; }
+    public int phiBlock(int phi)        { return phiBlock[phi]; }
+    /** Value flowing into phi 'phi' along the j-th predecessor edge of its block. */
+    public int phiArg(int phi, int j)   { return phiArgs[phi][j]; }
+
+    /** True if 'value' is a phi rather than an instruction result or undef. */
+    public boolean isPhi(int value) {
+        return value >= instructions && value < undef;
+    }
+
+    /**
+     * Users of 'value' are user(k) for usersFrom(value) <= k < usersTo(value):
+     * instruction indexes, and instructions+k for phi k. A user is listed
+     * once per operand that reads the value.
+     */
+    public int usersFrom(int value) {
+        if (userStart == null) buildUsers();
+        return userStart[value];
+    }
+
+    public int usersTo(int value) {
+        if (userStart == null) buildUsers();
+        return userStart[value + 1];
+    }
+
+    public int user(int k) {
+        return users[k];
+    }
+
+    private void buildUsers() {
+        int values = undef + 1;
+        int[] count = new int[values + 1];
+        for (int i = 0; i < instructions; i++) {
+            if (useA[i] >= 0) count[useA[i]]++;
+            if (useB[i] >= 0) count[useB[i]]++;
+        }
+        for (int k = 0; k < phis; k++) {
+            for (int v : phiArgs[k]) if (v >= 0) count[v]++;
+        }
+        userStart = new int[values + 1];
+        for (int v = 0; v < values; v++) userStart[v + 1] = userStart[v] + count[v];
+        users = new int[userStart[values]];
+        int[] fill = Arrays.copyOf(userStart, values);
+        for (int i = 0; i < instructions; i++) {
+            if (useA[i] >= 0) users[fill[useA[i]]++] = i;
+            if (useB[i] >= 0) users[fill[useB[i]]++] = i;
+        }
+        for (int k = 0; k < phis; k++) {
+            for (int v : phiArgs[k]) if (v >= 0) users[fill[v]++] = instructions + k;
+        }
+    }
+}
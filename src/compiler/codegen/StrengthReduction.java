@@ -0,0 +1,133 @@
+package compiler.codegen;
+
+/**
+ * Replaces multiplication and division by a constant with cheaper
+ * instructions, so the generated assembly no longer needs imul or
+ * cdq/idiv for them:
+ * <ul>
+ *   <li>x * 2^k becomes x << k</li>
+ *   <li>x / 2^k becomes ((x + ((x >> 31) >>> (32 - k))) >> k): negative
+ *       dividends get 2^k - 1 added first, so the shift rounds toward zero
+ *       like idiv does</li>
+ *   <li>x / c for any other c except 0, -1 and negative powers of two
+ *       becomes a multiply-high by a "magic" reciprocal and a shift, plus
+ *       one when the quotient is negative (Hacker's Delight, ch. 10)</li>
+ * </ul>
+ * Division by 0 or -1 is left alone: it has to trap where it did before.
+ * Each instruction is rewritten on its own, so large programs are handled
+ * in parallel ({@link BlockParallel}).
+ */
+public final class StrengthReduction implements BlockParallel.Local {
+    private final boolean[] known;
+    private final int[] constant;
+
+    private StrengthReduction(Tac code) {
+        known = code.constantTemps();
+        constant = code.tempConstants();
+    }
+
+    public static Tac run(Tac code) {
+        return run(code, BlockParallel.Config.DEFAULT);
+    }
+
+    /** Runs with the given split settings (pool, threshold, chunk size). */
+    public static Tac run(Tac code, BlockParallel.Config parallel) {
+        return BlockParallel.run(code, new StrengthReduction(code), parallel);
+    }
+
+    @Override
+    public void rewrite(Tac code, int from, int to, int block, BlockParallel.Fragment out) {
+        for (int i = from; i < to; i++) {
+            Op op = code.op(i);
+            int d = code.dst(i), a = code.a(i), b = code.b(i);
+            if (op == Op.MUL && (known[a] || known[b])) {
+                int x = known[b] ? a : b;
+                int c = known[b] ? constant[b] : constant[a];
+                if (Integer.bitCount(c) == 1 && c != 1) {
+                    out.emit(Op.SHL, d, x, Integer.numberOfTrailingZeros(c));
+                    continue;
+                }
+            } else if (op == Op.DIV && known[b]) {
+                int c = constant[b];
+                if (c > 1 && Integer.bitCount(c) == 1) {
+                    divideByPowerOfTwo(out, d, a, Integer.numberOfTrailingZeros(c));
+                    continue;
+                }
+                if (Math.abs(c) > 2 && Integer.bitCount(Math.abs(c)) != 1) {
+                    divideByMagic(out, d, a, c);
+                    continue;
+                }
+            }
+            out.copy(code, i);
+        }
+    }
+
+    private static void divideByPowerOfTwo(BlockParallel.Fragment out, int d, int x, int k) {
+        int bias = out.newTemp();
+        if (k == 1) {
+            out.emit(Op.SHR, bias, x, 31);
+        } else {
+            int sign = out.newTemp();
+            out.emit(Op.SAR, sign, x, 31);
+            out.emit(Op.SHR, bias, sign, 32 - k);
+        }
+        int sum = out.newTemp();
+        out.emit(Op.ADD, sum, x, bias);
+        out.emit(Op.SAR, d, sum, k);
+    }
+
+    private static void divideByMagic(BlockParallel.Fragment out, int d, int x, int c) {
+        long magic = magic(c);
+        int m = (int) magic, shift = (int) (magic >>> 32);
+        int q = out.newTemp();
+        out.emit(Op.MULH, q, x, m);
+        if (c > 0 && m < 0 || c < 0 && m > 0) {
+            // the multiplier did not fit in a signed int: correct by x
+            int t = out.newTemp();
+            out.emit(c > 0 ? Op.ADD : Op.SUB, t, q, x);
+            q = t;
+        }
+        if (shift > 0) {
+            int t = out.newTemp();
+            out.emit(Op.SAR, t, q, shift);
+            q = t;
+        }
+        int sign = out.newTemp();
+        out.emit(Op.SHR, sign, q, 31);
+        out.emit(Op.ADD, d, q, sign);
+    }
+
+    /**
+     * Magic multiplier (low 32 bits) and shift (high 32 bits) for signed
+     * division by 'd', where |d| >= 3 is not a power of two.
+     */
+    static long magic(int d) {
+        final long two31 = 0x80000000L, mask = 0xFFFFFFFFL;
+        long ad = Math.abs((long) d);
+        long t = two31 + (d < 0 ? 1 : 0);
+        long anc = t - 1 - t % ad;                  // |nc|
+        int p = 31;
+        long q1 = two31 / anc, r1 = two31 - q1 * anc;
+        long q2 = two31 / ad, r2 = two31 - q2 * ad;
+        long delta;
+        do {
+            p++;
+            q1 = (2 * q1) & mask;
+            r1 = (2 * r1) & mask;
+            if (r1 >= anc) {
+                q1 = (q1 + 1) & mask;
+                r1 -= anc;
+            }
+            q2 = (2 * q2) & mask;
+            r2 = (2 * r2) & mask;
+            if (r2 >= ad) {
+                q2 = (q2 + 1) & mask;
+                r2 -= ad;
+            }
+            delta = ad - r2;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+        int m = (int) (q2 + 1);
+        if (d < 0) m = -m;
+        return ((long) (p - 32) << 32) | (m & mask);
+    }
+}
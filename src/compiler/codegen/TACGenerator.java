@@ -4,63 +4,73 @@ import compiler.ast.*;         // your Stmt/Expr classes
 import java.util.*;
 
 public class TACGenerator {
-    private int tempCount = 0;
-    private int labelCount = 0;
-    private final List<String> code = new ArrayList<>();
+    private final Operands operands = new Operands();
+    private final Tac code = new Tac(operands);
 
-    private String newTemp() { return "t" + (++tempCount); }
-    private String newLabel() { return "L" + (++labelCount); }
-
-    public List<String> generate(List<Stmt> stmts) {
+    public Tac generate(List<Stmt> stmts) {
         for (Stmt s : stmts) emitStmt(s);
         return code;
     }
 
     private void emitStmt(Stmt s) {
         if (s instanceof AssignStmt a) {
-            String t = emitExpr(a.expr);
-            code.add(a.var + " = " + t);
+            int t = emitExpr(a.expr);
+            code.emit(Op.COPY, operands.var(a.var), t, Tac.NONE);
         } else if (s instanceof ReadStmt r) {
-            code.add("READ " + r.var);
+            code.emit(Op.READ, Tac.NONE, operands.var(r.var), Tac.NONE);
         } else if (s instanceof PrintStmt p) {
-            code.add("PRINT " + p.var);
+            code.emit(Op.PRINT, Tac.NONE, operands.var(p.var), Tac.NONE);
         } else if (s instanceof IfStmt i) {
-            String elseLabel = newLabel();
-            String endLabel  = newLabel();
-            String condTemp  = emitExpr(i.cond);
-            code.add("IFZ " + condTemp + " GOTO " + elseLabel);
+            int elseLabel = operands.newLabel();
+            int endLabel  = operands.newLabel();
+            int condTemp  = emitExpr(i.cond);
+            code.emit(Op.IFZ, Tac.NONE, condTemp, elseLabel);
             i.thenBlock.forEach(this::emitStmt);
-            code.add("GOTO " + endLabel);
-            code.add(elseLabel + ":");
+            code.emit(Op.GOTO, Tac.NONE, endLabel, Tac.NONE);
+            code.emit(Op.LABEL, Tac.NONE, elseLabel, Tac.NONE);
             i.elseBlock.forEach(this::emitStmt);
-            code.add(endLabel + ":");
+            code.emit(Op.LABEL, Tac.NONE, endLabel, Tac.NONE);
         } else if (s instanceof WhileStmt w) {
-            String start = newLabel(), end = newLabel();
-            code.add(start + ":");
-            String condTemp = emitExpr(w.cond);
-            code.add("IFZ " + condTemp + " GOTO " + end);
+            int start = operands.newLabel(), end = operands.newLabel();
+            code.emit(Op.LABEL, Tac.NONE, start, Tac.NONE);
+            int condTemp = emitExpr(w.cond);
+            code.emit(Op.IFZ, Tac.NONE, condTemp, end);
             w.body.forEach(this::emitStmt);
-            code.add("GOTO " + start);
-            code.add(end + ":");
+            code.emit(Op.GOTO, Tac.NONE, start, Tac.NONE);
+            code.emit(Op.LABEL, Tac.NONE, end, Tac.NONE);
         }
     }
 
-    private String emitExpr(Expr e) {
+    private int emitExpr(Expr e) {
         if (e instanceof LiteralExpr l) {
-            String t = newTemp();
-            code.add(t + " = " + l.value);
+            int t = operands.newTemp();
+            Integer value = intValue(l.value);
+            if (value != null) code.emit(Op.CONST, t, value, Tac.NONE);
+            else code.emit(Op.LIT, t, operands.text(l.value), Tac.NONE);
             return t;
         }
         if (e instanceof VarExpr v) {
-            return v.name;
+            return operands.var(v.name);
         }
         if (e instanceof BinaryExpr b) {
-            String t1 = emitExpr(b.left);
-            String t2 = emitExpr(b.right);
-            String t = newTemp();
-            code.add(t + " = " + t1 + " " + b.op + " " + t2);
+            int t1 = emitExpr(b.left);
+            int t2 = emitExpr(b.right);
+            Op op = Op.binary(b.op);
+            if (op == null) throw new RuntimeException("Unknown operator: " + b.op);
+            int t = operands.newTemp();
+            code.emit(op, t, t1, t2);
             return t;
         }
         throw new RuntimeException("Unknown Expr: " + e);
     }
+
+    // The literal's int value, or null if it is not an int (boolean, string, out of range)
+    private static Integer intValue(String v) {
+        if (!v.matches("-?\\d+")) return null;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
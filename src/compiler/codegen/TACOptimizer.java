@@ -1,70 +1,83 @@
 package compiler.codegen;
 
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 /**
- * Performs simple optimization passes on three-address code (TAC).
- * Currently implements constant folding for temporaries.
+ * Performs optimization passes on three-address code (TAC).
+ *
+ * The passes run under a {@link PassManager}, in a pipeline chosen by the
+ * optimization level:
+ * <ul>
+ *   <li>O0: none, the generated code as it is</li>
+ *   <li>O1: constant propagation and value numbering ({@link Propagation}),
+ *       jump threading and unreachable-code removal ({@link JumpThreading})
+ *       and dead-assignment removal ({@link DeadCode}), once</li>
+ *   <li>O2: O1 plus loop-invariant code motion ({@link Licm}), algebraic
+ *       simplification ({@link Simplifier}) and strength reduction
+ *       ({@link StrengthReduction}), repeated until nothing changes (at
+ *       most {@link #O2_ROUNDS} rounds)</li>
+ *   <li>O3: O2 plus loop unrolling ({@link LoopUnrolling}) in the first
+ *       round, at most {@link #O3_ROUNDS} rounds</li>
+ * </ul>
  */
 public class TACOptimizer {
-    // Pattern for direct constant assignment: tX = 123
-    private static final Pattern CONST_ASSIGN = Pattern.compile("(t\\d+) = (\\d+)");
-    // Pattern for binary operations: tX = op1 + op2 (or -, *, /)
-    private static final Pattern BINARY_OP = Pattern.compile("(t\\d+) = (\\w+) ([+\\-*/]) (\\w+)");
+    /** Optimization levels, from fastest compile to best code. */
+    public enum Level { O0, O1, O2, O3 }
+
+    public static final int O2_ROUNDS = 4;
+    public static final int O3_ROUNDS = 6;
+
+    // Select with -Dcompiler.opt=O0|O1|O2|O3 (or set this field)
+    public static Level level = levelProperty();
+
+    // An unknown level is reported and falls back to O3, rather than failing class initialization
+    private static Level levelProperty() {
+        String name = System.getProperty("compiler.opt", "O3");
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown compiler.opt '" + name + "', using O3");
+            return Level.O3;
+        }
+    }
 
     /**
-     * Optimize the given TAC by performing constant folding.
-     * @param code List of TAC instructions
-     * @return Optimized list of TAC instructions
+     * Optimize the given TAC at the current {@link #level}.
+     * @param code TAC program
+     * @return Optimized TAC program (same operand table)
      */
-    public static List<String> optimize(List<String> code) {
-        Map<String, Integer> constants = new HashMap<>();
-        List<String> optimized = new ArrayList<>();
-
-        for (String instr : code) {
-            Matcher mConst = CONST_ASSIGN.matcher(instr);
-            if (mConst.matches()) {
-                String temp = mConst.group(1);
-                int value = Integer.parseInt(mConst.group(2));
-                // Record the constant for this temporary
-                constants.put(temp, value);
-                optimized.add(instr);
-                continue;
-            }
+    public static Tac optimize(Tac code) {
+        return optimize(code, level);
+    }
 
-            Matcher mBin = BINARY_OP.matcher(instr);
-            if (mBin.matches()) {
-                String temp = mBin.group(1);
-                String left = mBin.group(2);
-                String op = mBin.group(3);
-                String right = mBin.group(4);
-                if (constants.containsKey(left) && constants.containsKey(right)) {
-                    int l = constants.get(left);
-                    int r = constants.get(right);
-                    int result;
-                    switch (op) {
-                        case "+" -> result = l + r;
-                        case "-" -> result = l - r;
-                        case "*" -> result = l * r;
-                        case "/" -> result = l / r;
-                        default -> result = 0;
-                    }
-                    // Replace with a constant assignment
-                    String folded = temp + " = " + result;
-                    constants.put(temp, result);
-                    optimized.add(folded);
-                } else {
-                    optimized.add(instr);
-                }
-                continue;
-            }
+    /** Optimize the given TAC at 'level'. */
+    public static Tac optimize(Tac code, Level level) {
+        return pipeline(level).run(code);
+    }
 
-            // Default: keep instruction unchanged
-            optimized.add(instr);
-        }
+    /** A fresh pass manager for 'level'; run it to optimize and read its statistics. */
+    public static PassManager pipeline(Level level) {
+        return pipeline(level, BlockParallel.Config.DEFAULT);
+    }
 
-        return optimized;
+    /** As {@link #pipeline(Level)}, with the block-parallel passes split by 'parallel'. */
+    public static PassManager pipeline(Level level, BlockParallel.Config parallel) {
+        Pass propagate = Pass.of("propagate", Propagation::run);
+        Pass threading = Pass.of("jump-threading", JumpThreading::run);
+        Pass deadCode = Pass.of("dead-code", DeadCode::run);
+        return switch (level) {
+            case O0 -> new PassManager(1);
+            case O1 -> new PassManager(1).add(propagate).add(threading).add(deadCode);
+            case O2, O3 -> {
+                PassManager pm = new PassManager(level == Level.O2 ? O2_ROUNDS : O3_ROUNDS)
+                    .add(propagate).add(threading).add(Pass.of("licm", Licm::run));
+                if (level == Level.O3) pm.addOnce(Pass.of("loop-unrolling", LoopUnrolling::run));
+                yield pm.add(Pass.of("simplify", c -> Simplifier.run(c, parallel)))
+                    .add(propagate)
+                    .add(threading)
+                    .add(Pass.of("strength-reduction", c -> StrengthReduction.run(c, parallel)))
+                    .add(deadCode);
+            }
+        };
     }
 }
@@ -0,0 +1,158 @@
+package compiler.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Three-address code as a compact instruction array.
+ *
+ * Instructions are fixed-width groups of 4 ints: opcode (an {@link Op}
+ * ordinal), dst, a, b. Operands are ids into an {@link Operands} table
+ * that every Tac derived from the same program shares, so passes can
+ * copy instructions between them as they are. Unused fields hold NONE.
+ * Text is only produced for display (GUI tabs, tac.txt) by {@link #toText()}.
+ */
+public final class Tac {
+    public static final int NONE = -1;
+    private static final Op[] OPS = Op.values();
+
+    public final Operands operands;
+    private int[] code;
+    private int size;
+
+    public Tac(Operands operands) {
+        this(operands, 64);
+    }
+
+    private Tac(Operands operands, int capacity) {
+        this.operands = operands;
+        this.code = new int[Math.max(capacity, 4) * 4];
+    }
+
+    /** An empty Tac over the same operand table, sized for about this much code. */
+    public Tac derive() {
+        return new Tac(operands, size);
+    }
+
+    /** An empty Tac over the same operand table, sized for 'capacity' instructions. */
+    public Tac derive(int capacity) {
+        return new Tac(operands, capacity);
+    }
+
+    /** Appends an instruction and returns its index. */
+    public int emit(Op op, int dst, int a, int b) {
+        if (size * 4 == code.length) code = Arrays.copyOf(code, code.length * 2);
+        int p = size * 4;
+        code[p] = op.ordinal();
+        code[p + 1] = dst;
+        code[p + 2] = a;
+        code[p + 3] = b;
+        return size++;
+    }
+
+    /** Appends instruction 'i' of 'from' (which must share this operand table). */
+    public int copy(Tac from, int i) {
+        return emit(from.op(i), from.dst(i), from.a(i), from.b(i));
+    }
+
+    public void set(int i, Op op, int dst, int a, int b) {
+        int p = i * 4;
+        code[p] = op.ordinal();
+        code[p + 1] = dst;
+        code[p + 2] = a;
+        code[p + 3] = b;
+    }
+
+    public int size()      { return size; }
+    public Op op(int i)    { return OPS[code[i * 4]]; }
+    public int dst(int i)  { return code[i * 4 + 1]; }
+    public int a(int i)    { return code[i * 4 + 2]; }
+    public int b(int i)    { return code[i * 4 + 3]; }
+
+    /** True if 'other' holds the same instructions (operand ids compared as they are). */
+    public boolean sameCode(Tac other) {
+        return other == this || size == other.size
+            && Arrays.equals(code, 0, size * 4, other.code, 0, size * 4);
+    }
+
+    /** Operand written by instruction 'i' (READ writes its 'a'), or NONE. */
+    public int def(int i) {
+        Op op = op(i);
+        if (op.writesDst()) return dst(i);
+        return op == Op.READ ? a(i) : NONE;
+    }
+
+    /** True if operand 'a' of instruction 'i' is read (COPY, binary and immediate ops, PRINT, IFZ). */
+    public boolean usesA(int i) {
+        Op op = op(i);
+        return op == Op.COPY || op.isBinary() || op.hasImmediate() || op == Op.PRINT || op == Op.IFZ;
+    }
+
+    /** True if operand 'b' of instruction 'i' is read (binary ops). */
+    public boolean usesB(int i) {
+        return op(i).isBinary();
+    }
+
+    /**
+     * Value of each temp whose only definition is a CONST, else 0 (for a
+     * divisor, "unknown" and 0 both mean it may trap). Variables can be read
+     * before their one definition, so they never count.
+     */
+    public int[] tempConstants() {
+        int n = operands.size();
+        int[] value = new int[n];
+        int[] defs = new int[n];
+        for (int i = 0; i < size; i++) {
+            int d = def(i);
+            if (d == NONE) continue;
+            defs[d]++;
+            value[d] = op(i) == Op.CONST ? a(i) : 0;
+        }
+        for (int d = 0; d < n; d++) if (defs[d] != 1 || !operands.isTemp(d)) value[d] = 0;
+        return value;
+    }
+
+    /** True for each temp whose only definition is a CONST (its value is in {@link #tempConstants()}). */
+    public boolean[] constantTemps() {
+        int n = operands.size();
+        boolean[] known = new boolean[n];
+        int[] defs = new int[n];
+        for (int i = 0; i < size; i++) {
+            int d = def(i);
+            if (d == NONE) continue;
+            defs[d]++;
+            known[d] = op(i) == Op.CONST;
+        }
+        for (int d = 0; d < n; d++) if (defs[d] != 1 || !operands.isTemp(d)) known[d] = false;
+        return known;
+    }
+
+    /** Instruction 'i' in the text TAC format. */
+    public String text(int i) {
+        Op op = op(i);
+        int d = dst(i), a = a(i), b = b(i);
+        return switch (op) {
+            case CONST -> name(d) + " = " + a;
+            case LIT, COPY -> name(d) + " = " + name(a);
+            case ADD, SUB, MUL, DIV -> name(d) + " = " + name(a) + " " + op.symbol() + " " + name(b);
+            case SHL, SAR, SHR, MULH -> name(d) + " = " + name(a) + " " + op.symbol() + " " + b;
+            case READ  -> "READ " + name(a);
+            case PRINT -> "PRINT " + name(a);
+            case LABEL -> name(a) + ":";
+            case GOTO  -> "GOTO " + name(a);
+            case IFZ   -> "IFZ " + name(a) + " GOTO " + name(b);
+        };
+    }
+
+    /** The whole program in the text TAC format, one instruction per line. */
+    public List<String> toText() {
+        List<String> lines = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) lines.add(text(i));
+        return lines;
+    }
+
+    private String name(int id) {
+        return operands.name(id);
+    }
+}
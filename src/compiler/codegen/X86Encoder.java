@@ -0,0 +1,314 @@
+package compiler.codegen;
+
+import compiler.codegen.Asm.Insn;
+import compiler.codegen.Asm.Mnemonic;
+import compiler.codegen.Asm.Operand;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link Asm} instructions as x86-64 machine code, for
+ * {@link ElfWriter}. Covers the forms the generator, the peephole
+ * optimizer and {@link NativeRuntime} produce: mov/movzx/byte stores, lea,
+ * add/sub/xor/cmp/test, the imul forms, idiv/div/neg/cdq, shifts by an
+ * immediate, push/pop, jumps, call, ret and syscall.
+ *
+ * Jumps start out short (rel8) and are widened to rel32 until every
+ * displacement fits. Calls and jumps must target labels in the same code;
+ * rip-relative operands may also name data symbols, which are only
+ * patched in by {@link #bytes}, once the caller has placed the data.
+ */
+public final class X86Encoder {
+    private static final int REX = 0x40, REX_W = 0x08, REX_R = 0x04, REX_B = 0x01;
+
+    private final Insn[] code;
+    private final byte[][] encoded;         // per instruction, except jumps and calls
+    private final int[] ripAt;              // offset of a rip-relative disp32 in 'encoded', or -1
+    private final String[] ripSymbol;
+    private final boolean[] longJump;
+    private final int[] offset;             // per instruction, and the total size at the end
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private ByteArrayOutputStream out;
+    private int rip;
+    private String ripTarget;
+
+    public X86Encoder(List<Insn> code) {
+        this.code = code.toArray(new Insn[0]);
+        int n = this.code.length;
+        encoded = new byte[n][];
+        ripAt = new int[n];
+        ripSymbol = new String[n];
+        longJump = new boolean[n];
+        offset = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            Insn insn = this.code[i];
+            if (insn.op().isJump() || insn.op() == Mnemonic.CALL) continue;
+            out = new ByteArrayOutputStream();
+            rip = -1;
+            ripTarget = null;
+            encode(insn);
+            encoded[i] = out.toByteArray();
+            ripAt[i] = rip;
+            ripSymbol[i] = ripTarget;
+            if (insn.op() == Mnemonic.LABEL && labels.put(insn.text(), i) != null) {
+                throw new IllegalArgumentException("duplicate label " + insn.text());
+            }
+        }
+        layout();
+    }
+
+    /** Size of the code in bytes. */
+    public int size() {
+        return offset[code.length];
+    }
+
+    /** Offset of each label in the code. */
+    public Map<String, Integer> labels() {
+        Map<String, Integer> at = new HashMap<>();
+        labels.forEach((name, i) -> at.put(name, offset[i]));
+        return at;
+    }
+
+    /**
+     * The machine code placed at 'address', with rip-relative operands
+     * resolved against the labels and the given data symbol addresses.
+     */
+    public byte[] bytes(long address, Map<String, Long> symbols) {
+        ByteArrayOutputStream text = new ByteArrayOutputStream(size());
+        for (int i = 0; i < code.length; i++) {
+            Insn insn = code[i];
+            int next = offset[i + 1];
+            if (insn.op() == Mnemonic.CALL) {
+                text.write(0xE8);
+                int32(text, target(insn.dst().symbol()) - next);
+            } else if (insn.op().isJump()) {
+                int disp = target(insn.text()) - next;
+                if (longJump[i]) {
+                    if (insn.op() == Mnemonic.JMP) {
+                        text.write(0xE9);
+                    } else {
+                        text.write(0x0F);
+                        text.write(0x80 + condition(insn.op()));
+                    }
+                    int32(text, disp);
+                } else {
+                    text.write(insn.op() == Mnemonic.JMP ? 0xEB : 0x70 + condition(insn.op()));
+                    text.write(disp);
+                }
+            } else {
+                byte[] b = encoded[i];
+                if (ripAt[i] >= 0) {
+                    b = b.clone();
+                    String s = ripSymbol[i];
+                    long where = labels.containsKey(s) ? address + offset[labels.get(s)] : symbol(symbols, s);
+                    long disp = where - (address + next);
+                    for (int k = 0; k < 4; k++) b[ripAt[i] + k] = (byte) (disp >> 8 * k);
+                }
+                text.write(b, 0, b.length);
+            }
+        }
+        return text.toByteArray();
+    }
+
+    private static long symbol(Map<String, Long> symbols, String name) {
+        Long where = symbols.get(name);
+        if (where == null) throw new IllegalArgumentException("undefined symbol " + name);
+        return where;
+    }
+
+    private int target(String label) {
+        Integer i = labels.get(label);
+        if (i == null) throw new IllegalArgumentException("undefined label " + label);
+        return offset[i];
+    }
+
+    // Offsets with every jump short, then widen the ones out of rel8 range until none are
+    private void layout() {
+        boolean changed = true;
+        while (changed) {
+            for (int i = 0; i < code.length; i++) offset[i + 1] = offset[i] + size(i);
+            changed = false;
+            for (int i = 0; i < code.length; i++) {
+                if (!code[i].op().isJump() || longJump[i]) continue;
+                int disp = target(code[i].text()) - offset[i + 1];
+                if (disp < -128 || disp > 127) {
+                    longJump[i] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int size(int i) {
+        Mnemonic op = code[i].op();
+        if (op == Mnemonic.CALL) return 5;
+        if (!op.isJump()) return encoded[i].length;
+        return !longJump[i] ? 2 : op == Mnemonic.JMP ? 5 : 6;
+    }
+
+    // Condition code (the low nibble of jcc) of a conditional jump
+    private static int condition(Mnemonic op) {
+        return switch (op) {
+            case JE -> 0x4;
+            case JNE -> 0x5;
+            case JBE -> 0x6;
+            case JA -> 0x7;
+            case JL -> 0xC;
+            case JGE -> 0xD;
+            case JLE -> 0xE;
+            case JG -> 0xF;
+            default -> throw new IllegalArgumentException(op + " is not a conditional jump");
+        };
+    }
+
+    private void encode(Insn insn) {
+        Operand dst = insn.dst(), src = insn.src();
+        boolean wide = dst != null && dst.isReg() && dst.wide() || src != null && src.isReg() && src.wide();
+        switch (insn.op()) {
+            case LABEL, COMMENT -> { }
+            case MOV -> {
+                if (src.isImm() && dst.isReg() && !wide) {
+                    if (dst.reg().code() >= 8) out.write(REX | REX_B);
+                    out.write(0xB8 + (dst.reg().code() & 7));
+                    int32(out, src.value());
+                } else if (src.isImm()) {
+                    modrm(wide, 0, dst, false, 0xC7);
+                    int32(out, src.value());
+                } else if (src.isMem()) {
+                    modrm(wide, register(dst, insn), src, false, 0x8B);
+                } else {
+                    modrm(wide, src.reg().code(), dst, false, 0x89);
+                }
+            }
+            case MOVB -> {
+                if (src.isImm()) {
+                    modrm(false, 0, dst, false, 0xC6);
+                    out.write(src.value());
+                } else {
+                    int r = src.reg().code();
+                    modrm(false, r, dst, r >= 4 && r < 8, 0x88);     // spl..dil need a REX prefix
+                }
+            }
+            case MOVZX -> {
+                if (!src.isMem()) throw unsupported(insn);
+                modrm(false, register(dst, insn), src, false, 0x0F, 0xB6);
+            }
+            case LEA -> {
+                if (!src.isMem()) throw unsupported(insn);
+                modrm(dst.wide(), register(dst, insn), src, false, 0x8D);
+            }
+            case ADD -> arithmetic(insn, wide, 0);
+            case SUB -> arithmetic(insn, wide, 5);
+            case XOR -> arithmetic(insn, wide, 6);
+            case CMP -> arithmetic(insn, wide, 7);
+            case TEST -> {
+                if (src.isImm()) {
+                    modrm(wide, 0, dst, false, 0xF7);
+                    int32(out, src.value());
+                } else if (src.isReg()) {
+                    modrm(wide, src.reg().code(), dst, false, 0x85);
+                } else {
+                    modrm(wide, register(dst, insn), src, false, 0x85);
+                }
+            }
+            case IMUL -> {
+                if (src == null) {
+                    modrm(wide, 5, dst, false, 0xF7);               // edx:eax = eax * dst
+                } else if (src.isImm()) {
+                    boolean small = fitsByte(src.value());
+                    modrm(wide, register(dst, insn), dst, false, small ? 0x6B : 0x69);
+                    if (small) out.write(src.value());
+                    else int32(out, src.value());
+                } else {
+                    modrm(wide, register(dst, insn), src, false, 0x0F, 0xAF);
+                }
+            }
+            case IDIV -> modrm(wide, 7, dst, false, 0xF7);
+            case DIV -> modrm(wide, 6, dst, false, 0xF7);
+            case NEG -> modrm(wide, 3, dst, false, 0xF7);
+            case CDQ -> out.write(0x99);
+            case SHL, SAR, SHR -> {
+                if (!src.isImm()) throw unsupported(insn);
+                int digit = insn.op() == Mnemonic.SHL ? 4 : insn.op() == Mnemonic.SAR ? 7 : 5;
+                modrm(wide, digit, dst, false, src.value() == 1 ? 0xD1 : 0xC1);
+                if (src.value() != 1) out.write(src.value());
+            }
+            case PUSH, POP -> {
+                if (!dst.isReg()) throw unsupported(insn);
+                if (dst.reg().code() >= 8) out.write(REX | REX_B);
+                out.write((insn.op() == Mnemonic.PUSH ? 0x50 : 0x58) + (dst.reg().code() & 7));
+            }
+            case RET -> out.write(0xC3);
+            case SYSCALL -> {
+                out.write(0x0F);
+                out.write(0x05);
+            }
+            default -> throw unsupported(insn);
+        }
+    }
+
+    // add/sub/xor/cmp: opcodes 8*ext + 1 (r/m, reg) and + 3 (reg, r/m), or 83/81 /ext with an immediate
+    private void arithmetic(Insn insn, boolean wide, int ext) {
+        Operand dst = insn.dst(), src = insn.src();
+        if (src.isImm()) {
+            boolean small = fitsByte(src.value());
+            modrm(wide, ext, dst, false, small ? 0x83 : 0x81);
+            if (small) out.write(src.value());
+            else int32(out, src.value());
+        } else if (src.isMem()) {
+            modrm(wide, register(dst, insn), src, false, 8 * ext + 3);
+        } else {
+            modrm(wide, src.reg().code(), dst, false, 8 * ext + 1);
+        }
+    }
+
+    /**
+     * REX prefix, opcode and ModRM for register (or /digit) 'reg' and the
+     * register or memory operand 'rm', with its SIB byte and displacement.
+     */
+    private void modrm(boolean wide, int reg, Operand rm, boolean forceRex, int... opcode) {
+        int base = rm.reg() == null ? 0 : rm.reg().code();
+        int rex = REX | (wide ? REX_W : 0) | (reg >= 8 ? REX_R : 0) | (base >= 8 ? REX_B : 0);
+        if (rex != REX || forceRex) out.write(rex);
+        for (int b : opcode) out.write(b);
+        int r = (reg & 7) << 3, b = base & 7;
+        if (rm.isReg()) {
+            out.write(0xC0 | r | b);
+        } else if (!rm.isMem()) {
+            throw new IllegalArgumentException("operand " + rm.text("dword") + " is not a register or memory");
+        } else if (rm.reg() == null) {
+            out.write(r | 5);                                   // [rip + disp32]
+            rip = out.size();
+            ripTarget = rm.symbol();
+            int32(out, 0);
+        } else {
+            int disp = rm.value();
+            int mod = disp == 0 && b != 5 ? 0x00 : fitsByte(disp) ? 0x40 : 0x80;   // rbp/r13 need a displacement
+            out.write(mod | r | b);
+            if (b == 4) out.write(0x24);                        // rsp/r12 base needs a SIB byte
+            if (mod == 0x40) out.write(disp);
+            else if (mod == 0x80) int32(out, disp);
+        }
+    }
+
+    private static int register(Operand operand, Insn insn) {
+        if (!operand.isReg()) throw unsupported(insn);
+        return operand.reg().code();
+    }
+
+    private static IllegalArgumentException unsupported(Insn insn) {
+        return new IllegalArgumentException("cannot encode: " + insn.toText().trim());
+    }
+
+    private static boolean fitsByte(int value) {
+        return value >= -128 && value <= 127;
+    }
+
+    private static void int32(ByteArrayOutputStream out, int value) {
+        for (int k = 0; k < 4; k++) out.write(value >> 8 * k);
+    }
+}
@@ -0,0 +1,7 @@
+package compiler.error;
+
+public class LimitException extends RuntimeException {
+    public LimitException(String msg) {
+        super("Limit Error — " + msg);
+    }
+}
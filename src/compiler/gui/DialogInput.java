@@ -0,0 +1,23 @@
+package compiler.gui;
+
+import compiler.io.InputSource;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * GUI input: asks for every value with a modal dialog.
+ * A cancelled dialog returns null, which reads as "" (see {@link InputSource#read}).
+ */
+public class DialogInput implements InputSource {
+    private final Component parent;
+
+    public DialogInput(Component parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public String read(String name) {
+        return JOptionPane.showInputDialog(parent, "Enter value for " + name + ":");
+    }
+}
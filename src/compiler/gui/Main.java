@@ -2,18 +2,23 @@ package compiler.gui;
 
 import compiler.ast.Program;
 import compiler.codegen.ASMGenerator;
+import compiler.codegen.Asm;
+import compiler.codegen.PassManager;
+import compiler.codegen.Peephole;
 import compiler.codegen.TACGenerator;
 import compiler.codegen.TACOptimizer;
+import compiler.codegen.Tac;
 import compiler.error.SemanticException;
 import compiler.error.SyntaxException;
-import compiler.lexer.Lexer;
-import compiler.lexer.Token;
+import compiler.parser.ExecutionContext;
+import compiler.parser.IncrementalParser;
 import compiler.parser.Interpreter;
-import compiler.parser.Parser;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
 import java.awt.*;
-import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
@@ -28,6 +33,37 @@ public class Main {
             JScrollPane codeScroll = new JScrollPane(codeArea);
             codeScroll.setBorder(BorderFactory.createTitledBorder("Source Code"));
 
+            // --- Live AST, re-parsed incrementally on every edit ---
+            IncrementalParser live = new IncrementalParser();
+            JLabel status = new JLabel(" ");
+            codeArea.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    try {
+                        live.edit(e.getOffset(), 0, e.getDocument().getText(e.getOffset(), e.getLength()));
+                    } catch (BadLocationException ex) {
+                        live.setText(codeArea.getText());
+                    }
+                    showStatus();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    live.edit(e.getOffset(), e.getLength(), "");
+                    showStatus();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) { }
+
+                private void showStatus() {
+                    RuntimeException err = live.error();
+                    status.setText(err != null ? err.getMessage()
+                        : "OK (re-parsed " + live.reparsedStatements()
+                          + ", reused " + live.reusedStatements() + " statements)");
+                }
+            });
+
             // --- Tabs for each output stage ---
             JTabbedPane tabs = new JTabbedPane();
 
@@ -49,7 +85,21 @@ public class Main {
             JTextArea asmArea = new JTextArea();
             asmArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
             asmArea.setEditable(false);
-            tabs.addTab("Assembly", new JScrollPane(asmArea));
+            JLabel asmStats = new JLabel(" ");
+            JPanel asmPanel = new JPanel(new BorderLayout());
+            asmPanel.add(asmStats, BorderLayout.NORTH);
+            asmPanel.add(new JScrollPane(asmArea), BorderLayout.CENTER);
+            tabs.addTab("Assembly", asmPanel);
+
+            JTextArea passesArea = new JTextArea();
+            passesArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            passesArea.setEditable(false);
+            tabs.addTab("Passes", new JScrollPane(passesArea));
+
+            // --- Optimization level ---
+            JComboBox<TACOptimizer.Level> levelBox = new JComboBox<>(TACOptimizer.Level.values());
+            levelBox.setSelectedItem(TACOptimizer.level);
+            levelBox.setToolTipText("Optimization level");
 
             // --- Compile & Run Button ---
             JButton runBtn = new JButton("Compile & Run");
@@ -59,30 +109,39 @@ public class Main {
                 rawTacArea.setText("");
                 optTacArea.setText("");
                 asmArea.setText("");
+                asmStats.setText(" ");
+                passesArea.setText("");
 
                 try {
-                    // 1) Lexing
-                    String source = codeArea.getText();
-                    List<Token> tokens = Lexer.tokenize(source);
-
-                    // 2) Parsing
-                    Program program = new Parser(tokens).parseProgram();
-
-                    // 3) Interpretation (runtime output)
-                    List<String> runtimeOut = Interpreter.run(program);
-                    runtimeOut.forEach(line -> outputArea.append(line + "\n"));
+                    // 1-2) Lexing & parsing: take the live AST (throws the current diagnostic)
+                    Program program = live.program();
+
+                    // 3) Interpretation → capture runtime output (reads via dialogs, prints straight into the Output tab)
+                    ExecutionContext ctx = new ExecutionContext(
+                        new DialogInput(frame), new TextAreaOutput(outputArea));
+                    try {
+                        Interpreter.run(program, ctx);
+                    } finally {
+                        ctx.warnings().forEach(System.out::println);
+                    }
 
                     // 4) TAC generation
-                    List<String> rawTac = new TACGenerator().generate(program.statements);
-                    rawTac.forEach(line -> rawTacArea.append(line + "\n"));
+                    Tac rawTac = new TACGenerator().generate(program.statements);
+                    rawTac.toText().forEach(line -> rawTacArea.append(line + "\n"));
 
                     // 5) TAC optimization
-                    List<String> optTac = new TACOptimizer().optimize(rawTac);
-                    optTac.forEach(line -> optTacArea.append(line + "\n"));
-
-                    // 6) Assembly generation
-                    List<String> asm = new ASMGenerator(optTac).generate();
-                    asm.forEach(line -> asmArea.append(line + "\n"));
+                    PassManager passes = TACOptimizer.pipeline((TACOptimizer.Level) levelBox.getSelectedItem());
+                    Tac optTac = passes.run(rawTac);
+                    optTac.toText().forEach(line -> optTacArea.append(line + "\n"));
+                    passes.report().forEach(line -> passesArea.append(line + "\n"));
+
+                    // 6) Assembly generation and peephole optimization
+                    Asm generated = new ASMGenerator(optTac).assemble();
+                    int before = generated.instructionCount();
+                    Asm asm = Peephole.optimize(generated);
+                    asm.toText().forEach(line -> asmArea.append(line + "\n"));
+                    asmStats.setText("Instructions: " + before + " before peephole, "
+                                     + asm.instructionCount() + " after");
 
                     // Show the runtime output first
                     tabs.setSelectedIndex(0);
@@ -105,7 +164,11 @@ public class Main {
             // --- Layout ---
             JPanel controlPanel = new JPanel(new BorderLayout(5,5));
             controlPanel.add(codeScroll, BorderLayout.CENTER);
-            controlPanel.add(runBtn, BorderLayout.SOUTH);
+            JPanel runRow = new JPanel(new BorderLayout(5,5));
+            runRow.add(runBtn, BorderLayout.CENTER);
+            runRow.add(levelBox, BorderLayout.EAST);
+            controlPanel.add(runRow, BorderLayout.SOUTH);
+            controlPanel.add(status, BorderLayout.NORTH);
 
             frame.getContentPane().setLayout(new BorderLayout(5,5));
             frame.getContentPane().add(controlPanel, BorderLayout.NORTH);
@@ -0,0 +1,26 @@
+package compiler.gui;
+
+import compiler.io.OutputSink;
+
+import javax.swing.*;
+
+/**
+ * GUI output: appends every printed line to a text area.
+ * Safe to use from a worker thread; appends always happen on the EDT.
+ */
+public class TextAreaOutput implements OutputSink {
+    private final JTextArea area;
+
+    public TextAreaOutput(JTextArea area) {
+        this.area = area;
+    }
+
+    @Override
+    public void println(String line) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            area.append(line + "\n");
+        } else {
+            SwingUtilities.invokeLater(() -> area.append(line + "\n"));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package compiler.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where a run's `read` statements get their values from.
+ * One value per read; what counts as a value is up to the source
+ * (the stream sources use one line per value).
+ */
+@FunctionalInterface
+public interface InputSource extends Closeable {
+    /**
+     * The raw text of the next value, read for variable 'name';
+     * null when the source has nothing left (it then reads as "").
+     */
+    String read(String name);
+
+    /**
+     * Reads the next value straight into 'into'. Sources that can decode
+     * ints themselves override this to skip the String.
+     */
+    default void read(String name, InputValue into) {
+        into.parse(read(name));
+    }
+
+    @Override
+    default void close() throws IOException { }
+
+    /** In-memory values, handed out in order. */
+    static InputSource of(String... values) {
+        return new ListInput(values);
+    }
+
+    /** One value per line of a UTF-8 stream (e.g. System.in). */
+    static InputSource stream(InputStream in) {
+        return new StreamInput(in);
+    }
+
+    /** One value per line of a UTF-8 file; close() closes the file. */
+    static InputSource file(Path path) throws IOException {
+        return new StreamInput(Files.newInputStream(path));
+    }
+
+    /** Like {@link #file}, but memory-mapped, for large batch inputs. */
+    static InputSource mapped(Path path) throws IOException {
+        return new MappedInput(path);
+    }
+}
@@ -0,0 +1,81 @@
+package compiler.io;
+
+/**
+ * One value read for a `read` statement, classified the way the
+ * interpreter treats input: an int if the text is -?[0-9]+ (which must
+ * then fit an int), otherwise text.
+ *
+ * A context keeps one instance and sources refill it on every read, so
+ * numeric input can be delivered without creating a String per value.
+ */
+public final class InputValue {
+    private boolean isInt, overflow;
+    private int intValue;
+    private String text;
+
+    /** Classifies raw text (null reads as ""). */
+    public void parse(String s) {
+        if (s == null) s = "";
+        text = s;
+        isInt = isInteger(s);
+        overflow = false;
+        if (isInt) {
+            try {
+                intValue = Integer.parseInt(s);
+            } catch (NumberFormatException e) {
+                overflow = true;   // thrown again if the value is used as an int
+            }
+        }
+    }
+
+    /** An int decoded by the source itself. */
+    public void setInt(int value) {
+        isInt = true;
+        overflow = false;
+        intValue = value;
+        text = null;
+    }
+
+    /** Text that the source already knows is not an int (or does not fit one). */
+    public void setText(String s, boolean numeric) {
+        isInt = numeric;
+        overflow = numeric;
+        text = s;
+    }
+
+    public boolean isInt() {
+        return isInt;
+    }
+
+    /**
+     * The int value. Digits out of int range throw the same
+     * NumberFormatException Integer.parseInt does.
+     */
+    public int intValue() {
+        if (overflow) return Integer.parseInt(text);
+        return intValue;
+    }
+
+    /** The raw text; only kept for values that are not decoded ints. */
+    public String text() {
+        return text;
+    }
+
+    /** 1 for true, 0 for false (any case), -1 for anything else. */
+    public int bool() {
+        if (isInt) return -1;
+        if (text.equalsIgnoreCase("true")) return 1;
+        if (text.equalsIgnoreCase("false")) return 0;
+        return -1;
+    }
+
+    private static boolean isInteger(String s) {
+        int i = s.startsWith("-") ? 1 : 0;
+        if (i == s.length()) return false;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+package compiler.io;
+
+import java.util.List;
+
+/**
+ * In-memory input: hands out the given values in order.
+ */
+public class ListInput implements InputSource {
+    private final List<String> values;
+    private int next;
+
+    public ListInput(String... values) {
+        this(List.of(values));
+    }
+
+    public ListInput(List<String> values) {
+        this.values = values;
+    }
+
+    @Override
+    public String read(String name) {
+        return next < values.size() ? values.get(next++) : null;
+    }
+}
@@ -0,0 +1,20 @@
+package compiler.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory output: keeps every printed line.
+ */
+public class ListOutput implements OutputSink {
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void println(String line) {
+        lines.add(line);
+    }
+
+    public List<String> lines() {
+        return lines;
+    }
+}
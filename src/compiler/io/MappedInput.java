@@ -0,0 +1,193 @@
+package compiler.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bulk line input from a memory-mapped file, for runs that read millions
+ * of values. Lines are found and ints decoded in place, 8 bytes at a time
+ * (SWAR: SIMD within a register); a String is only created for values
+ * that are not ints. The file is mapped in windows, so it can be larger
+ * than a single mapping.
+ */
+public class MappedInput implements InputSource {
+    private static final long WINDOW = 1L << 28;
+
+    private static final long ONES  = 0x0101010101010101L;
+    private static final long LOW7  = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ZEROS = 0x3030303030303030L;   // "00000000"
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer buf;
+    private long base;        // file offset of buf[0]
+    private int pos, limit;   // next line, end of the window
+
+    public MappedInput(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        map(0, WINDOW);
+    }
+
+    @Override
+    public String read(String name) {
+        int end = nextLine();
+        if (end < 0) return null;
+        int from = pos;
+        pos = skipLine(end);
+        return text(from, trimCr(from, end));
+    }
+
+    @Override
+    public void read(String name, InputValue into) {
+        int end = nextLine();
+        if (end < 0) {
+            into.parse(null);
+            return;
+        }
+        int from = pos;
+        pos = skipLine(end);
+        decode(from, trimCr(from, end), into);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---- lines ----
+
+    private void map(long offset, long size) throws IOException {
+        long len = Math.min(size, fileSize - offset);
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        base = offset;
+        pos = 0;
+        limit = (int) len;
+    }
+
+    // End of the line starting at pos (its '\n', or the end of the input);
+    // -1 when the input is exhausted. May move the window to pos.
+    private int nextLine() {
+        if (base + pos >= fileSize) return -1;
+        try {
+            while (true) {
+                int nl = newline(pos);
+                if (nl >= 0) return nl;
+                if (base + limit >= fileSize) return limit;
+                // the line crosses the window: remap from its start (growing
+                // the window if the line alone fills it)
+                long size = pos == 0 ? Math.min(2L * limit, Integer.MAX_VALUE) : WINDOW;
+                if (pos == 0 && size == limit) {
+                    throw new IOException("Input line longer than 2 GB");
+                }
+                map(base + pos, Math.max(size, WINDOW));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int skipLine(int end) {
+        return end < limit ? end + 1 : limit;
+    }
+
+    private int trimCr(int from, int end) {
+        return end > from && buf.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private int newline(int from) {
+        int i = from;
+        for (; i + 8 <= limit; i += 8) {
+            long x = buf.getLong(i) ^ (ONES * '\n');
+            long m = ~(((x & LOW7) + LOW7) | x | LOW7);   // 0x80 in every '\n' byte
+            if (m != 0) return i + (Long.numberOfTrailingZeros(m) >>> 3);
+        }
+        for (; i < limit; i++) {
+            if (buf.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private String text(int from, int end) {
+        int len = end - from;
+        if (len == 4 && buf.getInt(from) == 0x65757274) return "true";
+        if (len == 5 && buf.getInt(from) == 0x736c6166 && buf.get(from + 4) == 'e') return "false";
+        byte[] bytes = new byte[len];
+        buf.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---- ints ----
+
+    // Classifies [from, end) like InputValue.parse, without a String for ints
+    private void decode(int from, int end, InputValue into) {
+        boolean negative = from < end && buf.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == end) {
+            into.setText(text(from, end), false);
+            return;
+        }
+        while (i < end - 1 && buf.get(i) == '0') i++;   // leading zeros
+
+        int n = end - i;
+        long value;
+        if (n > 10) {
+            value = -1;                                  // too long for an int
+        } else if (i + 8 <= limit) {
+            // first up-to-8 digits in one step: load 8 bytes and, for a
+            // shorter run, shift the digits up and pad with '0' below
+            int k = Math.min(n, 8);
+            long w = buf.getLong(i);
+            if (k < 8) w = (w << (8 * (8 - k))) | (ZEROS >>> (8 * k));
+            value = eightDigits(w) ? parseEight(w) : -2;
+            for (int j = i + k; j < end && value >= 0; j++) {
+                int d = buf.get(j) - '0';
+                value = d >= 0 && d <= 9 ? value * 10 + d : -2;
+            }
+        } else {
+            value = 0;                                   // near the end of the window
+            for (int j = i; j < end && value >= 0; j++) {
+                int d = buf.get(j) - '0';
+                value = d >= 0 && d <= 9 ? value * 10 + d : -2;
+            }
+        }
+
+        if (value == -2 || (value == -1 && !allDigits(i, end))) {
+            into.setText(text(from, end), false);
+        } else if (value < 0 || value > (negative ? 0x80000000L : Integer.MAX_VALUE)) {
+            into.setText(text(from, end), true);         // digits, but out of int range
+        } else {
+            into.setInt(negative ? (int) -value : (int) value);
+        }
+    }
+
+    private boolean allDigits(int from, int end) {
+        for (int j = from; j < end; j++) {
+            byte b = buf.get(j);
+            if (b < '0' || b > '9') return false;
+        }
+        return true;
+    }
+
+    // Whether all 8 bytes are ASCII digits
+    private static boolean eightDigits(long w) {
+        return (((w & 0xF0F0F0F0F0F0F0F0L) |
+                 (((w + 0x0606060606060606L) & 0xF0F0F0F0F0F0F0F0L) >>> 4))
+                == 0x3333333333333333L);
+    }
+
+    // Value of 8 ASCII digits, most significant digit in the lowest byte
+    private static long parseEight(long w) {
+        long v = w - ZEROS;
+        v = (v * 10) + (v >>> 8);
+        return (((v & 0x000000FF000000FFL) * (100 + (1000000L << 32))) +
+                (((v >>> 16) & 0x000000FF000000FFL) * (1 + (10000L << 32)))) >>> 32;
+    }
+}
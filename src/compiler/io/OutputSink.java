@@ -0,0 +1,44 @@
+package compiler.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where a run's `print` lines go, as they are produced.
+ */
+public interface OutputSink extends Flushable, Closeable {
+    void println(String line);
+
+    @Override
+    default void flush() { }
+
+    @Override
+    default void close() throws IOException {
+        flush();
+    }
+
+    /** Buffered UTF-8 output to System.out; close() only flushes it. */
+    static OutputSink stdout() {
+        return new StreamOutput(System.out, StreamOutput.DEFAULT_CAPACITY, StreamOutput.Flush.WHEN_FULL) {
+            @Override
+            public void close() {
+                flush();
+            }
+        };
+    }
+
+    /** Buffered UTF-8 output to a stream. */
+    static OutputSink stream(OutputStream out, StreamOutput.Flush policy) {
+        return new StreamOutput(out, StreamOutput.DEFAULT_CAPACITY, policy);
+    }
+
+    /** Buffered UTF-8 output to a new or truncated file; close() closes the file. */
+    static OutputSink file(Path path) throws IOException {
+        return new StreamOutput(Files.newOutputStream(path), StreamOutput.DEFAULT_CAPACITY,
+                                StreamOutput.Flush.WHEN_FULL);
+    }
+}
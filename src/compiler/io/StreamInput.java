@@ -0,0 +1,39 @@
+package compiler.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered line input: every read takes the next line (without its
+ * line terminator). Lines are only pulled when a read needs them.
+ */
+public class StreamInput implements InputSource {
+    private final BufferedReader reader;
+
+    public StreamInput(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public StreamInput(Reader reader) {
+        this.reader = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+    }
+
+    @Override
+    public String read(String name) {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read value for '" + name + "'", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams print lines to a Writer through a fixed-size char buffer, so a
+ * long-running program uses bounded memory and its output appears while
+ * it runs. The policy decides when the buffer is written out.
+ */
+public class StreamOutput implements OutputSink {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** When buffered lines are written to the underlying stream. */
+    public enum Flush {
+        EVERY_LINE,   // after each line (interactive use)
+        WHEN_FULL     // only when the buffer fills up, and on flush()/close()
+    }
+
+    private final Writer out;
+    private final Flush policy;
+    private final char[] buf;
+    private int size;
+
+    public StreamOutput(OutputStream out, int capacity, Flush policy) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), capacity, policy);
+    }
+
+    public StreamOutput(Writer out, int capacity, Flush policy) {
+        this.out = out;
+        this.policy = policy;
+        this.buf = new char[Math.max(capacity, 16)];
+    }
+
+    @Override
+    public void println(String line) {
+        try {
+            int len = line.length();
+            if (size + len + 1 > buf.length) drain();
+            if (len + 1 > buf.length) {
+                // longer than the whole buffer: write it straight through
+                out.write(line);
+                out.write('\n');
+            } else {
+                line.getChars(0, len, buf, size);
+                size += len;
+                buf[size++] = '\n';
+            }
+            if (policy == Flush.EVERY_LINE) flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, size);
+        size = 0;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            drain();
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
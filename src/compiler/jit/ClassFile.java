@@ -0,0 +1,144 @@
+package compiler.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class-file writer: a constant pool, and public static methods
+ * assembled with {@link Code}. Produces Java 17 (major 61) class files.
+ */
+final class ClassFile {
+    static final int ACC_PUBLIC = 0x0001, ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // Constant pool tags
+    private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, STRING = 8,
+                             METHODREF = 10, NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass, superClass;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+    }
+
+    // ---- constant pool ----
+
+    int utf8(String s) {
+        return entry("U" + s, out -> {
+            out.writeByte(UTF8);
+            out.writeUTF(s);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, out -> {
+            out.writeByte(CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int string(String s) {
+        int value = utf8(s);
+        return entry("S" + s, out -> {
+            out.writeByte(STRING);
+            out.writeShort(value);
+        });
+    }
+
+    int integer(int v) {
+        return entry("I" + v, out -> {
+            out.writeByte(INTEGER);
+            out.writeInt(v);
+        });
+    }
+
+    int methodRef(String owner, String name, String desc) {
+        int cls = classRef(owner);
+        int nameIdx = utf8(name), descIdx = utf8(desc);
+        int nat = entry("N" + name + ":" + desc, out -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIdx);
+            out.writeShort(descIdx);
+        });
+        return entry("M" + owner + "." + name + ":" + desc, out -> {
+            out.writeByte(METHODREF);
+            out.writeShort(cls);
+            out.writeShort(nat);
+        });
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, Writer w) {
+        Integer idx = entries.get(key);
+        if (idx != null) return idx;
+        try {
+            w.write(pool);
+        } catch (UTFDataFormatException e) {
+            throw new Code.TooLargeException("constant over 64K");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (poolCount > 0xFFFF) throw new Code.TooLargeException("constant pool overflow");
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // ---- methods ----
+
+    void addMethod(int access, String name, String desc, Code code) {
+        int nameIdx = utf8(name), descIdx = utf8(desc), codeAttr = utf8("Code");
+        byte[] body = code.toBytes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(access);
+            out.writeShort(nameIdx);
+            out.writeShort(descIdx);
+            out.writeShort(1);
+            out.writeShort(codeAttr);
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);   // interfaces
+            out.writeShort(0);   // fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) out.write(m);
+            out.writeShort(0);   // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,190 @@
+package compiler.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bytecode assembler for one method.
+ *
+ * Locals have fixed types for the whole method (see {@link #locals}), and the
+ * operand stack must be empty at every label. That is what the JIT emits,
+ * and it makes the StackMapTable trivial: the same full frame at every label.
+ */
+final class Code {
+    // Opcodes used by the JIT
+    static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+                     ILOAD = 0x15, ALOAD = 0x19, ISTORE = 0x36, ASTORE = 0x3A,
+                     IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IDIV = 0x6C,
+                     IFEQ = 0x99, IFNE = 0x9A, IF_ICMPEQ = 0x9F, IF_ICMPNE = 0xA0, GOTO = 0xA7,
+                     RETURN = 0xB1, INVOKEVIRTUAL = 0xB6, INVOKESTATIC = 0xB8, WIDE = 0xC4;
+
+    /** The method does not fit the class-file limits (64K code, 16-bit branches). */
+    static final class TooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(String msg) {
+            super(msg);
+        }
+    }
+
+    static final class Label {
+        private int offset = -1;
+    }
+
+    private final ClassFile cf;
+    private final int maxStack;
+    private String[] locals = new String[0];
+    private byte[] code = new byte[256];
+    private int size;
+    private final List<Label> placed = new ArrayList<>();
+    private final List<Integer> jumps = new ArrayList<>();   // offsets of jump instructions
+    private final List<Label> jumpTargets = new ArrayList<>();
+
+    Code(ClassFile cf, int maxStack) {
+        this.cf = cf;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Declares the type of every local: "I", or the internal name of a
+     * class. Code before the first label must initialize them all.
+     */
+    void locals(String[] types) {
+        this.locals = types;
+    }
+
+    // ---- instructions ----
+
+    void op(int opcode) {
+        u1(opcode);
+    }
+
+    void iconst(int v) {
+        if (v >= -1 && v <= 5) u1(ICONST_0 + v);
+        else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) { u1(BIPUSH); u1(v); }
+        else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { u1(SIPUSH); u2(v); }
+        else { u1(LDC_W); u2(cf.integer(v)); }
+    }
+
+    void ldc(String s) {
+        u1(LDC_W);
+        u2(cf.string(s));
+    }
+
+    void iload(int local)  { local(ILOAD, local); }
+    void istore(int local) { local(ISTORE, local); }
+    void aload(int local)  { local(ALOAD, local); }
+    void astore(int local) { local(ASTORE, local); }
+
+    private void local(int opcode, int local) {
+        if (local > 0xFF) {
+            u1(WIDE);
+            u1(opcode);
+            u2(local);
+        } else {
+            u1(opcode);
+            u1(local);
+        }
+    }
+
+    void invokestatic(String owner, String name, String desc) {
+        u1(INVOKESTATIC);
+        u2(cf.methodRef(owner, name, desc));
+    }
+
+    void invokevirtual(String owner, String name, String desc) {
+        u1(INVOKEVIRTUAL);
+        u2(cf.methodRef(owner, name, desc));
+    }
+
+    void jump(int opcode, Label target) {
+        jumps.add(size);
+        jumpTargets.add(target);
+        u1(opcode);
+        u2(0);   // patched in toBytes
+    }
+
+    void place(Label label) {
+        label.offset = size;
+        placed.add(label);
+    }
+
+    // ---- encoding ----
+
+    private void u1(int b) {
+        if (size == code.length) code = Arrays.copyOf(code, size * 2);
+        code[size++] = (byte) b;
+    }
+
+    private void u2(int v) {
+        u1(v >> 8);
+        u1(v);
+    }
+
+    // Body of the Code attribute (after its name and length)
+    byte[] toBytes() {
+        if (size > 0xFFFF) throw new TooLargeException("method code over 64K");
+        for (int i = 0; i < jumps.size(); i++) {
+            int at = jumps.get(i);
+            int delta = jumpTargets.get(i).offset - at;
+            if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+                throw new TooLargeException("branch offset out of range");
+            }
+            code[at + 1] = (byte) (delta >> 8);
+            code[at + 2] = (byte) delta;
+        }
+
+        // One full frame per distinct label offset, in order
+        int[] offsets = placed.stream().mapToInt(l -> l.offset)
+                              .filter(o -> o < size).sorted().distinct().toArray();
+        int stackMap = offsets.length > 0 ? cf.utf8("StackMapTable") : 0;
+        int[] localTypes = new int[locals.length];
+        for (int i = 0; i < locals.length; i++) {
+            localTypes[i] = locals[i].equals("I") ? 0 : cf.classRef(locals[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(maxStack);
+            out.writeShort(locals.length);
+            out.writeInt(size);
+            out.write(code, 0, size);
+            out.writeShort(0);   // exception table
+            if (offsets.length == 0) {
+                out.writeShort(0);
+            } else {
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                DataOutputStream f = new DataOutputStream(frames);
+                f.writeShort(offsets.length);
+                int prev = -1;
+                for (int offset : offsets) {
+                    f.writeByte(255);                   // full_frame
+                    f.writeShort(offset - prev - 1);    // offset_delta
+                    prev = offset;
+                    f.writeShort(locals.length);
+                    for (int t : localTypes) {
+                        if (t == 0) {
+                            f.writeByte(1);             // Integer
+                        } else {
+                            f.writeByte(7);             // Object
+                            f.writeShort(t);
+                        }
+                    }
+                    f.writeShort(0);                    // empty stack
+                }
+                out.writeShort(1);
+                out.writeShort(stackMap);
+                out.writeInt(frames.size());
+                out.write(frames.toByteArray());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
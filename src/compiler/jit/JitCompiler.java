@@ -0,0 +1,533 @@
+package compiler.jit;
+
+import compiler.ast.*;
+import compiler.io.InputSource;
+import compiler.io.ListOutput;
+import compiler.parser.ExecutionContext;
+import compiler.parser.Interpreter;
+import compiler.parser.Resolver;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static compiler.jit.Code.*;
+import static compiler.jit.JitRuntime.*;
+
+/**
+ * Compiles a Program to a JVM class, defined at runtime as a hidden class
+ * with one method: {@code static void run(ExecutionContext)}.
+ *
+ * Every variable gets three JVM locals: a type tag, an int (ints, and
+ * booleans as 0/1) and a String. Arithmetic on ints is plain JVM
+ * arithmetic, so HotSpot compiles hot loops to machine code. Type checks
+ * and errors happen at the same points, in the same order, as in
+ * {@link Interpreter}; read, print and the failures go through JitRuntime.
+ *
+ * A single loop can also be compiled on its own ({@link #compileLoop}):
+ * its method loads the variables it uses from the run's Memory frame,
+ * runs the loop to completion and stores them back, so the interpreter
+ * can hand a running loop over to it.
+ */
+public class JitCompiler {
+    private static final String CTX = "compiler/parser/ExecutionContext";
+    private static final String VALUE = "compiler/io/InputValue";
+    private static final String RT = "compiler/jit/JitRuntime";
+
+    // Locals: the context, the last read value, 3 per variable, then int temps
+    private static final int CTX_LOCAL = 0, VALUE_LOCAL = 1, FIRST_VAR = 2;
+
+    /**
+     * A compiled program. It holds no run state, so it can run on several
+     * contexts at once.
+     */
+    public static final class Compiled {
+        private final MethodHandle run;
+
+        private Compiled(MethodHandle run) {
+            this.run = run;
+        }
+
+        /** Runs with System.in as input and returns the printed lines. */
+        public List<String> run() {
+            ListOutput out = new ListOutput();
+            run(new ExecutionContext(InputSource.stream(System.in), out));
+            return out.lines();
+        }
+
+        public void run(ExecutionContext ctx) {
+            try {
+                run.invokeExact(ctx);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    private final ClassFile cf = new ClassFile("compiler/jit/JitProgram", "java/lang/Object");
+    private final Code code = new Code(cf, 8);
+    private final Set<String> boolVars;
+    private final int firstTemp;
+    private int nextTemp;
+
+    private JitCompiler(Set<String> boolVars, int vars) {
+        this.boolVars = boolVars;
+        this.firstTemp = FIRST_VAR + 3 * vars;
+        this.nextTemp = firstTemp;
+    }
+
+    /**
+     * Compiles the program, or returns null if it does not fit in one
+     * JVM method (64K of bytecode).
+     */
+    public static Compiled compile(Program program) {
+        Resolver slots = Resolver.resolve(program);
+        JitCompiler jit = new JitCompiler(Interpreter.collectBooleanVars(program), slots.size());
+        try {
+            return define(jit.generate(program.statements, slots.size(), new TreeSet<>()));
+        } catch (Code.TooLargeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles one loop of an already resolved program, carrying its
+     * variables in and out through ctx.memory(). 'vars' is the frame size
+     * and 'boolVars' the program's boolean-only variables.
+     * Returns null if the loop is too large.
+     */
+    public static Compiled compileLoop(WhileStmt loop, int vars, Set<String> boolVars) {
+        JitCompiler jit = new JitCompiler(boolVars, vars);
+        SortedSet<Integer> carried = new TreeSet<>();
+        slots(loop, carried);
+        try {
+            return define(jit.generate(List.of(loop), vars, carried));
+        } catch (Code.TooLargeException e) {
+            return null;
+        }
+    }
+
+    private static Compiled define(byte[] bytes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return new Compiled(lookup.findStatic(lookup.lookupClass(), "run",
+                MethodType.methodType(void.class, ExecutionContext.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JIT produced an unloadable class", e);
+        }
+    }
+
+    // 'carried' variables are loaded from the Memory frame first and stored back at the end
+    private byte[] generate(List<Stmt> stmts, int vars, SortedSet<Integer> carried) {
+        int temps = 0;
+        for (Stmt s : stmts) temps = Math.max(temps, temps(s));
+
+        String[] locals = new String[firstTemp + temps];
+        locals[CTX_LOCAL] = CTX;
+        locals[VALUE_LOCAL] = VALUE;
+        for (int v = 0; v < vars; v++) {
+            locals[tag(v)] = "I";
+            locals[ival(v)] = "I";
+            locals[sval(v)] = "java/lang/String";
+        }
+        Arrays.fill(locals, firstTemp, locals.length, "I");
+        code.locals(locals);
+
+        // Every local starts initialized, so one frame fits all labels
+        code.op(ACONST_NULL);
+        code.astore(VALUE_LOCAL);
+        for (int v = 0; v < vars; v++) {
+            code.iconst(UNSET);
+            code.istore(tag(v));
+            code.iconst(0);
+            code.istore(ival(v));
+            code.op(ACONST_NULL);
+            code.astore(sval(v));
+        }
+        for (int t = firstTemp; t < locals.length; t++) {
+            code.iconst(0);
+            code.istore(t);
+        }
+
+        String mem = "Lcompiler/parser/Memory;";
+        for (int v : carried) {
+            memoryArg(v);
+            code.invokestatic(RT, "loadTag", "(" + mem + "I)I");
+            code.istore(tag(v));
+            memoryArg(v);
+            code.invokestatic(RT, "loadInt", "(" + mem + "I)I");
+            code.istore(ival(v));
+            memoryArg(v);
+            code.invokestatic(RT, "loadString", "(" + mem + "I)Ljava/lang/String;");
+            code.astore(sval(v));
+        }
+
+        block(stmts);
+
+        for (int v : carried) {
+            memoryArg(v);
+            code.iload(tag(v));
+            code.iload(ival(v));
+            code.aload(sval(v));
+            code.invokestatic(RT, "store", "(" + mem + "IIILjava/lang/String;)V");
+        }
+        code.op(RETURN);
+
+        cf.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, "run", "(L" + CTX + ";)V", code);
+        return cf.toBytes();
+    }
+
+    private void memoryArg(int slot) {
+        code.aload(CTX_LOCAL);
+        code.invokevirtual(CTX, "memory", "()Lcompiler/parser/Memory;");
+        code.iconst(slot);
+    }
+
+    // Collects the slots of every variable a statement touches
+    private static void slots(Stmt stmt, Set<Integer> out) {
+        if (stmt instanceof ReadStmt rs)        out.add(rs.slot);
+        else if (stmt instanceof PrintStmt ps)  out.add(ps.slot);
+        else if (stmt instanceof AssignStmt as) { out.add(as.slot); slots(as.expr, out); }
+        else if (stmt instanceof IfStmt is) {
+            slots(is.cond, out);
+            for (Stmt s : is.thenBlock) slots(s, out);
+            for (Stmt s : is.elseBlock) slots(s, out);
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            slots(ws.cond, out);
+            for (Stmt s : ws.body) slots(s, out);
+        }
+    }
+
+    private static void slots(Expr expr, Set<Integer> out) {
+        if (expr instanceof VarExpr ve) out.add(ve.slot);
+        else if (expr instanceof BinaryExpr be) {
+            slots(be.left, out);
+            slots(be.right, out);
+        }
+    }
+
+    private static int tag(int slot)  { return FIRST_VAR + 3 * slot; }
+    private static int ival(int slot) { return FIRST_VAR + 3 * slot + 1; }
+    private static int sval(int slot) { return FIRST_VAR + 3 * slot + 2; }
+
+    // ---- temps ----
+
+    // Int temps a statement needs at once (mirrors the allocation below)
+    private static int temps(Stmt stmt) {
+        if (stmt instanceof AssignStmt as) return temps(as.expr);
+        if (stmt instanceof IfStmt is) {
+            int n = 1 + temps(is.cond);
+            for (Stmt s : is.thenBlock) n = Math.max(n, temps(s));
+            for (Stmt s : is.elseBlock) n = Math.max(n, temps(s));
+            return n;
+        }
+        if (stmt instanceof WhileStmt ws) {
+            int n = 1 + temps(ws.cond);
+            for (Stmt s : ws.body) n = Math.max(n, temps(s));
+            return n;
+        }
+        return 0;
+    }
+
+    private static int temps(Expr expr) {
+        if (expr instanceof BinaryExpr be) {
+            return Math.max(1 + temps(be.left), 2 + temps(be.right));
+        }
+        return 0;
+    }
+
+    private int newTemp() {
+        return nextTemp++;
+    }
+
+    private void release(int temp) {
+        nextTemp = temp;
+    }
+
+    // ---- statements ----
+
+    private void block(List<Stmt> stmts) {
+        for (Stmt s : stmts) stmt(s);
+    }
+
+    private void stmt(Stmt stmt) {
+        if (stmt instanceof ReadStmt rs) {
+            read(rs);
+        }
+        else if (stmt instanceof PrintStmt ps) {
+            int v = ps.slot;
+            code.aload(CTX_LOCAL);
+            code.ldc(ps.var);
+            code.iload(tag(v));
+            code.iload(ival(v));
+            code.aload(sval(v));
+            code.invokestatic(RT, "print", "(L" + CTX + ";Ljava/lang/String;IILjava/lang/String;)V");
+        }
+        else if (stmt instanceof AssignStmt as) {
+            assign(as);
+        }
+        else if (stmt instanceof IfStmt is) {
+            Label elseLabel = new Label();
+            int c = truth(is.cond);
+            code.iload(c);
+            release(c);
+            code.jump(IFEQ, elseLabel);
+            block(is.thenBlock);
+            if (is.elseBlock.isEmpty()) {
+                code.place(elseLabel);
+            } else {
+                Label end = new Label();
+                code.jump(GOTO, end);
+                code.place(elseLabel);
+                block(is.elseBlock);
+                code.place(end);
+            }
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            Label top = new Label(), end = new Label();
+            code.place(top);
+            int c = truth(ws.cond);
+            code.iload(c);
+            release(c);
+            code.jump(IFEQ, end);
+            code.aload(CTX_LOCAL);
+            code.invokevirtual(CTX, "tick", "()V");
+            block(ws.body);
+            code.jump(GOTO, top);
+            code.place(end);
+        }
+        else {
+            throw new RuntimeException("JitCompiler: unknown stmt " + stmt);
+        }
+    }
+
+    private void read(ReadStmt rs) {
+        int v = rs.slot;
+        code.aload(CTX_LOCAL);
+        code.ldc(rs.var);
+        if (boolVars.contains(rs.var)) {
+            code.invokestatic(RT, "readBool", "(L" + CTX + ";Ljava/lang/String;)I");
+            code.istore(ival(v));
+            setTag(v, BOOL);
+            return;
+        }
+        code.invokevirtual(CTX, "read", "(Ljava/lang/String;)L" + VALUE + ";");
+        code.astore(VALUE_LOCAL);
+        Label text = new Label(), end = new Label();
+        code.aload(VALUE_LOCAL);
+        code.invokevirtual(VALUE, "isInt", "()Z");
+        code.jump(IFEQ, text);
+        code.aload(VALUE_LOCAL);
+        code.invokevirtual(VALUE, "intValue", "()I");
+        code.istore(ival(v));
+        setTag(v, INT);
+        code.jump(GOTO, end);
+        code.place(text);
+        code.aload(VALUE_LOCAL);
+        code.invokevirtual(VALUE, "text", "()Ljava/lang/String;");
+        code.astore(sval(v));
+        setTag(v, STR);
+        code.place(end);
+    }
+
+    private void assign(AssignStmt as) {
+        int v = as.slot;
+        if (as.expr instanceof BinaryExpr be) {
+            binary(be, ival(v));
+            setTag(v, INT);
+        }
+        else if (as.expr instanceof VarExpr ve) {
+            int src = ve.slot;
+            checkAssigned(ve);
+            code.iload(tag(src));
+            code.istore(tag(v));
+            code.iload(ival(src));
+            code.istore(ival(v));
+            code.aload(sval(src));
+            code.astore(sval(v));
+        }
+        else if (as.expr instanceof LiteralExpr le) {
+            Object val = literal(le.value);
+            if (val instanceof String s) {
+                code.ldc(s);
+                code.astore(sval(v));
+                setTag(v, STR);
+            } else {
+                pushLiteral(le.value, val);
+                code.istore(ival(v));
+                setTag(v, val instanceof Boolean ? BOOL : INT);
+            }
+        }
+        else {
+            throw new RuntimeException("Interpreter: unknown expr " + as.expr);
+        }
+    }
+
+    private void setTag(int slot, int tag) {
+        code.iconst(tag);
+        code.istore(tag(slot));
+    }
+
+    // ---- expressions ----
+
+    // Evaluates a condition; returns an int local that is 0 when it is false
+    // (the caller loads and releases it)
+    private int truth(Expr expr) {
+        int t = newTemp();
+        if (expr instanceof BinaryExpr be) {
+            binary(be, t);
+        }
+        else if (expr instanceof VarExpr ve) {
+            int v = ve.slot;
+            checkAssigned(ve);
+            // a string condition fails with the interpreter's SemanticException
+            Label ok = new Label();
+            code.iload(tag(v));
+            code.iconst(STR);
+            code.jump(IF_ICMPNE, ok);
+            code.invokestatic(RT, "stringCondition", "()V");
+            code.place(ok);
+            code.iload(ival(v));
+            code.istore(t);
+        }
+        else if (expr instanceof LiteralExpr le) {
+            Object val = literal(le.value);
+            if (val instanceof String) {
+                code.invokestatic(RT, "stringCondition", "()V");
+            } else {
+                pushLiteral(le.value, val);
+                code.istore(t);
+            }
+        }
+        return t;
+    }
+
+    // Evaluates 'be' into int local 'dst'; dst is written last, after all checks
+    private void binary(BinaryExpr be, int dst) {
+        int l = newTemp();
+        int lt = operand(be.left, l);
+        int r = newTemp();
+        int rt = operand(be.right, r);
+
+        typeCheck(be.op, lt, rt);
+        if (be.op.equals("/")) {
+            // checked before the operands are pushed: labels need an empty stack
+            Label ok = new Label();
+            code.iload(r);
+            code.jump(IFNE, ok);
+            code.invokestatic(RT, "divisionByZero", "()V");
+            code.place(ok);
+        }
+        code.iload(l);
+        code.iload(r);
+        switch (be.op) {
+            case "+" -> code.op(IADD);
+            case "-" -> code.op(ISUB);
+            case "*" -> code.op(IMUL);
+            case "/" -> code.op(IDIV);
+            default -> {
+                code.ldc(be.op);
+                code.invokestatic(RT, "unknownOperator", "(Ljava/lang/String;)V");
+                code.op(IADD);
+            }
+        }
+        code.istore(dst);
+        release(l);
+    }
+
+    // Evaluates a binary operand into int local 'dst'. Returns its type:
+    // a tag constant if known statically, else ~(local holding the tag)
+    private int operand(Expr expr, int dst) {
+        if (expr instanceof BinaryExpr be) {
+            binary(be, dst);
+            return INT;
+        }
+        if (expr instanceof VarExpr ve) {
+            checkAssigned(ve);
+            code.iload(ival(ve.slot));
+            code.istore(dst);
+            return ~tag(ve.slot);
+        }
+        if (expr instanceof LiteralExpr le) {
+            Object val = literal(le.value);
+            if (val instanceof String) return STR;
+            pushLiteral(le.value, val);
+            code.istore(dst);
+            return val instanceof Boolean ? BOOL : INT;
+        }
+        throw new RuntimeException("Interpreter: unknown expr " + expr);
+    }
+
+    private void typeCheck(String op, int lt, int rt) {
+        if (lt == INT && rt == INT) return;
+        Label fail = new Label(), ok = new Label();
+        boolean always = (lt >= 0 && lt != INT) || (rt >= 0 && rt != INT);
+        if (!always) {
+            if (lt < 0) {
+                code.iload(~lt);
+                code.iconst(INT);
+                code.jump(IF_ICMPNE, fail);
+            }
+            if (rt < 0) {
+                code.iload(~rt);
+                code.iconst(INT);
+                code.jump(IF_ICMPNE, fail);
+            }
+            code.jump(GOTO, ok);
+            code.place(fail);
+        }
+        code.ldc(op);
+        pushTag(lt);
+        pushTag(rt);
+        code.invokestatic(RT, "typeError", "(Ljava/lang/String;II)V");
+        if (!always) code.place(ok);
+    }
+
+    private void pushTag(int t) {
+        if (t >= 0) code.iconst(t);
+        else code.iload(~t);
+    }
+
+    private void checkAssigned(VarExpr ve) {
+        Label ok = new Label();
+        code.iload(tag(ve.slot));
+        code.jump(IFNE, ok);
+        code.ldc(ve.name);
+        code.invokestatic(RT, "unassigned", "(Ljava/lang/String;)V");
+        code.place(ok);
+    }
+
+    // Pushes an int or boolean literal; an int literal out of range throws
+    // parseInt's exception where it is evaluated, as in the interpreter
+    private void pushLiteral(String text, Object val) {
+        if (val instanceof Integer i) {
+            code.iconst(i);
+        } else if (val instanceof Boolean b) {
+            code.iconst(b ? 1 : 0);
+        } else {
+            code.ldc(text);
+            code.invokestatic("java/lang/Integer", "parseInt", "(Ljava/lang/String;)I");
+        }
+    }
+
+    // Literal decoding as in Interpreter.evalExpr; null for an out-of-range int
+    private static Object literal(String v) {
+        if (v.matches("-?\\d+")) {
+            try {
+                return Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (v.equalsIgnoreCase("true"))  return true;
+        if (v.equalsIgnoreCase("false")) return false;
+        return v;
+    }
+}
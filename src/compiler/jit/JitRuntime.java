@@ -0,0 +1,92 @@
+package compiler.jit;
+
+import compiler.error.SemanticException;
+import compiler.parser.ExecutionContext;
+import compiler.parser.Memory;
+
+/**
+ * Helpers called from JIT-compiled code. The failure helpers always
+ * throw; they are void so the generated code can simply fall through
+ * after them.
+ */
+final class JitRuntime {
+    // Variable type tags, kept in a JVM local per variable (same values as Memory's)
+    static final int UNSET = Memory.UNSET, INT = Memory.INT, BOOL = Memory.BOOLEAN, STR = Memory.STRING;
+
+    private JitRuntime() { }
+
+    static void unassigned(String name) {
+        throw new SemanticException("Variable '" + name + "' used before assignment.");
+    }
+
+    static void typeError(String op, int left, int right) {
+        throw new SemanticException(
+            "Cannot apply operator '" + op +
+            "' to types '" + typeName(left) + "' and '" + typeName(right) + "'"
+        );
+    }
+
+    static void unknownOperator(String op) {
+        throw new SemanticException("Unknown operator '" + op + "'");
+    }
+
+    static void divisionByZero() {
+        throw new SemanticException("Division by zero");
+    }
+
+    static void stringCondition() {
+        throw Memory.conditionError(Memory.STRING);
+    }
+
+    static void print(ExecutionContext ctx, String name, int tag, int i, String s) {
+        if (tag == UNSET) unassigned(name);
+        ctx.print(switch (tag) {
+            case INT  -> name + " = " + i;
+            case BOOL -> name + " = " + (i != 0);
+            default   -> name + " = " + s;
+        });
+    }
+
+    static int readBool(ExecutionContext ctx, String name) {
+        int b = ctx.read(name).bool();
+        if (b < 0) {
+            throw new SemanticException("Variable '" + name + "' must be boolean (true/false)");
+        }
+        return b;
+    }
+
+    // ---- moving a compiled loop's variables in and out of the frame ----
+
+    static int loadTag(Memory mem, int slot) {
+        return mem.tag(slot);
+    }
+
+    static int loadInt(Memory mem, int slot) {
+        return switch (mem.tag(slot)) {
+            case Memory.INT     -> mem.getInt(slot);
+            case Memory.BOOLEAN -> mem.getBoolean(slot) ? 1 : 0;
+            default             -> 0;
+        };
+    }
+
+    static String loadString(Memory mem, int slot) {
+        return mem.tag(slot) == Memory.STRING ? mem.getString(slot) : null;
+    }
+
+    static void store(Memory mem, int slot, int tag, int i, String s) {
+        switch (tag) {
+            case INT  -> mem.store(slot, i);
+            case BOOL -> mem.store(slot, i != 0);
+            case STR  -> mem.store(slot, s);
+            default   -> { }   // still unassigned
+        }
+    }
+
+    private static String typeName(int tag) {
+        return switch (tag) {
+            case INT  -> "int";
+            case BOOL -> "boolean";
+            default   -> "string";
+        };
+    }
+}
@@ -1,103 +1,384 @@
 package compiler.lexer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.*;
 
+/**
+ * Single-pass DFA scanner over a char[], either the whole source at once
+ * ({@link #tokenize}) or a bounded buffer refilled from a Reader ({@link #stream}).
+ * Produces exactly the same tokens (and line/column positions) as the
+ * regex-based {@link RegexLexer}, but looks at every character only once.
+ */
 public class Lexer {
-    // List of all token rules (keyword, symbol, or identifier matchers)
-    private static final List<TokenRule> rules = new ArrayList<>();
+    // Set -Dcompiler.lexer.regex=true (or flip this flag) to fall back to the
+    // old regex lexer, e.g. to diff its output against this scanner
+    public static boolean useRegexLexer = Boolean.getBoolean("compiler.lexer.regex");
+
+    // Set -Dcompiler.lexer.wide=true to skip whitespace, identifier, number and
+    // string runs 8 chars at a time (see WideScan); tokens are identical
+    public static boolean useWideScan = Boolean.getBoolean("compiler.lexer.wide");
+
+    // Character classes for the ASCII range; everything else is OTHER
+    private static final byte OTHER = 0, SPACE = 1, DIGIT = 2, LETTER = 3, QUOTE = 4, SYMBOL = 5;
+    private static final byte[] CLASS = new byte[128];
+    private static final TokenType[] SYMBOLS = new TokenType[128];
+
+    // Keyword perfect hash: (first + 2 * last + length) & 15 is collision-free
+    private static final char[][] KEYWORDS = new char[16][];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[16];
 
-    // Define the regex rules when the class loads
     static {
-        // Order matters: keywords go before generic identifiers
-        rules.add(new TokenRule("IF", TokenType.IF, "\\bif\\b"));
-        rules.add(new TokenRule("ELSE", TokenType.ELSE, "\\belse\\b"));
-        rules.add(new TokenRule("WHILE", TokenType.WHILE, "\\bwhile\\b"));
-        rules.add(new TokenRule("LBRACE", TokenType.LBRACE, "\\{"));
-        rules.add(new TokenRule("RBRACE", TokenType.RBRACE, "\\}"));
-        rules.add(new TokenRule("PRINT", TokenType.PRINT, "\\bprint\\b"));
-        rules.add(new TokenRule("READ", TokenType.READ, "\\bread\\b"));
-        rules.add(new TokenRule("NUMBER", TokenType.NUMBER, "\\b\\d+\\b"));
-        rules.add(new TokenRule("STRING", TokenType.STRING, "\"[^\"]*\""));
-        rules.add(new TokenRule("BOOLEAN_TRUE", TokenType.BOOLEAN_TRUE, "\\btrue\\b"));
-        rules.add(new TokenRule("BOOLEAN_FALSE", TokenType.BOOLEAN_FALSE, "\\bfalse\\b"));
-
-        rules.add(new TokenRule("IDENTIFIER", TokenType.IDENTIFIER, "\\b[a-zA-Z_]\\w*\\b"));
-        rules.add(new TokenRule("ASSIGN", TokenType.ASSIGN, "="));
-        rules.add(new TokenRule("PLUS", TokenType.PLUS, "\\+"));
-        rules.add(new TokenRule("MINUS", TokenType.MINUS, "-"));
-        rules.add(new TokenRule("MUL", TokenType.MUL, "\\*"));
-        rules.add(new TokenRule("DIV", TokenType.DIV, "/"));
-        rules.add(new TokenRule("LPAREN", TokenType.LPAREN, "\\("));
-        rules.add(new TokenRule("RPAREN", TokenType.RPAREN, "\\)"));
+        for (char c : " \t\n\u000B\f\r".toCharArray()) CLASS[c] = SPACE;
+        for (char c = '0'; c <= '9'; c++) CLASS[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) CLASS[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CLASS[c] = LETTER;
+        CLASS['_'] = LETTER;
+        CLASS['"'] = QUOTE;
 
-        // Whitespace (including newlines) — skip but still update line/column
-        rules.add(new TokenRule("WHITESPACE", null, "\\s+"));
+        symbol('{', TokenType.LBRACE);
+        symbol('}', TokenType.RBRACE);
+        symbol('=', TokenType.ASSIGN);
+        symbol('+', TokenType.PLUS);
+        symbol('-', TokenType.MINUS);
+        symbol('*', TokenType.MUL);
+        symbol('/', TokenType.DIV);
+        symbol('(', TokenType.LPAREN);
+        symbol(')', TokenType.RPAREN);
+
+        keyword("if", TokenType.IF);
+        keyword("else", TokenType.ELSE);
+        keyword("while", TokenType.WHILE);
+        keyword("print", TokenType.PRINT);
+        keyword("read", TokenType.READ);
+        keyword("true", TokenType.BOOLEAN_TRUE);
+        keyword("false", TokenType.BOOLEAN_FALSE);
+    }
+
+    private static void symbol(char c, TokenType type) {
+        CLASS[c] = SYMBOL;
+        SYMBOLS[c] = type;
+    }
+
+    private static void keyword(String word, TokenType type) {
+        char[] w = word.toCharArray();
+        int h = keywordHash(w, 0, w.length);
+        if (KEYWORDS[h] != null) {
+            throw new IllegalStateException("Keyword hash collision: " + word);
+        }
+        KEYWORDS[h] = w;
+        KEYWORD_TYPES[h] = type;
+    }
+
+    private static int keywordHash(char[] b, int start, int len) {
+        return (b[start] + 2 * b[start + len - 1] + len) & 15;
     }
 
     /**
      * Tokenize input string into a list of tokens, each annotated with line/column.
      */
     public static List<Token> tokenize(String input) {
+        if (useRegexLexer) {
+            return RegexLexer.tokenize(input);
+        }
+        Lexer lexer = new Lexer(input.toCharArray(), wideMirror(input));
         List<Token> tokens = new ArrayList<>();
-        int pos = 0;            // index in input
-        int line = 1;           // current line number (1-based)
-        int column = 1;         // current column number (1-based)
-
-        while (pos < input.length()) {
-            boolean matched = false;
-
-            for (TokenRule rule : rules) {
-                Matcher m = rule.pattern.matcher(input);
-                m.region(pos, input.length());
-
-                if (m.lookingAt()) {
-                    String val = m.group();
-                    int startLine = line;
-                    int startColumn = column;
-
-                    // advance pos, line, and column counters over the matched text
-                    for (char c : val.toCharArray()) {
-                        if (c == '\n') {
-                            line++;
-                            column = 1;
-                        } else {
-                            column++;
-                        }
-                        pos++;
-                    }
+        TokenType type;
+        do {
+            type = lexer.next();
+            tokens.add(lexer.token());
+        } while (type != TokenType.EOF);
+        return tokens;
+    }
 
-                    // only produce a token if rule.type != null
-                    if (rule.type != null) {
-                        tokens.add(new Token(rule.type, val, startLine, startColumn));
-                    }
+    /**
+     * Streams tokens from a Reader, pulling characters through a bounded
+     * buffer as the caller asks for tokens. The last token is always EOF.
+     */
+    public static Iterator<Token> stream(Reader reader) {
+        return new TokenIterator(new Lexer(reader));
+    }
+
+    /**
+     * Streams tokens from a UTF-8 encoded channel (e.g. a FileChannel).
+     */
+    public static Iterator<Token> stream(ReadableByteChannel channel) {
+        return stream(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    // Initial size of the refill buffer; it only grows for tokens longer than this
+    private static final int STREAM_BUFFER = 8192;
+
+    // Latin-1 copy of the source for wide scanning (only in in-memory mode)
+    static byte[] wideMirror(String input) {
+        return useWideScan ? input.getBytes(StandardCharsets.ISO_8859_1) : null;
+    }
+
+    private final Reader reader;    // null when lexing an in-memory char[]
+    private final byte[] wide;      // Latin-1 mirror of buf, or null for char-at-a-time scanning
+    private boolean exhausted;
+    private char[] buf;
+    private int limit;           // end of valid data in buf
+    private int pos;             // next unread index in buf
+    private int line = 1;        // current line number (1-based)
+    private int lineStart;       // index of the first char on the current line (may go negative after a refill)
+
+    // Current token, as set by next()
+    private TokenType type;
+    private int start, tokenLine, tokenColumn;
+
+    Lexer(char[] buf) {
+        this(buf, 0);
+    }
+
+    Lexer(char[] buf, byte[] wide) {
+        this(buf, 0, wide);
+    }
+
+    // Starts scanning at offset 'from'; line numbers are then counted from there
+    Lexer(char[] buf, int from) {
+        this(buf, from, null);
+    }
+
+    private Lexer(char[] buf, int from, byte[] wide) {
+        this.reader = null;
+        this.wide = wide;
+        this.exhausted = true;
+        this.buf = buf;
+        this.limit = buf.length;
+        this.pos = from;
+        this.lineStart = from;
+    }
+
+    Lexer(Reader reader) {
+        this.reader = reader;
+        this.wide = null;
+        this.buf = new char[STREAM_BUFFER];
+    }
+
+    /**
+     * Scans the next token and returns its type (EOF once the input is exhausted).
+     */
+    TokenType next() {
+        char[] b = buf;
+        int n = limit;
+        int p = pos;
+
+        // Whitespace (including newlines) — skip but still update line/column
+        if (wide != null) p = skipSpacesWide(p);
+        for (;; p++) {
+            if (p == n) {
+                start = p;
+                p = fill(p);
+                b = buf;
+                n = limit;
+                if (p == n) break;
+            }
+            char c = b[p];
+            if (c > ' ' || CLASS[c] != SPACE) break;
+            if (c == '\n') {
+                line++;
+                lineStart = p + 1;
+            }
+        }
+
+        start = p;
+        tokenLine = line;
+        tokenColumn = p - lineStart + 1;
+        if (p == n) {
+            pos = p;
+            return type = TokenType.EOF;
+        }
 
-                    matched = true;
-                    break;
+        char c = b[p];
+        switch (c < 128 ? CLASS[c] : OTHER) {
+            case LETTER -> {
+                p++;
+                if (wide != null) p = WideScan.wordEnd(wide, p, n);
+                for (;; p++) {
+                    if (p == n) {
+                        p = fill(p);
+                        b = buf;
+                        n = limit;
+                        if (p == n) break;
+                    }
+                    if (!isWordChar(b[p])) break;
+                }
+                if (p < n && isUnicodeWordChar(b[p])) throw unexpected();
+                pos = p;
+                return type = keywordOrIdentifier(b, start, p - start);
+            }
+            case DIGIT -> {
+                p++;
+                if (wide != null) p = WideScan.digitEnd(wide, p, n);
+                for (;; p++) {
+                    if (p == n) {
+                        p = fill(p);
+                        b = buf;
+                        n = limit;
+                        if (p == n) break;
+                    }
+                    if (b[p] < '0' || b[p] > '9') break;
+                }
+                // "12ab" is not a number followed by an identifier: both rules need \b
+                if (p < n && (isWordChar(b[p]) || isUnicodeWordChar(b[p]))) throw unexpected();
+                pos = p;
+                return type = TokenType.NUMBER;
+            }
+            case QUOTE -> {
+                p++;
+                if (wide != null) p = skipStringWide(p);
+                for (;; p++) {
+                    if (p == n) {
+                        p = fill(p);
+                        b = buf;
+                        n = limit;
+                        if (p == n) throw unexpected();   // unterminated string
+                    }
+                    if (b[p] == '"') break;
+                    if (b[p] == '\n') {
+                        line++;
+                        lineStart = p + 1;
+                    }
                 }
+                pos = p + 1;
+                return type = TokenType.STRING;
+            }
+            case SYMBOL -> {
+                pos = p + 1;
+                return type = SYMBOLS[c];
             }
+            default -> throw unexpected();
+        }
+    }
+
+    // Skips whole 8-char words of whitespace, counting the newlines in them
+    private int skipSpacesWide(int p) {
+        for (; p + 8 <= limit; p += 8) {
+            long w = WideScan.word(wide, p);
+            long stop = ~WideScan.spaces(w) & WideScan.HIGH;
+            newlines(p, WideScan.eq(w, '\n') & WideScan.before(stop));
+            if (stop != 0) return p + (Long.numberOfTrailingZeros(stop) >>> 3);
+        }
+        return p;
+    }
+
+    // Skips string contents up to (not including) the closing quote
+    private int skipStringWide(int p) {
+        for (; p + 8 <= limit; p += 8) {
+            long w = WideScan.word(wide, p);
+            long stop = WideScan.eq(w, '"');
+            newlines(p, WideScan.eq(w, '\n') & WideScan.before(stop));
+            if (stop != 0) return p + (Long.numberOfTrailingZeros(stop) >>> 3);
+        }
+        return p;
+    }
+
+    // Accounts for the newline bytes marked in nl, in the word starting at p
+    private void newlines(int p, long nl) {
+        if (nl != 0) {
+            line += Long.bitCount(nl);
+            lineStart = p + ((63 - Long.numberOfLeadingZeros(nl)) >>> 3) + 1;
+        }
+    }
 
-            if (!matched) {
-                throw new RuntimeException(
-                    "Unexpected character at " + line + ":" + column +
-                    " → '" + input.charAt(pos) + "'"
-                );
+    /**
+     * Pulls more input into the buffer, keeping the current token (from
+     * {@code start}) and moving it to the front. Returns {@code p} rebased to
+     * the new buffer layout; nothing was added if the result equals {@code limit}.
+     */
+    private int fill(int p) {
+        if (exhausted) return p;
+        int shift = start;
+        if (shift > 0) {
+            System.arraycopy(buf, shift, buf, 0, limit - shift);
+            limit -= shift;
+            lineStart -= shift;
+            start = 0;
+            p -= shift;
+        } else if (limit == buf.length) {
+            // a single token fills the whole buffer
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        try {
+            int r;
+            do {
+                r = reader.read(buf, limit, buf.length - limit);
+            } while (r == 0);
+            if (r < 0) exhausted = true;
+            else limit += r;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return p;
+    }
+
+    /**
+     * Materializes the token most recently returned by {@link #next()}.
+     */
+    Token token() {
+        return new Token(type, new String(buf, start, pos - start), tokenLine, tokenColumn);
+    }
+
+    int tokenStart() { return start; }
+    int tokenEnd()   { return pos; }
+
+    private static TokenType keywordOrIdentifier(char[] b, int start, int len) {
+        if (len <= 5) {
+            int h = keywordHash(b, start, len);
+            char[] kw = KEYWORDS[h];
+            if (kw != null && kw.length == len && Arrays.equals(kw, 0, len, b, start, start + len)) {
+                return KEYWORD_TYPES[h];
             }
         }
+        return TokenType.IDENTIFIER;
+    }
 
-        // EOF token at the end, annotated with final position
-        tokens.add(new Token(TokenType.EOF, "", line, column));
-        return tokens;
+    private static boolean isWordChar(char c) {
+        return c < 128 && (CLASS[c] == LETTER || CLASS[c] == DIGIT);
+    }
+
+    // Non-ASCII letters/digits count as word characters for \b, so the regex
+    // rules refuse to end a word in front of them
+    private static boolean isUnicodeWordChar(char c) {
+        return c >= 128 && Character.isLetterOrDigit(c);
     }
 
-    // Helper class to store a regex rule and its associated token type
-    private static class TokenRule {
-        final TokenType type;
-        final Pattern pattern;
+    // Pulls one token at a time from a streaming lexer, ending with EOF
+    private static class TokenIterator implements Iterator<Token> {
+        private final Lexer lexer;
+        private boolean done;
 
-        TokenRule(String name, TokenType type, String regex) {
-            this.type    = type;
-            this.pattern = Pattern.compile(regex);
+        TokenIterator(Lexer lexer) {
+            this.lexer = lexer;
         }
+
+        @Override
+        public boolean hasNext() {
+            return !done;
+        }
+
+        @Override
+        public Token next() {
+            if (done) throw new NoSuchElementException();
+            done = lexer.next() == TokenType.EOF;
+            return lexer.token();
+        }
+    }
+
+    private RuntimeException unexpected() {
+        return unexpected(tokenLine, tokenColumn);
+    }
+
+    // Same error, for callers that know the real position of tokenStart()
+    RuntimeException unexpected(int line, int column) {
+        return new RuntimeException(
+            "Unexpected character at " + line + ":" + column +
+            " → '" + buf[start] + "'"
+        );
     }
 }
@@ -0,0 +1,58 @@
+package compiler.lexer;
+
+/**
+ * TokenCursor that lexes lazily from an arbitrary offset of a source
+ * text, exposing token offsets so a caller can tell where each parsed
+ * construct starts and ends. Line/column are only computed for errors.
+ */
+public class LexerCursor implements TokenCursor {
+    private final char[] source;
+    private final Lexer lexer;
+    private TokenType type;
+    private int previousEnd;
+    private LineTable lines;
+
+    public LexerCursor(char[] source, int from) {
+        this.source = source;
+        this.lexer = new Lexer(source, from);
+        this.previousEnd = from;
+        scan();
+    }
+
+    public TokenType type() { return type; }
+    public String text()    { return new String(source, lexer.tokenStart(), lexer.tokenEnd() - lexer.tokenStart()); }
+    public int line()       { return lines().line(lexer.tokenStart()); }
+    public int column()     { return lines().column(lexer.tokenStart()); }
+
+    public void advance() {
+        if (type != TokenType.EOF) {
+            previousEnd = lexer.tokenEnd();
+            scan();
+        }
+    }
+
+    /** Offset of the current token's first character. */
+    public int start() {
+        return lexer.tokenStart();
+    }
+
+    /** Offset just past the last consumed token. */
+    public int previousEnd() {
+        return previousEnd;
+    }
+
+    private void scan() {
+        try {
+            type = lexer.next();
+        } catch (RuntimeException e) {
+            // the lexer counts lines from 'from'; report the real position
+            int at = lexer.tokenStart();
+            throw lexer.unexpected(lines().line(at), lines().column(at));
+        }
+    }
+
+    private LineTable lines() {
+        if (lines == null) lines = new LineTable(source);
+        return lines;
+    }
+}
@@ -0,0 +1,44 @@
+package compiler.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the first character of every line in a source text,
+ * for turning a char offset into a 1-based line/column on demand.
+ */
+class LineTable {
+    private final int[] starts;
+    private final int count;
+
+    LineTable(char[] source) {
+        int[] ls = new int[16];
+        int n = 1;
+        for (int p = 0; p < source.length; p++) {
+            if (source[p] == '\n') {
+                if (n == ls.length) ls = Arrays.copyOf(ls, n * 2);
+                ls[n++] = p + 1;
+            }
+        }
+        starts = ls;
+        count = n;
+    }
+
+    int line(int offset) {
+        return index(offset) + 1;
+    }
+
+    int column(int offset) {
+        return offset - starts[index(offset)] + 1;
+    }
+
+    // Binary search for the line containing the given offset
+    private int index(int offset) {
+        int lo = 0, hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+}
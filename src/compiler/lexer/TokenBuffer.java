@@ -0,0 +1,104 @@
+package compiler.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Packed token list: one entry per token in parallel primitive arrays
+ * (type, start offset, length) over the original source text.
+ * Token text is only copied out when asked for, and line/column are
+ * looked up in a line-start table that is built on first use (normally
+ * only when an error has to be reported).
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final char[] source;
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int size;
+    private LineTable lines;      // built lazily by line()/column()
+
+    private TokenBuffer(char[] source) {
+        this.source = source;
+    }
+
+    /**
+     * Scans the whole input; the last token is always EOF.
+     */
+    public static TokenBuffer tokenize(String input) {
+        char[] src = input.toCharArray();
+        TokenBuffer tb = new TokenBuffer(src);
+        Lexer lexer = new Lexer(src, Lexer.wideMirror(input));
+        TokenType type;
+        do {
+            type = lexer.next();
+            tb.add(type, lexer.tokenStart(), lexer.tokenEnd() - lexer.tokenStart());
+        } while (type != TokenType.EOF);
+        tb.trim();
+        return tb;
+    }
+
+    private void add(TokenType type, int start, int length) {
+        if (size == types.length) {
+            int cap = size * 2;
+            types = Arrays.copyOf(types, cap);
+            starts = Arrays.copyOf(starts, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    private void trim() {
+        types = Arrays.copyOf(types, size);
+        starts = Arrays.copyOf(starts, size);
+        lengths = Arrays.copyOf(lengths, size);
+    }
+
+    public int size()            { return size; }
+    public TokenType type(int i) { return TYPES[types[i]]; }
+    public int start(int i)      { return starts[i]; }
+    public int length(int i)     { return lengths[i]; }
+
+    /** Copies the token's characters out of the source. */
+    public String text(int i) {
+        return new String(source, starts[i], lengths[i]);
+    }
+
+    public int line(int i) {
+        return lines().line(starts[i]);
+    }
+
+    public int column(int i) {
+        return lines().column(starts[i]);
+    }
+
+    /** Builds a full Token object for index i (for debugging and tools). */
+    public Token token(int i) {
+        return new Token(type(i), text(i), line(i), column(i));
+    }
+
+    /** A cursor starting at the first token, for the Parser. */
+    public TokenCursor cursor() {
+        return new TokenCursor() {
+            private int pos = 0;
+
+            public TokenType type() { return TYPES[types[pos]]; }
+            public String text()    { return TokenBuffer.this.text(pos); }
+            public int line()       { return TokenBuffer.this.line(pos); }
+            public int column()     { return TokenBuffer.this.column(pos); }
+
+            public void advance() {
+                if (pos < size - 1) pos++;
+            }
+        };
+    }
+
+    private LineTable lines() {
+        if (lines == null) lines = new LineTable(source);
+        return lines;
+    }
+}
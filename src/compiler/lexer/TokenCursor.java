@@ -0,0 +1,35 @@
+package compiler.lexer;
+
+import java.util.Iterator;
+
+/**
+ * Read position over a token sequence, as consumed by the Parser.
+ * Once the EOF token is reached, advance() stays on it.
+ */
+public interface TokenCursor {
+    TokenType type();     // type of the current token
+    String text();        // source text of the current token
+    int line();           // 1-based line of the current token
+    int column();         // 1-based column of the current token
+    void advance();       // move to the next token
+
+    /**
+     * Adapts a token iterator (a List or a streaming Lexer) to a cursor.
+     */
+    static TokenCursor of(Iterator<Token> tokens) {
+        return new TokenCursor() {
+            private Token current = tokens.next();
+
+            public TokenType type() { return current.type; }
+            public String text()    { return current.value; }
+            public int line()       { return current.line; }
+            public int column()     { return current.column; }
+
+            public void advance() {
+                if (current.type != TokenType.EOF && tokens.hasNext()) {
+                    current = tokens.next();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package compiler.lexer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * SWAR (SIMD-within-a-register) helpers for the Lexer's wide scanning mode.
+ * Works on a Latin-1 byte mirror of the source, classifying 8 chars per
+ * step with exact per-byte masks (0x80 in every byte that matches).
+ * Chars outside Latin-1 show up as '?' in the mirror, which belongs to no
+ * run class, so a run always stops where the scalar scanner would stop.
+ */
+final class WideScan {
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static final long HIGH = 0x8080808080808080L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ONES = 0x0101010101010101L;
+
+    private WideScan() { }
+
+    static long word(byte[] b, int p) {
+        return (long) LONGS.get(b, p);
+    }
+
+    // 0x80 in every byte equal to c
+    static long eq(long w, int c) {
+        long x = w ^ (ONES * c);
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    // 0x80 in every byte within [lo, hi] (both below 0x80)
+    private static long in(long w, int lo, int hi) {
+        long x = w & LOW7;
+        long ge = x + ONES * (0x80 - lo);
+        long le = ~(x + ONES * (0x7F - hi));
+        return ge & le & ~w & HIGH;
+    }
+
+    static long spaces(long w) {
+        return in(w, '\t', '\r') | eq(w, ' ');
+    }
+
+    static long digits(long w) {
+        return in(w, '0', '9');
+    }
+
+    static long wordChars(long w) {
+        return in(w, '0', '9') | in(w, 'A', 'Z') | in(w, 'a', 'z') | eq(w, '_');
+    }
+
+    // Mask of the bytes in front of the first set byte of m (all bytes if m == 0)
+    static long before(long m) {
+        return m == 0 ? HIGH : ((m & -m) - 1) & HIGH;
+    }
+
+    /** End of the run of word chars starting at p (stops 8 bytes before n). */
+    static int wordEnd(byte[] b, int p, int n) {
+        for (; p + 8 <= n; p += 8) {
+            long stop = ~wordChars(word(b, p)) & HIGH;
+            if (stop != 0) return p + (Long.numberOfTrailingZeros(stop) >>> 3);
+        }
+        return p;
+    }
+
+    /** End of the run of digits starting at p (stops 8 bytes before n). */
+    static int digitEnd(byte[] b, int p, int n) {
+        for (; p + 8 <= n; p += 8) {
+            long stop = ~digits(word(b, p)) & HIGH;
+            if (stop != 0) return p + (Long.numberOfTrailingZeros(stop) >>> 3);
+        }
+        return p;
+    }
+}
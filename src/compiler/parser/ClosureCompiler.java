@@ -0,0 +1,282 @@
+package compiler.parser;
+
+import compiler.ast.*;
+import compiler.error.SemanticException;
+import compiler.io.InputSource;
+import compiler.io.InputValue;
+import compiler.io.ListOutput;
+import java.util.*;
+
+/**
+ * Compiles a Program once into a tree of pre-resolved closures:
+ * literals are decoded, operators selected and variables bound to their
+ * frame slot at compile time, so running a loop body does no AST
+ * dispatch, regex matching or symbol-table lookups. Expressions and
+ * conditions {@link TypeInference} proved to be ints (or booleans) get
+ * unboxed closures without type checks, as in the AST walker.
+ * Behaves exactly like {@link Interpreter} (same output and errors).
+ */
+public class ClosureCompiler {
+    // A compiled statement, run against the context of the current run
+    @FunctionalInterface
+    interface Exec {
+        void exec(ExecutionContext ctx);
+    }
+
+    // A compiled expression, returning Integer, Boolean, or String
+    @FunctionalInterface
+    interface Eval {
+        Object eval(Memory mem);
+    }
+
+    // A compiled expression proven to be an int
+    @FunctionalInterface
+    interface IntEval {
+        int eval(Memory mem);
+    }
+
+    // A compiled if/while condition
+    @FunctionalInterface
+    interface Cond {
+        boolean test(Memory mem);
+    }
+
+    /**
+     * A compiled program. It holds no run state, so one Compiled can be
+     * run on several contexts at once.
+     */
+    public static final class Compiled {
+        private final Exec[] body;
+        private final Resolver slots;
+
+        private Compiled(Exec[] body, Resolver slots) {
+            this.body = body;
+            this.slots = slots;
+        }
+
+        /** Runs with System.in as input and returns the printed lines. */
+        public List<String> run() {
+            ListOutput out = new ListOutput();
+            run(new ExecutionContext(InputSource.stream(System.in), out));
+            return out.lines();
+        }
+
+        public void run(ExecutionContext ctx) {
+            if (ctx.memory() == null) ctx.begin(slots);
+            for (Exec e : body) e.exec(ctx);
+        }
+    }
+
+    private final Set<String> boolVars;
+
+    private ClosureCompiler(Set<String> boolVars) {
+        this.boolVars = boolVars;
+    }
+
+    public static Compiled compile(Program program) {
+        return compile(program, Resolver.resolve(program));
+    }
+
+    public static Compiled compile(Program program, Resolver slots) {
+        TypeInference.infer(program, slots.size());
+        ClosureCompiler cc = new ClosureCompiler(Interpreter.collectBooleanVars(program));
+        return new Compiled(cc.block(program.statements), slots);
+    }
+
+    private Exec[] block(List<Stmt> stmts) {
+        Exec[] code = new Exec[stmts.size()];
+        for (int i = 0; i < code.length; i++) code[i] = stmt(stmts.get(i));
+        return code;
+    }
+
+    private Exec stmt(Stmt stmt) {
+        if (stmt instanceof ReadStmt rs) {
+            int slot = rs.slot;
+            String name = rs.var;
+            if (boolVars.contains(name)) {
+                return ctx -> {
+                    int b = ctx.read(name).bool();
+                    if (b < 0) {
+                        throw new SemanticException(
+                            "Variable '" + name + "' must be boolean (true/false)"
+                        );
+                    }
+                    ctx.memory().store(slot, b == 1);
+                };
+            }
+            return ctx -> {
+                InputValue inp = ctx.read(name);
+                if (inp.isInt()) ctx.memory().store(slot, inp.intValue());
+                else ctx.memory().store(slot, inp.text());
+            };
+        }
+        if (stmt instanceof PrintStmt ps) {
+            int slot = ps.slot;
+            String prefix = ps.var + " = ";
+            return ctx -> ctx.print(prefix + ctx.memory().get(slot));
+        }
+        if (stmt instanceof AssignStmt as) {
+            int slot = as.slot;
+            if (as.expr instanceof BinaryExpr be && be.type == Memory.INT) {
+                IntEval e = intExpr(be);                    // proven int: no boxing
+                return ctx -> ctx.memory().store(slot, e.eval(ctx.memory()));
+            }
+            Eval e = expr(as.expr);
+            return ctx -> {
+                Memory mem = ctx.memory();
+                Object val = e.eval(mem);
+                if (val instanceof Integer i)      mem.store(slot, i);
+                else if (val instanceof Boolean b) mem.store(slot, b);
+                else if (val instanceof String s)  mem.store(slot, s);
+            };
+        }
+        if (stmt instanceof IfStmt is) {
+            Cond cond = condition(is.cond);
+            Exec[] thenBlock = block(is.thenBlock);
+            Exec[] elseBlock = block(is.elseBlock);
+            return ctx -> {
+                for (Exec e : cond.test(ctx.memory()) ? thenBlock : elseBlock) e.exec(ctx);
+            };
+        }
+        if (stmt instanceof WhileStmt ws) {
+            Cond cond = condition(ws.cond);
+            Exec[] body = block(ws.body);
+            return ctx -> {
+                Memory mem = ctx.memory();
+                while (cond.test(mem)) {
+                    ctx.tick();
+                    for (Exec e : body) e.exec(ctx);
+                }
+            };
+        }
+        throw new RuntimeException("ClosureCompiler: unknown stmt " + stmt);
+    }
+
+    // An if/while condition, unboxed where TypeInference proved its type
+    private Cond condition(Expr cond) {
+        if (cond instanceof BinaryExpr be && be.type == Memory.INT) {
+            IntEval e = intExpr(be);
+            return mem -> e.eval(mem) != 0;
+        }
+        if (cond instanceof VarExpr ve && ve.type == Memory.BOOLEAN) {
+            int slot = ve.slot;
+            return mem -> mem.getBoolean(slot);
+        }
+        if (cond instanceof VarExpr ve && ve.type == Memory.INT) {
+            int slot = ve.slot;
+            return mem -> mem.getInt(slot) != 0;
+        }
+        // dynamically typed: checked path
+        Eval e = expr(cond);
+        return mem -> truth(e.eval(mem));
+    }
+
+    // An expression TypeInference proved to be an int: no boxing, no type
+    // checks (division by zero is still checked)
+    private IntEval intExpr(Expr expr) {
+        if (expr instanceof VarExpr ve) {
+            int slot = ve.slot;
+            return mem -> mem.getInt(slot);
+        }
+        if (expr instanceof BinaryExpr be) {
+            IntEval l = intExpr(be.left);
+            IntEval r = intExpr(be.right);
+            return switch (be.op) {
+                case "+" -> mem -> l.eval(mem) + r.eval(mem);
+                case "-" -> mem -> l.eval(mem) - r.eval(mem);
+                case "*" -> mem -> l.eval(mem) * r.eval(mem);
+                default  -> mem -> {
+                    int li = l.eval(mem), ri = r.eval(mem);
+                    if (ri == 0) throw new SemanticException("Division by zero");
+                    return li / ri;
+                };
+            };
+        }
+        String v = ((LiteralExpr) expr).value;
+        try {
+            int k = Integer.parseInt(v);
+            return mem -> k;
+        } catch (NumberFormatException e) {
+            // out of int range: only fail if the literal is actually evaluated
+            return mem -> { throw e; };
+        }
+    }
+
+    private Eval expr(Expr expr) {
+        if (expr instanceof LiteralExpr le) {
+            return literal(le.value);
+        }
+        if (expr instanceof VarExpr ve) {
+            int slot = ve.slot;
+            return mem -> mem.get(slot);
+        }
+        if (expr instanceof BinaryExpr be && be.type == Memory.INT) {
+            IntEval e = intExpr(be);
+            return mem -> e.eval(mem);
+        }
+        if (expr instanceof BinaryExpr be) {
+            Eval l = expr(be.left);
+            Eval r = expr(be.right);
+            String op = be.op;
+            return switch (op) {
+                case "+" -> mem -> {
+                    Object L = l.eval(mem), R = r.eval(mem);
+                    return ints(op, L, R) + (Integer) R;
+                };
+                case "-" -> mem -> {
+                    Object L = l.eval(mem), R = r.eval(mem);
+                    return ints(op, L, R) - (Integer) R;
+                };
+                case "*" -> mem -> {
+                    Object L = l.eval(mem), R = r.eval(mem);
+                    return ints(op, L, R) * (Integer) R;
+                };
+                case "/" -> mem -> {
+                    Object L = l.eval(mem), R = r.eval(mem);
+                    int li = ints(op, L, R), ri = (Integer) R;
+                    if (ri == 0) throw new SemanticException("Division by zero");
+                    return li / ri;
+                };
+                default -> mem -> {
+                    ints(op, l.eval(mem), r.eval(mem));
+                    throw new SemanticException("Unknown operator '" + op + "'");
+                };
+            };
+        }
+        throw new SemanticException("Cannot evaluate expression: " + expr);
+    }
+
+    // Decodes a literal once, the same way Interpreter.evalExpr does on every visit
+    private static Eval literal(String v) {
+        Object val;
+        if (v.matches("-?\\d+")) {
+            try {
+                val = Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                // out of int range: only fail if the literal is actually evaluated
+                return mem -> { throw e; };
+            }
+        }
+        else if (v.equalsIgnoreCase("true"))  val = true;
+        else if (v.equalsIgnoreCase("false")) val = false;
+        else val = v;  // string literal
+        return mem -> val;
+    }
+
+    // Checks both operands are ints and returns the left one
+    private static int ints(String op, Object L, Object R) {
+        if (!(L instanceof Integer) || !(R instanceof Integer)) {
+            throw new SemanticException(
+                "Cannot apply operator '" + op +
+                "' to types '" + Interpreter.typeName(L) + "' and '" + Interpreter.typeName(R) + "'"
+            );
+        }
+        return (Integer) L;
+    }
+
+    private static boolean truth(Object c) {
+        if (c instanceof Boolean b) return b;
+        if (c instanceof Integer i) return i != 0;
+        throw Memory.conditionError(Memory.STRING);
+    }
+}
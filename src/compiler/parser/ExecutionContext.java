@@ -0,0 +1,109 @@
+package compiler.parser;
+
+import compiler.error.LimitException;
+import compiler.io.InputSource;
+import compiler.io.InputValue;
+import compiler.io.ListOutput;
+import compiler.io.OutputSink;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything one run of a program owns: its variable frame, where reads
+ * come from and prints go to, the warnings it produced, and its limits.
+ * Nothing here is shared, so runs with separate contexts can execute
+ * concurrently (see {@link ProgramExecutor}). A context is used for one run.
+ */
+public class ExecutionContext {
+    /** No limit on loop iterations or printed lines. */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final InputSource input;
+    private final OutputSink output;
+    private final long maxIterations;
+    private final long maxOutputLines;
+
+    private final List<String> warnings = new ArrayList<>();
+    private final InputValue value = new InputValue();
+    private Memory memory;
+    private long iterations, printed;
+
+    /**
+     * Reads lines from System.in and keeps the output in a {@link ListOutput},
+     * without limits.
+     */
+    public ExecutionContext() {
+        this(InputSource.stream(System.in), new ListOutput());
+    }
+
+    public ExecutionContext(InputSource input, OutputSink output) {
+        this(input, output, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @param maxIterations  loop iterations allowed across the whole run
+     * @param maxOutputLines print lines allowed
+     */
+    public ExecutionContext(InputSource input, OutputSink output,
+                            long maxIterations, long maxOutputLines) {
+        this.input = input;
+        this.output = output;
+        this.maxIterations = maxIterations;
+        this.maxOutputLines = maxOutputLines;
+    }
+
+    public OutputSink output() {
+        return output;
+    }
+
+    /** Number of lines printed so far. */
+    public long printed() {
+        return printed;
+    }
+
+    /** Static warnings about the program (reported before it runs). */
+    public List<String> warnings() {
+        return warnings;
+    }
+
+    /** The variable frame of the run (null before the run starts). */
+    public Memory memory() {
+        return memory;
+    }
+
+    void begin(Resolver slots) {
+        memory = new Memory(slots);
+        warnings.addAll(slots.warnings());
+    }
+
+    // ---- called by the engines ----
+
+    /**
+     * Reads the next value for 'name'. The returned holder is reused by
+     * the next read.
+     */
+    public InputValue read(String name) {
+        input.read(name, value);
+        return value;
+    }
+
+    public void print(String line) {
+        if (printed >= maxOutputLines) {
+            throw new LimitException("More than " + maxOutputLines + " lines printed");
+        }
+        printed++;
+        output.println(line);
+    }
+
+    /**
+     * Counts one loop iteration; also where a cancelled run stops.
+     */
+    public void tick() {
+        if (++iterations > maxIterations) {
+            throw new LimitException("More than " + maxIterations + " loop iterations");
+        }
+        if ((iterations & 0x3FF) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new LimitException("Run cancelled");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package compiler.parser;
+
+import compiler.ast.Program;
+import compiler.io.ListOutput;
+import compiler.lexer.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput benchmark for {@link ProgramExecutor}: a batch of independent
+ * loop programs, each with its own context, run on pools of increasing
+ * size. Reports programs per second and the speedup over one thread, and
+ * checks every run printed what the one-thread run printed.
+ *
+ * Usage: ExecutorBenchmark [programs] [threads ...]
+ * (default: 400 programs; 1, 2, 4, ... up to the number of cores)
+ * The engine is the usual -Dcompiler.engine.
+ */
+public final class ExecutorBenchmark {
+    private static final int ROUNDS = 5, WARMUP = 5;
+
+    private ExecutorBenchmark() { }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        List<Integer> threads = new ArrayList<>();
+        for (int k = 1; k < args.length; k++) threads.add(Integer.parseInt(args[k]));
+        if (threads.isEmpty()) {
+            for (int t = 1; t <= Runtime.getRuntime().availableProcessors(); t *= 2) threads.add(t);
+        }
+
+        List<Program> programs = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            programs.add(new Parser(TokenBuffer.tokenize(source(p))).parseProgram());
+        }
+        System.out.println(count + " programs, engine " + Interpreter.engine + ", "
+                           + Runtime.getRuntime().availableProcessors() + " cores");
+
+        // Warm up before the first row, or the one-thread time includes JIT compilation
+        try (ProgramExecutor executor = new ProgramExecutor(1)) {
+            for (int r = 0; r < WARMUP; r++) run(executor, programs);
+        }
+
+        List<List<String>> expected = null;
+        double base = 0;
+        for (int t : threads) {
+            try (ProgramExecutor executor = new ProgramExecutor(t)) {
+                List<List<String>> outputs = run(executor, programs);
+                if (expected == null) expected = outputs;
+                boolean same = outputs.equals(expected);
+                double ms = time(executor, programs);
+                if (base == 0) base = ms;
+                System.out.printf("%2d thread(s) %8.2f ms  %8.0f programs/s  speedup %.2fx  %s%n",
+                                  t, ms, count * 1000 / ms, base / ms, same ? "identical" : "DIFFERENT OUTPUT");
+            }
+        }
+    }
+
+    // Fastest of ROUNDS batches
+    private static double time(ProgramExecutor executor, List<Program> programs)
+            throws InterruptedException, ExecutionException {
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            run(executor, programs);
+            best = Math.min(best, (System.nanoTime() - t0) / 1e6);
+        }
+        return best;
+    }
+
+    // Submits the batch and waits for it; the printed lines of each program, in order
+    private static List<List<String>> run(ProgramExecutor executor, List<Program> programs)
+            throws InterruptedException, ExecutionException {
+        List<Future<ExecutionContext>> futures = executor.submitAll(programs,
+            () -> new ExecutionContext(name -> "", new ListOutput(),
+                                       ExecutionContext.UNLIMITED, ExecutionContext.UNLIMITED));
+        List<List<String>> outputs = new ArrayList<>(futures.size());
+        for (Future<ExecutionContext> f : futures) {
+            outputs.add(((ListOutput) f.get().output()).lines());
+        }
+        return outputs;
+    }
+
+    // A counting loop with arithmetic and a branch; the constants vary per program
+    private static String source(int p) {
+        return "n = " + (20_000 + p % 7 * 1_000) + "\n"
+             + "s = " + p + "\n"
+             + "while (n) {\n"
+             + "  s = s + n * 3 / 2 - 1\n"
+             + "  if (n - n / 5 * 5) {\n"
+             + "    s = s - 2\n"
+             + "  }\n"
+             + "  n = n - 1\n"
+             + "}\n"
+             + "print s\n";
+    }
+}
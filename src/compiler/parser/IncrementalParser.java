@@ -0,0 +1,157 @@
+package compiler.parser;
+
+import compiler.ast.Program;
+import compiler.ast.Stmt;
+import compiler.lexer.LexerCursor;
+import compiler.lexer.TokenType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a live AST for a document that is being edited.
+ *
+ * Every top-level statement is remembered together with the source range
+ * it was parsed from. An edit only re-lexes and re-parses from the
+ * statement in front of the damaged range; as soon as the parser reaches
+ * the (shifted) start of an old statement that lies entirely after the
+ * edit, that statement and everything behind it are reused unchanged.
+ */
+public class IncrementalParser {
+    // A parsed top-level statement and the source range it covers
+    private static final class Span {
+        final Stmt stmt;
+        int start, end;
+
+        Span(Stmt stmt, int start, int end) {
+            this.stmt = stmt;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private char[] text = new char[0];
+    private final List<Span> spans = new ArrayList<>();
+    // Source range left unparsed by a failed re-parse (-1 when clean)
+    private int dirtyFrom = -1, dirtyTo = -1;
+    private RuntimeException error;
+    private int reparsed, reused;
+
+    /**
+     * Replaces the whole document and parses it from scratch.
+     */
+    public void setText(String source) {
+        text = source.toCharArray();
+        spans.clear();
+        reparse(0, text.length);
+    }
+
+    /**
+     * Applies an edit: 'removed' chars at 'offset' were replaced by 'inserted'.
+     */
+    public void edit(int offset, int removed, String inserted) {
+        int added = inserted.length();
+        int delta = added - removed;
+
+        char[] t = new char[text.length + delta];
+        System.arraycopy(text, 0, t, 0, offset);
+        inserted.getChars(0, added, t, offset);
+        System.arraycopy(text, offset + removed, t, offset + added, text.length - offset - removed);
+        text = t;
+
+        // Statements after the edit move; statements inside it are gone
+        int oldEnd = offset + removed;
+        for (int i = 0; i < spans.size(); i++) {
+            Span s = spans.get(i);
+            if (s.start >= oldEnd) {
+                s.start += delta;
+                s.end += delta;
+            } else if (s.start >= offset) {
+                spans.remove(i--);
+            }
+        }
+
+        int from = offset, to = offset + added;
+        if (dirtyFrom >= 0) {
+            from = Math.min(from, shift(dirtyFrom, offset, oldEnd, delta));
+            to = Math.max(to, shift(dirtyTo, offset, oldEnd, delta));
+        }
+        reparse(from, to);
+    }
+
+    private static int shift(int pos, int offset, int oldEnd, int delta) {
+        if (pos < offset) return pos;
+        return pos < oldEnd ? offset : pos + delta;
+    }
+
+    /**
+     * The current AST, or the current diagnostic thrown as-is
+     * (SyntaxException, or the lexer's RuntimeException).
+     */
+    public Program program() {
+        if (error != null) throw error;
+        List<Stmt> stmts = new ArrayList<>(spans.size());
+        for (Span s : spans) stmts.add(s.stmt);
+        return new Program(stmts);
+    }
+
+    /** The current diagnostic, or null if the document parses. */
+    public RuntimeException error() {
+        return error;
+    }
+
+    /** Top-level statements parsed by the last update. */
+    public int reparsedStatements() {
+        return reparsed;
+    }
+
+    /** Top-level statements carried over unchanged by the last update. */
+    public int reusedStatements() {
+        return reused;
+    }
+
+    // Re-parse around the damaged range [from, to) of the current text
+    private void reparse(int from, int to) {
+        // Start one statement before the last one starting in front of the
+        // damage: its end was decided by looking at the next token.
+        int k = -1;
+        while (k + 1 < spans.size() && spans.get(k + 1).start < from) k++;
+        int first = Math.max(k - 1, 0);
+        int start = k >= 1 ? spans.get(first).start : 0;
+
+        int next = first;
+        while (next < spans.size() && spans.get(next).start < to) next++;
+        int firstReusable = next;
+
+        List<Span> fresh = new ArrayList<>();
+        try {
+            LexerCursor cursor = new LexerCursor(text, start);
+            Parser parser = new Parser(cursor);
+            while (cursor.type() != TokenType.EOF) {
+                int at = cursor.start();
+                while (next < spans.size() && spans.get(next).start < at) next++;
+                if (next < spans.size() && spans.get(next).start == at) {
+                    break;   // back in sync with unchanged text
+                }
+                Stmt stmt = parser.parseStatement();
+                fresh.add(new Span(stmt, at, cursor.previousEnd()));
+            }
+            if (cursor.type() == TokenType.EOF) next = spans.size();
+        } catch (RuntimeException e) {
+            // Keep the statements behind the damage; remember what is unparsed
+            spans.subList(first, firstReusable).clear();
+            error = e;
+            dirtyFrom = start;
+            dirtyTo = first < spans.size() ? spans.get(first).start : text.length;
+            reparsed = fresh.size();
+            reused = spans.size();
+            return;
+        }
+
+        spans.subList(first, next).clear();
+        spans.addAll(first, fresh);
+        error = null;
+        dirtyFrom = dirtyTo = -1;
+        reparsed = fresh.size();
+        reused = spans.size() - fresh.size();
+    }
+}
@@ -3,34 +3,102 @@ package compiler.parser;
 
 import compiler.ast.*;
 import compiler.error.SemanticException;
+import compiler.io.InputSource;
+import compiler.io.InputValue;
+import compiler.io.ListOutput;
+import compiler.jit.JitCompiler;
+import compiler.vm.BytecodeCompiler;
+import compiler.vm.VM;
 import java.util.*;
-import javax.swing.*;
 
 /**
  * Interpreter that:
  * 1) Collects all vars used in boolean contexts (if/while conditions)
  * 2) On read, enforces boolean-only input for those vars
  * 3) Executes the program and collects print outputs
+ *
+ * Variables are resolved to frame slots up front (see {@link Resolver}),
+ * and reassignment warnings are reported once per run, before execution.
+ * All per-run state lives in an {@link ExecutionContext}.
  */
 public class Interpreter {
+    /** Execution engines behind {@link #run}. */
+    public enum Engine {
+        AST,        // walk the AST directly (this class)
+        CLOSURE,    // compile to closures first (ClosureCompiler)
+        BYTECODE,   // compile to register bytecode and run it on compiler.vm.VM
+        JIT,        // compile to a JVM hidden class (compiler.jit.JitCompiler)
+        TIERED      // walk the AST, compiling hot loops in the background (Tiering)
+    }
+
+    // Select with -Dcompiler.engine=closure|bytecode|jit|tiered (or set this field)
+    public static Engine engine = engineProperty();
+
+    // An unknown name is reported and falls back to AST, rather than failing class initialization
+    private static Engine engineProperty() {
+        String name = System.getProperty("compiler.engine", "ast");
+        try {
+            return Engine.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown compiler.engine '" + name + "', using ast");
+            return Engine.AST;
+        }
+    }
+
     /**
-     * Runs the program in-memory, prompting for any reads
-     * and collecting prints. Returns the list of output lines.
+     * Runs the program in-memory, reading values line by line from
+     * System.in and collecting prints. Returns the list of output lines.
+     * Reassignment warnings go to System.out.
      */
     public static List<String> run(Program program) {
-        Memory.clear();
-        // 1) Gather variables used in boolean contexts
-        Set<String> boolVars = collectBooleanVars(program);
-        // 2) Execute statements
-        List<String> out = new ArrayList<>();
-        for (Stmt stmt : program.statements) {
-            evalStmt(stmt, out, boolVars);
+        ListOutput out = new ListOutput();
+        ExecutionContext ctx = new ExecutionContext(InputSource.stream(System.in), out);
+        try {
+            run(program, ctx);
+        } finally {
+            ctx.warnings().forEach(System.out::println);
+        }
+        return out.lines();
+    }
+
+    /**
+     * Runs the program against its own context: reads, prints, warnings
+     * and variables all go through 'ctx'. The output sink is flushed at
+     * the end of the run, also when it fails.
+     */
+    public static void run(Program program, ExecutionContext ctx) {
+        Resolver slots = Resolver.resolve(program);
+        ctx.begin(slots);
+        try {
+            if (engine == Engine.CLOSURE) {
+                ClosureCompiler.compile(program).run(ctx);
+            }
+            else if (engine == Engine.JIT) {
+                JitCompiler.Compiled jit = JitCompiler.compile(program);
+                // too large for one JVM method: run it on the VM instead
+                if (jit != null) jit.run(ctx);
+                else VM.run(BytecodeCompiler.compile(program), ctx);
+            }
+            else if (engine == Engine.BYTECODE) {
+                VM.run(BytecodeCompiler.compile(program), ctx);
+            }
+            else {
+                // 1) Gather variables used in boolean contexts
+                Set<String> boolVars = collectBooleanVars(program);
+                TypeInference.infer(program, slots.size());
+                Tiering tiers = engine == Engine.TIERED ? new Tiering(slots.size(), boolVars) : null;
+                // 2) Execute statements
+                for (Stmt stmt : program.statements) {
+                    evalStmt(stmt, ctx, boolVars, tiers);
+                }
+            }
+        } finally {
+            ctx.output().flush();
         }
-        return out;
     }
 
     // Scan the AST for variables appearing in if/while conditions only
-    private static Set<String> collectBooleanVars(Program program) {
+    public static Set<String> collectBooleanVars(Program program) {
         Set<String> result = new HashSet<>();
         for (Stmt stmt : program.statements) {
             scanStmtForBooleans(stmt, result);
@@ -62,61 +130,63 @@ public class Interpreter {
         // LiteralExpr has no variables
     }
 
-    // Evaluate a statement, enforcing boolean-only reads for vars in boolVars
-    private static void evalStmt(Stmt stmt, List<String> out, Set<String> boolVars) {
+    // Evaluate a statement, enforcing boolean-only reads for vars in boolVars;
+    // 'tiers' is null unless hot loops may move to compiled code
+    private static void evalStmt(Stmt stmt, ExecutionContext ctx, Set<String> boolVars, Tiering tiers) {
+        Memory mem = ctx.memory();
         if (stmt instanceof ReadStmt rs) {
             String name = rs.var;
-            String inp = JOptionPane.showInputDialog(null, "Enter value for " + name + ":");
-            if (inp == null) inp = "";
+            InputValue inp = ctx.read(name);
 
             if (boolVars.contains(name)) {
                 // must be true/false
-                if (!(inp.equalsIgnoreCase("true") || inp.equalsIgnoreCase("false"))) {
+                int b = inp.bool();
+                if (b < 0) {
                     throw new SemanticException(
                         "Variable '" + name + "' must be boolean (true/false)"
                     );
                 }
-                Memory.store(name, Boolean.parseBoolean(inp));
+                mem.store(rs.slot, b == 1);
             } else {
                 // int or string
-                if (inp.matches("-?\\d+")) {
-                    Memory.store(name, Integer.parseInt(inp));
+                if (inp.isInt()) {
+                    mem.store(rs.slot, inp.intValue());
                 } else {
-                    Memory.store(name, inp);
+                    mem.store(rs.slot, inp.text());
                 }
             }
         }
         else if (stmt instanceof PrintStmt ps) {
-            Variable v = Memory.getVariable(ps.var);
-            String line = switch (v.type) {
-                case "int"     -> ps.var + " = " + v.intValue;
-                case "boolean" -> ps.var + " = " + v.boolValue;
-                case "string"  -> ps.var + " = " + v.stringValue;
-                default        -> ps.var + " = [unknown]";
-            };
-            out.add(line);
+            ctx.print(ps.var + " = " + mem.get(ps.slot));
         }
         else if (stmt instanceof AssignStmt as) {
-            Object val = evalExpr(as.expr);
-            if (val instanceof Integer i)       Memory.store(as.var, i);
-            else if (val instanceof Boolean b)   Memory.store(as.var, b);
-            else if (val instanceof String s)    Memory.store(as.var, s);
+            if (as.expr instanceof BinaryExpr be && be.type == Memory.INT) {
+                mem.store(as.slot, evalInt(be, mem));   // proven int: no boxing
+                return;
+            }
+            Object val = evalExpr(as.expr, mem);
+            if (val instanceof Integer i)       mem.store(as.slot, i);
+            else if (val instanceof Boolean b)   mem.store(as.slot, b);
+            else if (val instanceof String s)    mem.store(as.slot, s);
         }
         else if (stmt instanceof IfStmt is) {
-            Object c = evalExpr(is.cond);
-            boolean cond = (c instanceof Boolean) ? (Boolean)c : ((Integer)c != 0);
-            if (cond) {
-                is.thenBlock.forEach(s -> evalStmt(s, out, boolVars));
+            if (truth(is.cond, mem)) {
+                is.thenBlock.forEach(s -> evalStmt(s, ctx, boolVars, tiers));
             } else {
-                is.elseBlock.forEach(s -> evalStmt(s, out, boolVars));
+                is.elseBlock.forEach(s -> evalStmt(s, ctx, boolVars, tiers));
             }
         }
         else if (stmt instanceof WhileStmt ws) {
+            Tiering.Loop loop = tiers == null ? null : tiers.loop(ws);
+            boolean entry = true;
             while (true) {
-                Object c = evalExpr(ws.cond);
-                boolean cond = (c instanceof Boolean) ? (Boolean)c : ((Integer)c != 0);
-                if (!cond) break;
-                ws.body.forEach(s -> evalStmt(s, out, boolVars));
+                // once compiled code is ready it runs the rest of the loop
+                if (loop != null && loop.enter(ctx, entry)) break;
+                entry = false;
+                if (!truth(ws.cond, mem)) break;
+                ctx.tick();
+                ws.body.forEach(s -> evalStmt(s, ctx, boolVars, tiers));
+                if (loop != null) loop.backEdge();
             }
         }
         else {
@@ -124,8 +194,48 @@ public class Interpreter {
         }
     }
 
+    // Evaluate an if/while condition, unboxed where TypeInference proved its type
+    private static boolean truth(Expr cond, Memory mem) {
+        if (cond instanceof BinaryExpr be && be.type == Memory.INT) {
+            return evalInt(be, mem) != 0;
+        }
+        if (cond instanceof VarExpr ve && ve.type == Memory.BOOLEAN) {
+            return mem.getBoolean(ve.slot);
+        }
+        if (cond instanceof VarExpr ve && ve.type == Memory.INT) {
+            return mem.getInt(ve.slot) != 0;
+        }
+        // dynamically typed: checked path
+        Object c = evalExpr(cond, mem);
+        if (c instanceof Boolean b) return b;
+        if (c instanceof Integer i) return i != 0;
+        throw Memory.conditionError(Memory.STRING);
+    }
+
+    // Evaluate an expression TypeInference proved to be an int: no boxing,
+    // no type checks (division by zero is still checked)
+    private static int evalInt(Expr expr, Memory mem) {
+        if (expr instanceof VarExpr ve) {
+            return mem.getInt(ve.slot);
+        }
+        if (expr instanceof BinaryExpr be) {
+            int li = evalInt(be.left, mem);
+            int ri = evalInt(be.right, mem);
+            return switch (be.op) {
+                case "+" -> li + ri;
+                case "-" -> li - ri;
+                case "*" -> li * ri;
+                default  -> {
+                    if (ri == 0) throw new SemanticException("Division by zero");
+                    yield li / ri;
+                }
+            };
+        }
+        return Integer.parseInt(((LiteralExpr) expr).value);
+    }
+
     // Evaluate an expression, returning Integer, Boolean, or String
-    private static Object evalExpr(Expr expr) {
+    private static Object evalExpr(Expr expr, Memory mem) {
         if (expr instanceof LiteralExpr le) {
             String v = le.value;
             if (v.matches("-?\\d+"))      return Integer.parseInt(v);
@@ -134,17 +244,12 @@ public class Interpreter {
             return v;  // string literal
         }
         if (expr instanceof VarExpr ve) {
-            Variable var = Memory.getVariable(ve.name);
-            return switch (var.type) {
-                case "int"     -> var.intValue;
-                case "boolean" -> var.boolValue;
-                case "string"  -> var.stringValue;
-                default        -> null;
-            };
+            return mem.get(ve.slot);
         }
         if (expr instanceof BinaryExpr be) {
-            Object L = evalExpr(be.left);
-            Object R = evalExpr(be.right);
+            if (be.type == Memory.INT) return evalInt(be, mem);
+            Object L = evalExpr(be.left, mem);
+            Object R = evalExpr(be.right, mem);
             // ensure both are integers
             if (!(L instanceof Integer) || !(R instanceof Integer)) {
                 String lt = typeName(L), rt = typeName(R);
@@ -169,7 +274,7 @@ public class Interpreter {
     }
 
     // Helper to get a readable type name from an Object
-    private static String typeName(Object v) {
+    static String typeName(Object v) {
         if      (v instanceof Integer) return "int";
         else if (v instanceof Boolean) return "boolean";
         else if (v instanceof String)  return "string";
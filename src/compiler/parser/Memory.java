@@ -1,67 +1,107 @@
 package compiler.parser;
 
 import compiler.error.SemanticException;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Variable frame for one run: values live in primitive arrays indexed by
+ * the slot numbers handed out by {@link Resolver}, with a type tag per slot.
+ */
 public class Memory {
-    // Variable table (symbol table)
-    private static final Map<String, Variable> vars = new HashMap<>();
+    // Type tags
+    public static final byte UNSET = 0, INT = 1, BOOLEAN = 2, STRING = 3;
 
-    public static void store(String name, int value) {
-        if (vars.containsKey(name)) {
-            System.out.println("Warning: Variable '" + name + "' is being reassigned.");
-        }
-        vars.put(name, new Variable("int", value));
-    }
+    private final String[] names;
+    private final byte[] tags;
+    private final int[] ints;
+    private final boolean[] bools;
+    private final Object[] refs;
 
-    public static void store(String name, String value) {
-        vars.put(name, new Variable("string", value));
+    public Memory(Resolver slots) {
+        int n = slots.size();
+        this.names = slots.names();
+        this.tags = new byte[n];
+        this.ints = new int[n];
+        this.bools = new boolean[n];
+        this.refs = new Object[n];
     }
 
-    public static void store(String name, boolean value) {
-        vars.put(name, new Variable("boolean", value));
+    public void store(int slot, int value) {
+        tags[slot] = INT;
+        ints[slot] = value;
     }
 
-    // Retrieve the integer value of a variable
-    public static int getInt(String name) {
-        if (!vars.containsKey(name)) {
-            throw new RuntimeException("Semantic Error: '" + name + "' used before assignment.");
-        }
-        return vars.get(name).intValue;
+    public void store(int slot, String value) {
+        tags[slot] = STRING;
+        refs[slot] = value;
     }
 
-    public static String getString(String name) {
-        return vars.get(name).stringValue;
+    public void store(int slot, boolean value) {
+        tags[slot] = BOOLEAN;
+        bools[slot] = value;
     }
 
-    public static boolean getBoolean(String name) {
-        return vars.get(name).boolValue;
+    /** Type tag of the slot (UNSET if it was never assigned) */
+    public byte tag(int slot) {
+        return tags[slot];
     }
 
-    // in compiler.parser.Memory.java
-
-    /** Fetches the Variable object or throws a semantic error if missing */
-    public static Variable getVariable(String name) {
-        if (!vars.containsKey(name)) {
+    /** Type tag of the slot, or a semantic error if it was never assigned */
+    public byte type(int slot) {
+        byte t = tags[slot];
+        if (t == UNSET) {
             throw new SemanticException(
-                "Variable '" + name + "' used before assignment."
+                "Variable '" + names[slot] + "' used before assignment."
             );
         }
-        return vars.get(name);
+        return t;
+    }
+
+    public int getInt(int slot) {
+        return ints[slot];
+    }
+
+    public boolean getBoolean(int slot) {
+        return bools[slot];
+    }
+
+    public String getString(int slot) {
+        return (String) refs[slot];
+    }
+
+    /** Boxed value (Integer, Boolean or String) of an assigned slot */
+    public Object get(int slot) {
+        return switch (type(slot)) {
+            case INT     -> ints[slot];
+            case BOOLEAN -> bools[slot];
+            default      -> refs[slot];
+        };
+    }
+
+    public String name(int slot) {
+        return names[slot];
     }
 
     // Optional: For debugging
-    public static void printAll() {
+    public void printAll() {
         System.out.println("Symbol Table:");
-        for (Map.Entry<String, Variable> entry : vars.entrySet()) {
-            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+        for (int i = 0; i < names.length; i++) {
+            if (tags[i] != UNSET) {
+                System.out.println("  " + names[i] + ": " + typeName(tags[i]) + " = " + get(i));
+            }
         }
     }
 
-    // In Memory.java (src/compiler/parser/Memory.java), add:
-    public static void clear() {
-        vars.clear();
+    /** The error every engine raises for an if/while condition of type 'tag' (not int or boolean). */
+    public static SemanticException conditionError(byte tag) {
+        return new SemanticException("Condition must be int or boolean, got '" + typeName(tag) + "'");
     }
 
+    public static String typeName(byte tag) {
+        return switch (tag) {
+            case INT     -> "int";
+            case BOOLEAN -> "boolean";
+            case STRING  -> "string";
+            default      -> "unset";
+        };
+    }
 }
@@ -4,30 +4,40 @@ import compiler.ast.*;
 import compiler.error.SyntaxException;
 import compiler.lexer.*;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
- * Parser that builds an AST (Program) from a list of tokens,
+ * Parser that builds an AST (Program) from a stream of tokens,
  * throwing SyntaxException on any parse error with accurate line/column.
+ * Tokens are read through a TokenCursor, so they can come from a list,
+ * a streaming lexer, or a packed TokenBuffer read by index.
  */
 public class Parser {
-    private final List<Token> tokens;
-    private int pos = 0;
+    private final TokenCursor tokens;
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(tokens.iterator());
     }
 
     /**
-     * Always returns a token from the list. The last token must be EOF
-     * (emitted by the Lexer with correct position).
+     * Pulls tokens on demand, e.g. from {@link Lexer#stream(java.io.Reader)}.
+     * The stream must end with an EOF token.
      */
-    private Token currentToken() {
-        if (pos < tokens.size()) {
-            return tokens.get(pos);
-        }
-        // If we ever run past EOF, just return the EOF token itself:
-        return tokens.get(tokens.size() - 1);
+    public Parser(Iterator<Token> tokens) {
+        this(TokenCursor.of(tokens));
+    }
+
+    /**
+     * Reads a packed TokenBuffer by index; token text is only copied
+     * for identifiers and literals that end up in the AST.
+     */
+    public Parser(TokenBuffer tokens) {
+        this(tokens.cursor());
+    }
+
+    public Parser(TokenCursor tokens) {
+        this.tokens = tokens;
     }
 
     /**
@@ -35,23 +45,31 @@ public class Parser {
      * Otherwise throw a SyntaxException at the token’s location.
      */
     private void eat(TokenType expected) {
-        Token actual = currentToken();
-        if (actual.type == expected) {
-            pos++;
+        if (tokens.type() == expected) {
+            tokens.advance();
         } else {
             throw new SyntaxException(
-                "Expected " + expected + " but found " + actual.type,
-                actual.line, actual.column
+                "Expected " + expected + " but found " + tokens.type(),
+                tokens.line(), tokens.column()
             );
         }
     }
 
+    /**
+     * Returns the current token's text and consumes it if it matches.
+     */
+    private String eatText(TokenType expected) {
+        String text = tokens.type() == expected ? tokens.text() : null;
+        eat(expected);
+        return text;
+    }
+
     /**
      * Entry point: parses the entire token stream into a Program AST node.
      */
     public Program parseProgram() {
         List<Stmt> stmts = new ArrayList<>();
-        while (currentToken().type != TokenType.EOF) {
+        while (tokens.type() != TokenType.EOF) {
             stmts.add(parseStatement());
         }
         return new Program(stmts);
@@ -60,27 +78,21 @@ public class Parser {
     /**
      * Parses a single statement and returns its AST node.
      */
-    private Stmt parseStatement() {
-        Token t = currentToken();
-        switch (t.type) {
+    Stmt parseStatement() {
+        switch (tokens.type()) {
             case READ -> {
                 eat(TokenType.READ);
-                Token id = currentToken();
-                eat(TokenType.IDENTIFIER);
-                return new ReadStmt(id.value);
+                return new ReadStmt(eatText(TokenType.IDENTIFIER));
             }
             case PRINT -> {
                 eat(TokenType.PRINT);
-                Token id = currentToken();
-                eat(TokenType.IDENTIFIER);
-                return new PrintStmt(id.value);
+                return new PrintStmt(eatText(TokenType.IDENTIFIER));
             }
             case IDENTIFIER -> {
-                Token id = t;
-                eat(TokenType.IDENTIFIER);
+                String id = eatText(TokenType.IDENTIFIER);
                 eat(TokenType.ASSIGN);
                 Expr expr = parseExpression();
-                return new AssignStmt(id.value, expr);
+                return new AssignStmt(id, expr);
             }
             case IF -> {
                 eat(TokenType.IF);
@@ -89,7 +101,7 @@ public class Parser {
                 eat(TokenType.RPAREN);
                 List<Stmt> thenBlock = parseBlock();
                 List<Stmt> elseBlock = new ArrayList<>();
-                if (currentToken().type == TokenType.ELSE) {
+                if (tokens.type() == TokenType.ELSE) {
                     eat(TokenType.ELSE);
                     elseBlock = parseBlock();
                 }
@@ -106,8 +118,8 @@ public class Parser {
             default -> {
                 // No valid statement start found
                 throw new SyntaxException(
-                    "Invalid statement start: " + t.value,
-                    t.line, t.column
+                    "Invalid statement start: " + tokens.text(),
+                    tokens.line(), tokens.column()
                 );
             }
         }
@@ -117,10 +129,9 @@ public class Parser {
      * Parses a block of statements enclosed in braces { … }.
      */
     private List<Stmt> parseBlock() {
-        Token lbrace = currentToken();
         eat(TokenType.LBRACE);
         List<Stmt> stmts = new ArrayList<>();
-        while (currentToken().type != TokenType.RBRACE) {
+        while (tokens.type() != TokenType.RBRACE) {
             stmts.add(parseStatement());
         }
         eat(TokenType.RBRACE);
@@ -132,13 +143,12 @@ public class Parser {
      */
     private Expr parseExpression() {
         Expr left = parseTerm();
-        while (currentToken().type == TokenType.PLUS
-            || currentToken().type == TokenType.MINUS) {
+        while (tokens.type() == TokenType.PLUS
+            || tokens.type() == TokenType.MINUS) {
 
-            Token op = currentToken();
-            eat(op.type);
+            String op = eatText(tokens.type());
             Expr right = parseTerm();
-            left = new BinaryExpr(op.value, left, right);
+            left = new BinaryExpr(op, left, right);
         }
         return left;
     }
@@ -148,13 +158,12 @@ public class Parser {
      */
     private Expr parseTerm() {
         Expr left = parseFactor();
-        while (currentToken().type == TokenType.MUL
-            || currentToken().type == TokenType.DIV) {
+        while (tokens.type() == TokenType.MUL
+            || tokens.type() == TokenType.DIV) {
 
-            Token op = currentToken();
-            eat(op.type);
+            String op = eatText(tokens.type());
             Expr right = parseFactor();
-            left = new BinaryExpr(op.value, left, right);
+            left = new BinaryExpr(op, left, right);
         }
         return left;
     }
@@ -163,17 +172,14 @@ public class Parser {
      * Parses atomic factors: NUMBER, STRING, BOOLEAN, IDENTIFIER, or (expression).
      */
     private Expr parseFactor() {
-        Token t = currentToken();
-        switch (t.type) {
+        switch (tokens.type()) {
             case NUMBER -> {
-                eat(TokenType.NUMBER);
-                return new LiteralExpr(t.value);
+                return new LiteralExpr(eatText(TokenType.NUMBER));
             }
             case STRING -> {
-                eat(TokenType.STRING);
+                String s = eatText(TokenType.STRING);
                 // strip the surrounding quotes
-                String s = t.value.substring(1, t.value.length() - 1);
-                return new LiteralExpr(s);
+                return new LiteralExpr(s.substring(1, s.length() - 1));
             }
             case BOOLEAN_TRUE -> {
                 eat(TokenType.BOOLEAN_TRUE);
@@ -184,8 +190,7 @@ public class Parser {
                 return new LiteralExpr("false");
             }
             case IDENTIFIER -> {
-                eat(TokenType.IDENTIFIER);
-                return new VarExpr(t.value);
+                return new VarExpr(eatText(TokenType.IDENTIFIER));
             }
             case LPAREN -> {
                 eat(TokenType.LPAREN);
@@ -196,8 +201,8 @@ public class Parser {
             default -> {
                 // Unexpected token in an expression context
                 throw new SyntaxException(
-                    "Unexpected token in factor: " + t.value,
-                    t.line, t.column
+                    "Unexpected token in factor: " + tokens.text(),
+                    tokens.line(), tokens.column()
                 );
             }
         }
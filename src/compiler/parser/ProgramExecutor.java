@@ -0,0 +1,69 @@
+package compiler.parser;
+
+import compiler.ast.Program;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs many programs in parallel. Each run gets its own
+ * {@link ExecutionContext}, so runs share nothing mutable; a Future
+ * completes with the run's context (output already flushed to its sink),
+ * or fails with the run's error.
+ * Cancelling a Future with interruption stops the run at its next loop
+ * iteration.
+ */
+public class ProgramExecutor implements AutoCloseable {
+    private final ExecutorService pool;
+
+    /** A fixed pool with one thread per available processor. */
+    public ProgramExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ProgramExecutor(int threads) {
+        this(Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "program-executor");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * Runs on a caller-supplied pool (e.g. a virtual-thread-per-task
+     * executor); {@link #close()} shuts it down.
+     */
+    public ProgramExecutor(ExecutorService pool) {
+        this.pool = pool;
+    }
+
+    public Future<ExecutionContext> submit(Program program, ExecutionContext ctx) {
+        // Resolve and infer here, once, so concurrent runs of one Program
+        // never write its annotations
+        TypeInference.infer(program, Resolver.resolve(program).size());
+        return pool.submit(() -> {
+            Interpreter.run(program, ctx);
+            return ctx;
+        });
+    }
+
+    /**
+     * Submits every program with a fresh context from 'contexts'.
+     */
+    public List<Future<ExecutionContext>> submitAll(List<Program> programs,
+                                                    Supplier<ExecutionContext> contexts) {
+        List<Future<ExecutionContext>> futures = new ArrayList<>(programs.size());
+        for (Program p : programs) {
+            futures.add(submit(p, contexts.get()));
+        }
+        return futures;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
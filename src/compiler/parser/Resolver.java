@@ -0,0 +1,118 @@
+package compiler.parser;
+
+import compiler.ast.*;
+import java.util.*;
+
+/**
+ * Resolver pass: gives every variable of a Program a fixed frame slot
+ * (in order of first appearance) and records it on the AST nodes that
+ * name it, so execution indexes a Memory frame instead of hashing names.
+ *
+ * It also finds, once and statically, the variables that may be assigned
+ * more than once in a run (two stores on one path, or a store inside a
+ * loop); these replace the old per-store reassignment println.
+ * Resolving the same Program again yields the same slots and writes
+ * nothing, so an already resolved Program can be run from many threads.
+ */
+public class Resolver {
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+    private final Set<String> reassigned = new LinkedHashSet<>();
+
+    private Resolver() { }
+
+    public static Resolver resolve(Program program) {
+        Resolver r = new Resolver();
+        Map<String, Integer> stores = r.block(program.statements);
+        stores.forEach((name, n) -> {
+            if (n >= 2) r.reassigned.add(name);
+        });
+        return r;
+    }
+
+    /** Number of slots a frame needs. */
+    public int size() {
+        return slots.size();
+    }
+
+    public int slot(String name) {
+        return slots.get(name);
+    }
+
+    /** Variable names, indexed by slot. */
+    public String[] names() {
+        return slots.keySet().toArray(new String[0]);
+    }
+
+    /** Variables that may be assigned more than once, in first-seen order. */
+    public Set<String> reassigned() {
+        return reassigned;
+    }
+
+    /** One warning line per variable in {@link #reassigned()}. */
+    public List<String> warnings() {
+        List<String> lines = new ArrayList<>();
+        for (String name : reassigned) {
+            lines.add("Warning: Variable '" + name + "' is being reassigned.");
+        }
+        return lines;
+    }
+
+    private int bind(String name) {
+        return slots.computeIfAbsent(name, n -> slots.size());
+    }
+
+    // Resolves a block; returns how often each variable may be stored along
+    // one path through it (capped at 2, which means "more than once")
+    private Map<String, Integer> block(List<Stmt> stmts) {
+        Map<String, Integer> stores = new HashMap<>();
+        for (Stmt s : stmts) {
+            stmt(s).forEach((name, n) -> stores.merge(name, n, (a, b) -> Math.min(a + b, 2)));
+        }
+        return stores;
+    }
+
+    private Map<String, Integer> stmt(Stmt stmt) {
+        if (stmt instanceof ReadStmt rs) {
+            int slot = bind(rs.var);
+            if (rs.slot != slot) rs.slot = slot;
+            return Map.of(rs.var, 1);
+        }
+        if (stmt instanceof PrintStmt ps) {
+            int slot = bind(ps.var);
+            if (ps.slot != slot) ps.slot = slot;
+            return Map.of();
+        }
+        if (stmt instanceof AssignStmt as) {
+            expr(as.expr);
+            int slot = bind(as.var);
+            if (as.slot != slot) as.slot = slot;
+            return Map.of(as.var, 1);
+        }
+        if (stmt instanceof IfStmt is) {
+            expr(is.cond);
+            // only one branch runs: take the larger count per variable
+            Map<String, Integer> stores = block(is.thenBlock);
+            block(is.elseBlock).forEach((name, n) -> stores.merge(name, n, Math::max));
+            return stores;
+        }
+        if (stmt instanceof WhileStmt ws) {
+            expr(ws.cond);
+            // a loop body may run any number of times
+            Map<String, Integer> stores = block(ws.body);
+            stores.replaceAll((name, n) -> 2);
+            return stores;
+        }
+        throw new RuntimeException("Resolver: unknown stmt " + stmt);
+    }
+
+    private void expr(Expr expr) {
+        if (expr instanceof VarExpr ve) {
+            int slot = bind(ve.name);
+            if (ve.slot != slot) ve.slot = slot;
+        }
+        else if (expr instanceof BinaryExpr be) {
+            expr(be.left);
+            expr(be.right);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package compiler.parser;
+
+import compiler.ast.WhileStmt;
+import compiler.jit.JitCompiler;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tiered execution for the AST interpreter (Engine.TIERED).
+ *
+ * Every WhileStmt counts its back-edges. Once a loop reaches
+ * {@link #threshold}, it is compiled by {@link JitCompiler#compileLoop} on
+ * a background thread while the interpreter keeps running it. When the
+ * code is ready the interpreter switches over at the next loop test (on-
+ * stack replacement): the compiled loop picks up the variables from the
+ * Memory frame, finishes the loop and writes them back. Later entries to
+ * the same loop go straight to the compiled code.
+ *
+ * One Tiering belongs to one run; the counters are global.
+ */
+public final class Tiering {
+    /** Back-edges after which a loop is queued for compilation. */
+    public static int threshold = Integer.getInteger("compiler.tier.threshold", 1000);
+
+    /** Tier transitions, counted over all runs. */
+    public enum Counter {
+        LOOPS_QUEUED,        // loops that reached the threshold
+        LOOPS_COMPILED,      // background compilations that produced code
+        LOOPS_NOT_COMPILED,  // compilations given up (e.g. too large for one JVM method)
+        OSR_ENTRIES,         // running loops switched to compiled code mid-loop
+        COMPILED_ENTRIES     // loops entered directly in compiled code
+    }
+
+    private static final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+
+    private static final ExecutorService compiler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tier-compiler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static long count(Counter c) {
+        return counts.get(c.ordinal());
+    }
+
+    public static Map<Counter, Long> counters() {
+        Map<Counter, Long> all = new EnumMap<>(Counter.class);
+        for (Counter c : Counter.values()) all.put(c, count(c));
+        return all;
+    }
+
+    public static void resetCounters() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+    }
+
+    private static void bump(Counter c) {
+        counts.incrementAndGet(c.ordinal());
+    }
+
+    private final int vars;
+    private final Set<String> boolVars;
+    private final Map<WhileStmt, Loop> loops = new IdentityHashMap<>();
+
+    Tiering(int vars, Set<String> boolVars) {
+        this.vars = vars;
+        this.boolVars = boolVars;
+    }
+
+    Loop loop(WhileStmt stmt) {
+        return loops.computeIfAbsent(stmt, Loop::new);
+    }
+
+    /** Tier state of one loop. */
+    final class Loop {
+        private final WhileStmt stmt;
+        private int backEdges;
+        private Future<JitCompiler.Compiled> pending;
+        private JitCompiler.Compiled code;
+
+        private Loop(WhileStmt stmt) {
+            this.stmt = stmt;
+        }
+
+        void backEdge() {
+            if (++backEdges == threshold) {
+                bump(Counter.LOOPS_QUEUED);
+                pending = compiler.submit(() -> {
+                    JitCompiler.Compiled c = JitCompiler.compileLoop(stmt, vars, boolVars);
+                    bump(c != null ? Counter.LOOPS_COMPILED : Counter.LOOPS_NOT_COMPILED);
+                    return c;
+                });
+            }
+        }
+
+        /**
+         * Runs the rest of the loop in compiled code if that is ready;
+         * returns false (without blocking) if the interpreter must go on.
+         */
+        boolean enter(ExecutionContext ctx, boolean atEntry) {
+            if (code == null) {
+                if (pending == null || !pending.isDone()) return false;
+                try {
+                    code = pending.get();
+                } catch (Exception e) {
+                    bump(Counter.LOOPS_NOT_COMPILED);
+                }
+                pending = null;
+                if (code == null) return false;
+            }
+            bump(atEntry ? Counter.COMPILED_ENTRIES : Counter.OSR_ENTRIES);
+            code.run(ctx);
+            return true;
+        }
+    }
+}
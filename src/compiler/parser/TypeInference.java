@@ -0,0 +1,165 @@
+package compiler.parser;
+
+import compiler.ast.*;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Static type inference over a resolved Program.
+ *
+ * Tracks, for every program point, the set of types each variable may
+ * have (unassigned, int, boolean, string), joining at if/else and
+ * iterating loops to a fixpoint. Reads give int-or-string, or boolean
+ * for the variables of {@link Interpreter#collectBooleanVars}.
+ *
+ * A VarExpr whose variable has exactly one possible type there (and is
+ * surely assigned) gets that type; a BinaryExpr over proven ints is
+ * marked INT, so it can be evaluated without boxing or checks. Anything
+ * else stays 0 and takes the checked path. Inferring again yields the
+ * same marks and writes nothing.
+ */
+public class TypeInference {
+    // Type sets, as bit masks
+    private static final int UNSET = 1, INT = 1 << Memory.INT, BOOL = 1 << Memory.BOOLEAN,
+                             STR = 1 << Memory.STRING;
+
+    private final Set<String> boolVars;
+    // Union of the type sets seen at each variable use
+    private final Map<VarExpr, Integer> seen = new IdentityHashMap<>();
+
+    private TypeInference(Set<String> boolVars) {
+        this.boolVars = boolVars;
+    }
+
+    /** Marks the program's expressions; slots must be resolved already. */
+    public static void infer(Program program, int vars) {
+        TypeInference ti = new TypeInference(Interpreter.collectBooleanVars(program));
+        int[] state = new int[vars];
+        Arrays.fill(state, UNSET);
+        ti.block(program.statements, state);
+        ti.seen.forEach((ve, mask) -> {
+            byte t = proven(mask);
+            if (ve.type != t) ve.type = t;
+        });
+        for (Stmt s : program.statements) ti.markStmt(s);
+    }
+
+    private static byte proven(int mask) {
+        return switch (mask) {
+            case INT  -> Memory.INT;
+            case BOOL -> Memory.BOOLEAN;
+            case STR  -> Memory.STRING;
+            default   -> 0;
+        };
+    }
+
+    // ---- flow analysis ----
+
+    private void block(List<Stmt> stmts, int[] state) {
+        for (Stmt s : stmts) stmt(s, state);
+    }
+
+    private void stmt(Stmt stmt, int[] state) {
+        if (stmt instanceof ReadStmt rs) {
+            state[rs.slot] = boolVars.contains(rs.var) ? BOOL : INT | STR;
+        }
+        else if (stmt instanceof AssignStmt as) {
+            state[as.slot] = expr(as.expr, state);
+        }
+        else if (stmt instanceof IfStmt is) {
+            expr(is.cond, state);
+            int[] other = state.clone();
+            block(is.thenBlock, state);
+            block(is.elseBlock, other);
+            for (int i = 0; i < state.length; i++) state[i] |= other[i];
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            // loop head: entry state joined with the end of the body, until stable
+            while (true) {
+                expr(ws.cond, state);
+                int[] body = state.clone();
+                block(ws.body, body);
+                boolean changed = false;
+                for (int i = 0; i < state.length; i++) {
+                    int joined = state[i] | body[i];
+                    if (joined != state[i]) {
+                        state[i] = joined;
+                        changed = true;
+                    }
+                }
+                if (!changed) break;
+            }
+        }
+        // PrintStmt changes nothing
+    }
+
+    // Type set of an expression's value, if its evaluation completes
+    private int expr(Expr expr, int[] state) {
+        if (expr instanceof VarExpr ve) {
+            seen.merge(ve, state[ve.slot], (a, b) -> a | b);
+            return state[ve.slot] & ~UNSET;   // an unassigned use throws
+        }
+        if (expr instanceof BinaryExpr be) {
+            expr(be.left, state);
+            expr(be.right, state);
+            return INT;
+        }
+        if (expr instanceof LiteralExpr le) {
+            return literal(le.value);
+        }
+        return INT | BOOL | STR;
+    }
+
+    private static int literal(String v) {
+        if (v.matches("-?\\d+")) return INT;   // out of range: throws when evaluated
+        if (v.equalsIgnoreCase("true") || v.equalsIgnoreCase("false")) return BOOL;
+        return STR;
+    }
+
+    // ---- marking int-only expressions ----
+
+    private void markStmt(Stmt stmt) {
+        if (stmt instanceof AssignStmt as) markExpr(as.expr);
+        else if (stmt instanceof IfStmt is) {
+            markExpr(is.cond);
+            is.thenBlock.forEach(this::markStmt);
+            is.elseBlock.forEach(this::markStmt);
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            markExpr(ws.cond);
+            ws.body.forEach(this::markStmt);
+        }
+    }
+
+    // Whether expr is a proven int that evaluates without type checks
+    private boolean markExpr(Expr expr) {
+        if (expr instanceof VarExpr ve) return ve.type == Memory.INT;
+        if (expr instanceof LiteralExpr le) return isInt(le.value);
+        if (expr instanceof BinaryExpr be) {
+            boolean l = markExpr(be.left);
+            boolean r = markExpr(be.right);
+            byte t = l && r && isArithmetic(be.op) ? Memory.INT : 0;
+            if (be.type != t) be.type = t;
+            return t != 0;
+        }
+        return false;
+    }
+
+    private static boolean isArithmetic(String op) {
+        return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/");
+    }
+
+    // An int literal that fits (out-of-range literals must throw at run time)
+    private static boolean isInt(String v) {
+        if (!v.matches("-?\\d+")) return false;
+        try {
+            Integer.parseInt(v);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
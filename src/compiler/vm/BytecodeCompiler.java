@@ -0,0 +1,229 @@
+package compiler.vm;
+
+import compiler.ast.*;
+import compiler.parser.Interpreter;
+import java.util.*;
+
+/**
+ * Compiles a Program into a register-based Chunk.
+ * Every variable gets a fixed register, every distinct literal a constant
+ * register, and expression temporaries are allocated stack-wise.
+ */
+public class BytecodeCompiler {
+    private final Map<String, Integer> vars = new LinkedHashMap<>();
+    private final Map<String, Integer> literals = new HashMap<>();
+    private final List<Object> literalValues = new ArrayList<>();
+    private final List<Object> extraPool = new ArrayList<>();   // BADOP operator names
+    private final Set<String> boolVars;
+    private int[] code = new int[64];
+    private int size;
+    private int nextTemp, maxTemp;
+
+    private BytecodeCompiler(Set<String> boolVars) {
+        this.boolVars = boolVars;
+    }
+
+    public static Chunk compile(Program program) {
+        BytecodeCompiler bc = new BytecodeCompiler(Interpreter.collectBooleanVars(program));
+        // Pass 1 numbers variables and literals so register ranges are known
+        bc.scanBlock(program.statements);
+        bc.block(program.statements);
+        return bc.finish();
+    }
+
+    // ---- pass 1: registers ----
+
+    private void scanBlock(List<Stmt> stmts) {
+        for (Stmt s : stmts) scanStmt(s);
+    }
+
+    private void scanStmt(Stmt stmt) {
+        if (stmt instanceof ReadStmt rs)        var(rs.var);
+        else if (stmt instanceof PrintStmt ps)  var(ps.var);
+        else if (stmt instanceof AssignStmt as) { var(as.var); scanExpr(as.expr); }
+        else if (stmt instanceof IfStmt is) {
+            scanExpr(is.cond);
+            scanBlock(is.thenBlock);
+            scanBlock(is.elseBlock);
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            scanExpr(ws.cond);
+            scanBlock(ws.body);
+        }
+        else throw new RuntimeException("BytecodeCompiler: unknown stmt " + stmt);
+    }
+
+    private void scanExpr(Expr expr) {
+        if (expr instanceof VarExpr ve) var(ve.name);
+        else if (expr instanceof LiteralExpr le) {
+            if (!literals.containsKey(le.value)) {
+                literals.put(le.value, literalValues.size());
+                literalValues.add(literal(le.value));
+            }
+        }
+        else if (expr instanceof BinaryExpr be) {
+            scanExpr(be.left);
+            scanExpr(be.right);
+        }
+    }
+
+    private int var(String name) {
+        return vars.computeIfAbsent(name, n -> vars.size());
+    }
+
+    private int constant(String literal) {
+        return vars.size() + literals.get(literal);
+    }
+
+    // ---- pass 2: code ----
+
+    private void block(List<Stmt> stmts) {
+        for (Stmt s : stmts) stmt(s);
+    }
+
+    private void stmt(Stmt stmt) {
+        if (stmt instanceof ReadStmt rs) {
+            emit(boolVars.contains(rs.var) ? Chunk.READB : Chunk.READ, var(rs.var), 0, 0);
+        }
+        else if (stmt instanceof PrintStmt ps) {
+            emit(Chunk.PRINT, var(ps.var), 0, 0);
+        }
+        else if (stmt instanceof AssignStmt as) {
+            exprInto(as.expr, var(as.var));
+        }
+        else if (stmt instanceof IfStmt is) {
+            int c = operand(is.cond);
+            int jz = emit(Chunk.JZ, c, 0, 0);
+            release(c);
+            block(is.thenBlock);
+            if (is.elseBlock.isEmpty()) {
+                patch(jz, size / 4);
+            } else {
+                int jmp = emit(Chunk.JMP, 0, 0, 0);
+                patch(jz, size / 4);
+                block(is.elseBlock);
+                code[jmp + 1] = size / 4;
+            }
+        }
+        else if (stmt instanceof WhileStmt ws) {
+            int top = size / 4;
+            int c = operand(ws.cond);
+            int jz = emit(Chunk.LOOP, c, 0, 0);
+            release(c);
+            block(ws.body);
+            emit(Chunk.JMP, top, 0, 0);
+            patch(jz, size / 4);
+        }
+    }
+
+    // Evaluates expr straight into register 'dst'
+    private void exprInto(Expr expr, int dst) {
+        if (expr instanceof BinaryExpr be) {
+            binary(be, dst);
+        } else {
+            int src = operand(expr);
+            emit(Chunk.MOV, dst, src, 0);
+        }
+    }
+
+    // Returns a register holding expr's value: the variable/constant itself
+    // when possible, otherwise a fresh temporary (free it with release)
+    private int operand(Expr expr) {
+        if (expr instanceof VarExpr ve) return var(ve.name);
+        if (expr instanceof LiteralExpr le) {
+            int k = constant(le.value);
+            if (literalValues.get(literals.get(le.value)) instanceof RuntimeException) {
+                emit(Chunk.FAIL, literals.get(le.value), 0, 0);   // fails where it is evaluated
+            }
+            return k;
+        }
+        int t = temp();
+        binary((BinaryExpr) expr, t);
+        return t;
+    }
+
+    // True if evaluating expr can throw: an operation, or a literal that has no value
+    private boolean canFail(Expr expr) {
+        if (expr instanceof BinaryExpr) return true;
+        return expr instanceof LiteralExpr le
+            && literalValues.get(literals.get(le.value)) instanceof RuntimeException;
+    }
+
+    private void binary(BinaryExpr be, int dst) {
+        int l = operand(be.left);
+        // A variable on the left must be checked now if the right side can fail first
+        if (be.left instanceof VarExpr && canFail(be.right)) {
+            emit(Chunk.CHKDEF, l, 0, 0);
+        }
+        int r = operand(be.right);
+        int op = switch (be.op) {
+            case "+" -> Chunk.ADD;
+            case "-" -> Chunk.SUB;
+            case "*" -> Chunk.MUL;
+            case "/" -> Chunk.DIV;
+            default  -> -1;
+        };
+        if (op < 0) {
+            emit(Chunk.BADOP, extraPool.size(), l, r);
+            extraPool.add(be.op);
+        } else {
+            emit(op, dst, l, r);
+        }
+        release(r);
+        release(l);
+    }
+
+    private int temp() {
+        int t = nextTemp++;
+        maxTemp = Math.max(maxTemp, nextTemp);
+        return firstTemp() + t;
+    }
+
+    private void release(int reg) {
+        if (reg >= firstTemp()) nextTemp--;
+    }
+
+    private int firstTemp() {
+        return vars.size() + literalValues.size();
+    }
+
+    private int emit(int op, int a, int b, int c) {
+        if (size + 4 > code.length) code = Arrays.copyOf(code, code.length * 2);
+        int at = size;
+        code[size++] = op;
+        code[size++] = a;
+        code[size++] = b;
+        code[size++] = c;
+        return at;
+    }
+
+    private void patch(int jz, int target) {
+        code[jz + 2] = target;
+    }
+
+    private Chunk finish() {
+        // Pool: one entry per constant register, then the BADOP operator names
+        int nconst = literalValues.size();
+        List<Object> pool = new ArrayList<>(literalValues);
+        pool.addAll(extraPool);
+        for (int pc = 0; pc < size; pc += 4) {
+            if (code[pc] == Chunk.BADOP) code[pc + 1] += nconst;
+        }
+        return new Chunk(Arrays.copyOf(code, size), pool.toArray(), nconst,
+                         vars.keySet().toArray(new String[0]), firstTemp() + maxTemp);
+    }
+
+    // Decodes a literal the same way Interpreter.evalExpr does
+    private static Object literal(String v) {
+        if (v.matches("-?\\d+")) {
+            try {
+                return Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                return e;   // out of int range: the VM throws it if the literal is used
+            }
+        }
+        if (v.equalsIgnoreCase("true"))  return true;
+        if (v.equalsIgnoreCase("false")) return false;
+        return v;  // string literal
+    }
+}
@@ -0,0 +1,62 @@
+package compiler.vm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled program for the register VM.
+ *
+ * Instructions are fixed-width groups of 4 ints: opcode, a, b, c.
+ * Registers are laid out as [variables | constants | temporaries];
+ * the VM loads every constant register from the pool once at start-up,
+ * so loop bodies never touch the pool again.
+ */
+public class Chunk {
+    // Opcodes (operands in brackets are register numbers unless noted)
+    public static final int MOV    = 0;   // [a] = [b]
+    public static final int ADD    = 1;   // [a] = [b] + [c]
+    public static final int SUB    = 2;   // [a] = [b] - [c]
+    public static final int MUL    = 3;   // [a] = [b] * [c]
+    public static final int DIV    = 4;   // [a] = [b] / [c]
+    public static final int JMP    = 5;   // pc = a (instruction index)
+    public static final int JZ     = 6;   // if [a] is false/0, pc = b
+    public static final int PRINT  = 7;   // print variable [a]
+    public static final int READ   = 8;   // read int or string into [a]
+    public static final int READB  = 9;   // read true/false into [a]
+    public static final int CHKDEF = 10;  // fail if variable [a] is unassigned
+    public static final int FAIL   = 11;  // throw the exception in pool[a]
+    public static final int BADOP  = 12;  // type-check [b], [c], then fail: unknown operator pool[a]
+    public static final int LOOP   = 13;  // while test: like JZ, but counts an iteration when it falls through
+
+    static final String[] NAMES = {
+        "MOV", "ADD", "SUB", "MUL", "DIV", "JMP", "JZ", "PRINT", "READ", "READB", "CHKDEF", "FAIL", "BADOP", "LOOP"
+    };
+
+    final int[] code;
+    final Object[] pool;        // constants (Integer, Boolean, String or RuntimeException), then operator names
+    final int constants;        // number of constant registers
+    final String[] varNames;    // name of each variable register
+    final int registers;        // total register count
+
+    Chunk(int[] code, Object[] pool, int constants, String[] varNames, int registers) {
+        this.code = code;
+        this.pool = pool;
+        this.constants = constants;
+        this.varNames = varNames;
+        this.registers = registers;
+    }
+
+    int firstConstant() {
+        return varNames.length;
+    }
+
+    /** Instruction listing, one instruction per line (for debugging). */
+    public List<String> disassemble() {
+        List<String> lines = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc += 4) {
+            lines.add(String.format("%4d  %-6s %d %d %d",
+                pc / 4, NAMES[code[pc]], code[pc + 1], code[pc + 2], code[pc + 3]));
+        }
+        return lines;
+    }
+}
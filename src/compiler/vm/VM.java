@@ -0,0 +1,175 @@
+package compiler.vm;
+
+import compiler.error.SemanticException;
+import compiler.io.InputSource;
+import compiler.io.InputValue;
+import compiler.io.ListOutput;
+import compiler.parser.ExecutionContext;
+import compiler.parser.Memory;
+import java.util.List;
+
+/**
+ * Executes a Chunk with primitive register files: an int[] for int and
+ * boolean values (booleans as 0/1), a String[] for strings, and a type
+ * tag per register. Int and boolean code paths never allocate.
+ * Output and errors are the same as {@link compiler.parser.Interpreter}.
+ */
+public class VM {
+    // Register type tags
+    private static final byte UNSET = 0, INT = 1, BOOL = 2, STR = 3;
+
+    private final Chunk chunk;
+    private final int[] ival;
+    private final String[] sval;
+    private final byte[] tag;
+    private final ExecutionContext ctx;
+
+    private VM(Chunk chunk, ExecutionContext ctx) {
+        this.chunk = chunk;
+        this.ctx = ctx;
+        this.ival = new int[chunk.registers];
+        this.sval = new String[chunk.registers];
+        this.tag = new byte[chunk.registers];
+        int k = chunk.firstConstant();
+        for (int i = 0; i < chunk.constants; i++) {
+            Object v = chunk.pool[i];
+            if (v instanceof Integer n)      { tag[k + i] = INT;  ival[k + i] = n; }
+            else if (v instanceof Boolean b) { tag[k + i] = BOOL; ival[k + i] = b ? 1 : 0; }
+            else if (v instanceof String s)  { tag[k + i] = STR;  sval[k + i] = s; }
+        }
+    }
+
+    /**
+     * Runs the chunk with System.in as input and returns the printed lines.
+     */
+    public static List<String> run(Chunk chunk) {
+        ListOutput out = new ListOutput();
+        run(chunk, new ExecutionContext(InputSource.stream(System.in), out));
+        return out.lines();
+    }
+
+    /**
+     * Runs the chunk with reads, prints and limits going through 'ctx'.
+     * The register file belongs to this run only.
+     */
+    public static void run(Chunk chunk, ExecutionContext ctx) {
+        new VM(chunk, ctx).execute();
+    }
+
+    private void execute() {
+        final int[] code = chunk.code;
+        final int[] iv = ival;
+        final byte[] tg = tag;
+        int pc = 0;
+        while (pc < code.length) {
+            int a = code[pc + 1], b = code[pc + 2], c = code[pc + 3];
+            switch (code[pc]) {
+                case Chunk.MOV -> {
+                    byte t = tg[b];
+                    if (t == UNSET) throw unassigned(b);
+                    tg[a] = t;
+                    iv[a] = iv[b];
+                    sval[a] = sval[b];
+                }
+                case Chunk.ADD -> {
+                    if (tg[b] != INT || tg[c] != INT) typeError("+", b, c);
+                    iv[a] = iv[b] + iv[c];
+                    tg[a] = INT;
+                }
+                case Chunk.SUB -> {
+                    if (tg[b] != INT || tg[c] != INT) typeError("-", b, c);
+                    iv[a] = iv[b] - iv[c];
+                    tg[a] = INT;
+                }
+                case Chunk.MUL -> {
+                    if (tg[b] != INT || tg[c] != INT) typeError("*", b, c);
+                    iv[a] = iv[b] * iv[c];
+                    tg[a] = INT;
+                }
+                case Chunk.DIV -> {
+                    if (tg[b] != INT || tg[c] != INT) typeError("/", b, c);
+                    if (iv[c] == 0) throw new SemanticException("Division by zero");
+                    iv[a] = iv[b] / iv[c];
+                    tg[a] = INT;
+                }
+                case Chunk.JMP -> {
+                    pc = a * 4;
+                    continue;
+                }
+                case Chunk.JZ, Chunk.LOOP -> {
+                    byte t = tg[a];
+                    if (t == UNSET) throw unassigned(a);
+                    if (t == STR) throw Memory.conditionError(Memory.STRING);
+                    if (iv[a] == 0) {
+                        pc = b * 4;
+                        continue;
+                    }
+                    if (code[pc] == Chunk.LOOP) ctx.tick();
+                }
+                case Chunk.PRINT -> {
+                    byte t = tg[a];
+                    if (t == UNSET) throw unassigned(a);
+                    String name = chunk.varNames[a];
+                    ctx.print(switch (t) {
+                        case INT  -> name + " = " + iv[a];
+                        case BOOL -> name + " = " + (iv[a] != 0);
+                        default   -> name + " = " + sval[a];
+                    });
+                }
+                case Chunk.READ -> {
+                    InputValue inp = ctx.read(chunk.varNames[a]);
+                    if (inp.isInt()) {
+                        iv[a] = inp.intValue();
+                        tg[a] = INT;
+                    } else {
+                        sval[a] = inp.text();
+                        tg[a] = STR;
+                    }
+                }
+                case Chunk.READB -> {
+                    int bv = ctx.read(chunk.varNames[a]).bool();
+                    if (bv < 0) {
+                        throw new SemanticException(
+                            "Variable '" + chunk.varNames[a] + "' must be boolean (true/false)"
+                        );
+                    }
+                    iv[a] = bv;
+                    tg[a] = BOOL;
+                }
+                case Chunk.CHKDEF -> {
+                    if (tg[a] == UNSET) throw unassigned(a);
+                }
+                case Chunk.FAIL -> throw (RuntimeException) chunk.pool[a];
+                case Chunk.BADOP -> {
+                    String op = (String) chunk.pool[a];
+                    if (tg[b] != INT || tg[c] != INT) typeError(op, b, c);
+                    throw new SemanticException("Unknown operator '" + op + "'");
+                }
+                default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc / 4);
+            }
+            pc += 4;
+        }
+    }
+
+    private SemanticException unassigned(int reg) {
+        return new SemanticException("Variable '" + chunk.varNames[reg] + "' used before assignment.");
+    }
+
+    // Operand registers are checked left to right, like evalExpr evaluates them
+    private void typeError(String op, int l, int r) {
+        if (tag[l] == UNSET) throw unassigned(l);
+        if (tag[r] == UNSET) throw unassigned(r);
+        throw new SemanticException(
+            "Cannot apply operator '" + op +
+            "' to types '" + typeName(tag[l]) + "' and '" + typeName(tag[r]) + "'"
+        );
+    }
+
+    private static String typeName(byte t) {
+        return switch (t) {
+            case INT  -> "int";
+            case BOOL -> "boolean";
+            default   -> "string";
+        };
+    }
+}